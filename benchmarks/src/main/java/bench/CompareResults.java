@@ -0,0 +1,130 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares two JMH result files written with {@code -rf csv} (as the
+ * {@code jmh} task does), e.g. from two commits. For each benchmark and
+ * parameter set it prints both scores, the change, and the change in bytes
+ * allocated per operation ({@code -prof gc}). A change within the two
+ * scores' error bars is marked "~".
+ * <p>
+ * Usage: CompareResults baseline.csv candidate.csv
+ */
+public class CompareResults {
+    private static final String ALLOCATION = ":gc.alloc.rate.norm";
+
+    private static final class Result {
+        String unit;
+        double score;
+        double error;
+        double bytesPerOp = Double.NaN;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: CompareResults baseline.csv candidate.csv");
+            return;
+        }
+        Map<String, Result> before = read(new File(args[0]));
+        Map<String, Result> after = read(new File(args[1]));
+        System.out.printf(Locale.ROOT, "%-70s %12s %12s %-6s %9s %12s%n",
+                "benchmark", "base", "new", "unit", "change", "B/op change");
+        for (Map.Entry<String, Result> e : before.entrySet()) {
+            Result b = e.getValue();
+            Result a = after.get(e.getKey());
+            if (a == null) continue;
+            double change = (a.score - b.score) / b.score * 100;
+            boolean significant = Math.abs(a.score - b.score) > zeroIfNaN(a.error) + zeroIfNaN(b.error);
+            System.out.printf(Locale.ROOT, "%-70s %12.3f %12.3f %-6s %+8.1f%%%s %+12.1f%n",
+                    e.getKey(), b.score, a.score, a.unit, change, significant ? " " : "~",
+                    a.bytesPerOp - b.bytesPerOp);
+        }
+        for (Map.Entry<String, Result> e : after.entrySet()) {
+            if (!before.containsKey(e.getKey())) {
+                System.out.printf(Locale.ROOT, "%-70s %12s %12.3f %-6s    (new)%n",
+                        e.getKey(), "-", e.getValue().score, e.getValue().unit);
+            }
+        }
+    }
+
+    private static double zeroIfNaN(double d) {
+        return Double.isNaN(d) ? 0 : d;
+    }
+
+    /**
+     * Reads primary results keyed by "benchmark [param=value,...]", with the
+     * normalized allocation rate of the matching gc row attached.
+     */
+    private static Map<String, Result> read(File file) throws IOException {
+        List<String> lines = Files.readAllLines(file.toPath());
+        Map<String, Result> results = new LinkedHashMap<>();
+        if (lines.isEmpty()) return results;
+        List<String> header = fields(lines.get(0));
+        int name = header.indexOf("Benchmark");
+        int score = header.indexOf("Score");
+        int unit = header.indexOf("Unit");
+        int error = score + 1;
+        for (String line : lines.subList(1, lines.size())) {
+            List<String> row = fields(line);
+            if (row.size() < header.size()) continue;
+            StringBuilder params = new StringBuilder();
+            for (int i = unit + 1; i < header.size(); i++) {
+                if (row.get(i).isEmpty()) continue;
+                params.append(params.length() == 0 ? " [" : ",")
+                        .append(header.get(i).replace("Param: ", "")).append('=').append(row.get(i));
+            }
+            if (params.length() > 0) params.append(']');
+            String benchmark = row.get(name);
+            int secondary = benchmark.indexOf(':');
+            if (secondary >= 0) {
+                if (benchmark.endsWith(ALLOCATION)) {
+                    Result r = results.get(benchmark.substring(0, secondary) + params);
+                    if (r != null) r.bytesPerOp = number(row.get(score));
+                }
+                continue;
+            }
+            Result r = new Result();
+            r.score = number(row.get(score));
+            r.error = number(row.get(error));
+            r.unit = row.get(unit);
+            results.put(benchmark + params, r);
+        }
+        return results;
+    }
+
+    private static double number(String s) {
+        try {
+            return Double.parseDouble(s.replace(',', '.'));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /** Splits a CSV line, dropping the quotes around quoted fields. */
+    private static List<String> fields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,86 @@
+package bench;
+
+import model.Parcel;
+import model.ParcelMap;
+import model.Tariff;
+import model.Worker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fee calculation: {@link Worker#calculateFee} (the active tariff), the
+ * original hard-coded formula, a tiered {@link Tariff}, and
+ * {@link Worker#projectRevenue} over a whole map.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeeBenchmarks {
+    @Param({"10000"})
+    int parcels;
+
+    private Parcel[] sample;
+    private Worker worker;
+    private Tariff tiered;
+    private ParcelMap map;
+    private int next;
+
+    @Setup
+    public void generate() {
+        List<Parcel> list = new DatasetGenerator(parcels, 0, 0, 3).parcels();
+        sample = list.toArray(new Parcel[0]);
+        worker = new Worker();
+        Properties rules = new Properties();
+        rules.setProperty("day.surcharge", "0:1%, 30:2%, 60:5%");
+        rules.setProperty("weight.bands", "0:100%, 20:110%, 50:125%");
+        rules.setProperty("discount.C", "20%");
+        rules.setProperty("discount.CX", "30%");
+        rules.setProperty("fee.max", "5000");
+        tiered = Tariff.compile(rules, "benchmark");
+        map = new ParcelMap();
+        map.putAll(list);
+    }
+
+    private Parcel nextParcel() {
+        Parcel p = sample[next];
+        next = next + 1 == sample.length ? 0 : next + 1;
+        return p;
+    }
+
+    @Benchmark
+    public double calculateFee() {
+        return worker.calculateFee(nextParcel());
+    }
+
+    @Benchmark
+    public double originalFormula() {
+        return TariffCheck.originalFee(nextParcel());
+    }
+
+    @Benchmark
+    public double tieredTariff() {
+        return tiered.fee(nextParcel());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double projectRevenue() {
+        return Worker.projectRevenue(map);
+    }
+}
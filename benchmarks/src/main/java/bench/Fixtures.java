@@ -0,0 +1,74 @@
+package bench;
+
+import model.Log;
+import model.Manager;
+import model.ReportWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Set-up shared by the benchmarks: a scratch directory, quiet logging and
+ * console, and managers whose report goes to a file or nowhere.
+ */
+final class Fixtures {
+    static final String NULL_DEVICE =
+            System.getProperty("os.name", "").startsWith("Windows") ? "NUL" : "/dev/null";
+
+    private static PrintStream console;
+
+    private Fixtures() {
+    }
+
+    /**
+     * A new scratch directory. Also silences the event log and stdout (the
+     * loaders print summaries); JMH reports through its own channel.
+     */
+    static File scratch() throws IOException {
+        File dir = Files.createTempDirectory("depot-jmh").toFile();
+        Log.getInstance().setConsoleLevel(Log.Level.ERROR);
+        Log.getInstance().writeToFile(new File(dir, "eventsLog.txt").getPath());
+        if (console == null) {
+            console = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+        return dir;
+    }
+
+    /**
+     * @param report "file" to write report.txt into the directory, "none" for the null device.
+     */
+    static Manager manager(File dir, String report) {
+        String path = report.equals("file") ? new File(dir, "report.txt").getPath() : NULL_DEVICE;
+        return new Manager(new ReportWriter(path));
+    }
+
+    static int[] shuffled(int n, long seed) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Random random = new Random(seed);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        return order;
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,90 @@
+package bench;
+
+import model.BoundedCustomerQueue;
+import model.Customer;
+import model.QueueOfCustomers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Customer intake: one operation moves all customers from {@code threads}
+ * producers to {@code threads} consumers, through either a
+ * {@link BoundedCustomerQueue} (capacity 1024, blocking) or the
+ * synchronized {@link QueueOfCustomers}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IntakeBenchmarks {
+    @Param({"bounded", "synchronized"})
+    String impl;
+
+    @Param({"1", "4"})
+    int threads;
+
+    @Param({"100000"})
+    int customers;
+
+    private List<Customer> arrivals;
+
+    @Setup
+    public void generate() {
+        arrivals = new DatasetGenerator(customers, customers, 0, 17).customers();
+    }
+
+    @Benchmark
+    public int transfer() throws InterruptedException {
+        BoundedCustomerQueue bounded = new BoundedCustomerQueue(1024, BoundedCustomerQueue.WhenFull.BLOCK);
+        QueueOfCustomers locked = new QueueOfCustomers();
+        boolean useBounded = impl.equals("bounded");
+        AtomicInteger taken = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int from = customers * t / threads;
+            int to = customers * (t + 1) / threads;
+            workers.add(new Thread(() -> {
+                for (int i = from; i < to; i++) {
+                    if (useBounded) {
+                        bounded.enqueue(arrivals.get(i));
+                    } else {
+                        locked.enqueue(arrivals.get(i));
+                    }
+                }
+            }));
+            workers.add(new Thread(() -> {
+                while (taken.get() < customers) {
+                    Customer c = useBounded ? bounded.dequeue() : locked.dequeue();
+                    if (c != null) {
+                        taken.incrementAndGet();
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                }
+            }));
+        }
+        for (Thread w : workers) {
+            w.start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        return taken.get();
+    }
+}
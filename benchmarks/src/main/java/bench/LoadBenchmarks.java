@@ -0,0 +1,72 @@
+package bench;
+
+import model.Manager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Manager#loadParcels} and {@link Manager#loadCustomers} on
+ * generated CSV files of several sizes, each call into a fresh manager.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmarks {
+    @Param({"1000", "100000", "1000000"})
+    int rows;
+
+    private File dir;
+    private DatasetGenerator.Dataset data;
+    private Manager manager;
+
+    @Setup(Level.Trial)
+    public void writeData() throws IOException {
+        dir = Fixtures.scratch();
+        data = new DatasetGenerator(rows, rows, 0.05, 42).writeTo(new File(dir, "load"));
+    }
+
+    @Setup(Level.Invocation)
+    public void newManager() {
+        manager = Fixtures.manager(dir, "none");
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeManager() {
+        manager.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteData() {
+        Fixtures.delete(dir);
+    }
+
+    @Benchmark
+    public Manager loadParcels() {
+        manager.loadParcels(data.getParcelsPath());
+        return manager;
+    }
+
+    @Benchmark
+    public Manager loadCustomers() {
+        manager.loadCustomers(data.getCustomersPath());
+        return manager;
+    }
+}
@@ -0,0 +1,96 @@
+package bench;
+
+import model.Customer;
+import model.Manager;
+import model.Parcel;
+import model.Worker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Manager#processNextCustomer(Worker)} and
+ * {@link Manager#collectParcel}, with the report going to a file or to
+ * the null device.
+ * <p>
+ * Both use up the depot, so each measured iteration is one batch of
+ * {@link #BATCH} calls on a depot refilled before it (single-shot mode);
+ * scores are milliseconds per batch. The last call of a batch waits for
+ * the report to be written.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = ManagerBenchmarks.BATCH)
+@Measurement(iterations = 10, batchSize = ManagerBenchmarks.BATCH)
+@Fork(1)
+public class ManagerBenchmarks {
+    static final int BATCH = 50_000;
+
+    @Param({"none", "file"})
+    String report;
+
+    private File dir;
+    private List<Parcel> parcels;
+    private List<Customer> customers;
+    private Manager manager;
+    private Worker worker;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        dir = Fixtures.scratch();
+        DatasetGenerator data = new DatasetGenerator(BATCH, BATCH, 0.05, 7);
+        parcels = data.parcels();
+        customers = data.customers();
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        manager = Fixtures.manager(dir, report);
+        manager.getParcelMap().putAll(parcels);
+        manager.getCustomerQueue().enqueueAll(customers);
+        worker = manager.getWorker();
+        next = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        manager.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteData() {
+        Fixtures.delete(dir);
+    }
+
+    @Benchmark
+    public boolean processNextCustomer() {
+        boolean processed = manager.processNextCustomer(worker);
+        if (++next == BATCH) manager.flushReport();
+        return processed;
+    }
+
+    @Benchmark
+    public boolean collectParcel() {
+        Customer c = customers.get(next);
+        boolean collected = manager.collectParcel(c.getName(), c.getDesiredParcelID());
+        if (++next == BATCH) manager.flushReport();
+        return collected;
+    }
+}
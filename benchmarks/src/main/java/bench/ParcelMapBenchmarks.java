@@ -0,0 +1,127 @@
+package bench;
+
+import model.Parcel;
+import model.ParcelMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ParcelMap} lookups, inserts and removals at two map sizes, in a
+ * shuffled ID order.
+ * <p>
+ * Lookups run against a full map. Inserts and removals change the map, so
+ * each measured iteration is a batch of {@link #BATCH} calls (single-shot
+ * mode, scores in microseconds per batch): the batch's parcels are taken
+ * out of, or put back into, the otherwise full map before it.
+ */
+@Fork(1)
+public class ParcelMapBenchmarks {
+    static final int BATCH = 10_000;
+
+    @State(Scope.Thread)
+    public static class Data {
+        @Param({"10000", "1000000"})
+        int size;
+
+        List<Parcel> parcels;
+        String[] ids;
+        int[] order;
+        ParcelMap map;
+        int next;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            parcels = new DatasetGenerator(size, 0, 0, 5).parcels();
+            ids = new String[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = parcels.get(i).getParcelID();
+            }
+            order = Fixtures.shuffled(size, 99);
+            map = new ParcelMap();
+            map.putAll(parcels);
+        }
+
+        String nextId() {
+            String id = ids[order[next]];
+            next = next + 1 == ids.length ? 0 : next + 1;
+            return id;
+        }
+    }
+
+    /** The map is full before each batch of removals. */
+    @State(Scope.Thread)
+    public static class Removals {
+        int next;
+
+        @Setup(Level.Iteration)
+        public void refill(Data data) {
+            for (int i = 0; i < BATCH; i++) {
+                data.map.putParcel(data.parcels.get(data.order[i]));
+            }
+            next = 0;
+        }
+    }
+
+    /** The batch's parcels are missing before each batch of inserts. */
+    @State(Scope.Thread)
+    public static class Inserts {
+        int next;
+
+        @Setup(Level.Iteration)
+        public void empty(Data data) {
+            for (int i = 0; i < BATCH; i++) {
+                data.map.removeParcel(data.ids[data.order[i]]);
+            }
+            next = 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public Parcel getParcel(Data data) {
+        return data.map.getParcel(data.nextId());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public boolean containsParcel(Data data) {
+        return data.map.containsParcel(data.nextId());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5, batchSize = BATCH)
+    @Measurement(iterations = 10, batchSize = BATCH)
+    public Parcel removeParcel(Data data, Removals removals) {
+        return data.map.removeParcel(data.ids[data.order[removals.next++]]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5, batchSize = BATCH)
+    @Measurement(iterations = 10, batchSize = BATCH)
+    public void putParcel(Data data, Inserts inserts) {
+        data.map.putParcel(data.parcels.get(data.order[inserts.next++]));
+    }
+}
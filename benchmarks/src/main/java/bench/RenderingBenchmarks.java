@@ -0,0 +1,73 @@
+package bench;
+
+import model.Manager;
+import model.Parcel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code get*ListAsString} views on a depot with {@code size}
+ * customers, {@code size} parcels and {@code size} processed records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderingBenchmarks {
+    @Param({"1000", "10000"})
+    int size;
+
+    private File dir;
+    private Manager manager;
+
+    @Setup
+    public void fill() throws IOException {
+        dir = Fixtures.scratch();
+        DatasetGenerator data = new DatasetGenerator(size * 2, size, 0, 13);
+        manager = Fixtures.manager(dir, "none");
+        List<Parcel> parcels = data.parcels();
+        manager.getParcelMap().putAll(parcels);
+        for (int i = 0; i < size; i++) {
+            manager.collectParcel("Customer " + i, parcels.get(size + i).getParcelID()); // fills the processed list
+        }
+        manager.getCustomerQueue().enqueueAll(data.customers());
+    }
+
+    @TearDown
+    public void close() {
+        manager.close();
+        Fixtures.delete(dir);
+    }
+
+    @Benchmark
+    public String getCustomerListAsString() {
+        return manager.getCustomerListAsString();
+    }
+
+    @Benchmark
+    public String getParcelListAsString() {
+        return manager.getParcelListAsString();
+    }
+
+    @Benchmark
+    public String getProcessedListAsString() {
+        return manager.getProcessedListAsString();
+    }
+}
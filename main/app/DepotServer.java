@@ -0,0 +1,390 @@
+package app;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import model.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless depot: serves one {@link Manager} over HTTP so several counter
+ * terminals can share it. Requests and responses are compact JSON.
+ * <pre>
+ *   GET  /queue?from=0&amp;count=100       customers waiting, in queue order
+ *   POST /queue   {"name":..,"parcelId":..}   enqueue a customer (201; 404 if no such parcel)
+ *   GET  /parcels?from=0&amp;count=100     parcels in the depot
+ *   GET  /parcels/{id}                   one parcel (404 if absent)
+ *   POST /parcels {"id":..,"length":..,"width":..,"height":..,"weight":..,"days":..}
+ *   POST /process                        serve the next customer
+ *   POST /collect {"name":..,"parcelId":..}   collect a parcel directly (404 if absent)
+ *   GET  /history?from=0&amp;count=100     processed and collected parcels, oldest first
+ *   GET  /history?since=ms&amp;until=ms&amp;count=100   the same by time
+ *   GET  /stats                          sizes, counters and the depot day
+ * </pre>
+ * Each request runs on its own virtual thread when the JDK has them (21+),
+ * otherwise on a fixed pool of {@code depot.server.threads} platform threads.
+ * The Manager is already safe for concurrent use, so handlers call it
+ * directly; pages are capped at {@value #MAX_PAGE} rows.
+ */
+public class DepotServer implements AutoCloseable {
+    static final int MAX_PAGE = 1000;
+    private static final int DEFAULT_PAGE = 100;
+
+    static {
+        // The JDK server writes headers and body separately; without
+        // TCP_NODELAY every response waits out the client's delayed ACK
+        // (~40 ms). It also closes pooled connections beyond 200 idle ones,
+        // which makes busy keep-alive clients fail. Both are read once, when
+        // the first server is created, and an explicit -D setting wins.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", "10000");
+        }
+    }
+
+    private final Manager manager;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Binds the server (port 0 picks a free port); call {@link #start()} to serve.
+     */
+    public DepotServer(Manager manager, int port) throws IOException {
+        this.manager = manager;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/queue", handler(this::queue));
+        server.createContext("/parcels", handler(this::parcels));
+        server.createContext("/process", handler(this::process));
+        server.createContext("/collect", handler(this::collect));
+        server.createContext("/history", handler(this::history));
+        server.createContext("/stats", handler(this::stats));
+    }
+
+    public void start() {
+        server.start();
+        Log.getInstance().log(Log.Level.INFO, "Depot server listening on port {}", getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for those in flight,
+     * then stops the request threads. Does not close the Manager.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * One virtual thread per task where available; otherwise a fixed pool of
+     * daemon threads, since the handlers only block briefly on Manager locks.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Integer.getInteger("depot.server.threads",
+                    Math.max(16, 4 * Runtime.getRuntime().availableProcessors()));
+            AtomicInteger n = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "depot-http-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // ---- endpoints ----
+
+    private Response queue(HttpExchange ex) throws IOException {
+        if (isPost(ex)) {
+            Map<String, Object> body = body(ex);
+            String name = Json.string(body, "name");
+            String pid = Json.string(body, "parcelId").toUpperCase();
+            if (!manager.getParcelMap().containsParcel(pid)) {
+                return Response.error(404, "Parcel " + pid + " not found");
+            }
+            Customer c = new Customer(manager.getCustomerQueue().nextSeqNumber(), name, pid);
+            manager.addCustomer(c);
+            Log.getInstance().addEntry("Server added new customer: " + c);
+            return new Response(201, customer(new Json().beginObject(), c).endObject());
+        }
+        requireGet(ex);
+        Map<String, String> q = query(ex);
+        QueueOfCustomers queue = manager.getCustomerQueue();
+        int size = queue.size();
+        int from = intParam(q, "from", 0);
+        int to = Math.min(size, from + pageSize(q));
+        Json json = new Json().beginObject().field("size", size).beginArray("customers");
+        for (int i = from; i < to; i++) {
+            Customer c = queue.get(i);
+            if (c == null) break; // served meanwhile
+            customer(json.beginObject(), c).endObject();
+        }
+        return Response.ok(json.endArray().endObject());
+    }
+
+    private Response parcels(HttpExchange ex) throws IOException {
+        if (isPost(ex)) {
+            Map<String, Object> body = body(ex);
+            Parcel p = new Parcel(Json.string(body, "id").toUpperCase(),
+                    Json.number(body, "length"), Json.number(body, "width"), Json.number(body, "height"),
+                    Json.number(body, "weight"), (int) Json.number(body, "days"));
+            manager.addParcel(p);
+            Log.getInstance().addEntry("Server added new parcel: " + p);
+            return new Response(201, parcel(new Json().beginObject(), p).endObject());
+        }
+        requireGet(ex);
+        String path = ex.getRequestURI().getPath();
+        if (path.length() > "/parcels/".length()) {
+            String pid = path.substring("/parcels/".length()).toUpperCase();
+            Parcel p = manager.getParcelMap().getParcel(pid);
+            if (p == null) return Response.error(404, "Parcel " + pid + " not found");
+            return Response.ok(parcel(new Json().beginObject(), p).endObject());
+        }
+        Map<String, String> q = query(ex);
+        ParcelMap map = manager.getParcelMap();
+        int size = map.size();
+        int from = intParam(q, "from", 0);
+        int to = Math.min(size, from + pageSize(q));
+        Json json = new Json().beginObject().field("size", size).beginArray("parcels");
+        for (int row = from; row < to; row++) {
+            Parcel p = map.getParcelAt(row);
+            if (p == null) break; // removed meanwhile
+            parcel(json.beginObject(), p).endObject();
+        }
+        return Response.ok(json.endArray().endObject());
+    }
+
+    private Response process(HttpExchange ex) {
+        requirePost(ex);
+        Manager.Outcome outcome = manager.serveNextCustomer(manager.getWorker());
+        Json json = new Json().beginObject();
+        Customer c = outcome.getCustomer();
+        if (c == null) {
+            json.field("status", "QUEUE_EMPTY");
+        } else {
+            json.field("status", outcome.isParcelFound() ? "PROCESSED" : "PARCEL_NOT_FOUND");
+            customer(json, c);
+            if (outcome.isParcelFound()) json.field("fee", round2(outcome.getFee()));
+        }
+        return Response.ok(json.field("queue", manager.getCustomerQueue().size()).endObject());
+    }
+
+    private Response collect(HttpExchange ex) throws IOException {
+        requirePost(ex);
+        Map<String, Object> body = body(ex);
+        String name = Json.string(body, "name");
+        String pid = Json.string(body, "parcelId").toUpperCase();
+        if (!manager.collectParcel(name, pid)) {
+            return Response.error(404, "Parcel " + pid + " not found");
+        }
+        return Response.ok(new Json().beginObject().field("collected", true)
+                .field("name", name).field("parcelId", pid).endObject());
+    }
+
+    private Response history(HttpExchange ex) {
+        requireGet(ex);
+        Map<String, String> q = query(ex);
+        ProcessedHistory history = manager.getProcessedHistory();
+        List<ProcessedHistory.Entry> entries;
+        if (q.containsKey("since") || q.containsKey("until")) {
+            entries = history.range(longParam(q, "since", 0), longParam(q, "until", Long.MAX_VALUE), pageSize(q));
+        } else {
+            entries = history.page(intParam(q, "from", 0), pageSize(q));
+        }
+        Json json = new Json().beginObject().field("size", history.size()).beginArray("entries");
+        for (ProcessedHistory.Entry e : entries) {
+            json.beginObject()
+                    .field("index", e.getIndex())
+                    .field("action", e.getAction().name())
+                    .field("parcelId", e.getParcelID())
+                    .field("customer", e.getCustomer())
+                    .field("fee", round2(e.getFee()))
+                    .field("time", e.getTimeMillis());
+            if (e.getAction() == ProcessedHistory.Action.OTHER) json.field("record", e.format());
+            json.endObject();
+        }
+        return Response.ok(json.endArray().endObject());
+    }
+
+    private Response stats(HttpExchange ex) {
+        requireGet(ex);
+        DepotMetrics metrics = DepotMetrics.getInstance();
+        return Response.ok(new Json().beginObject()
+                .field("queue", manager.getCustomerQueue().size())
+                .field("parcels", manager.getParcelMap().size())
+                .field("history", manager.getProcessedHistory().size())
+                .field("processed", metrics.getProcessedCount())
+                .field("collected", metrics.getCollectedCount())
+                .field("notFound", metrics.getNotFoundCount())
+                .field("scheduler", manager.getScheduler().getName())
+                .field("today", DepotClock.getInstance().todayDate().toString())
+                .endObject());
+    }
+
+    private static Json customer(Json json, Customer c) {
+        return json.field("seq", c.getSeqNumber())
+                .field("name", c.getName())
+                .field("parcelId", c.getDesiredParcelID());
+    }
+
+    private static Json parcel(Json json, Parcel p) {
+        return json.field("id", p.getParcelID())
+                .field("length", p.getLength())
+                .field("width", p.getWidth())
+                .field("height", p.getHeight())
+                .field("weight", p.getWeight())
+                .field("days", p.getDaysInDepot());
+    }
+
+    private static double round2(double fee) {
+        return Math.round(fee * 100) / 100.0;
+    }
+
+    // ---- plumbing ----
+
+    @FunctionalInterface
+    private interface Endpoint {
+        Response handle(HttpExchange exchange) throws IOException;
+    }
+
+    /** A response status and JSON body. */
+    private static final class Response {
+        final int status;
+        final String body;
+
+        Response(int status, Json body) {
+            this(status, body.toString());
+        }
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        static Response ok(Json body) {
+            return new Response(200, body);
+        }
+
+        static Response error(int status, String message) {
+            return new Response(status, new Json().beginObject().field("error", message).endObject());
+        }
+    }
+
+    /** Thrown by the request checks to answer with an error status. */
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message, null, false, false);
+            this.status = status;
+        }
+    }
+
+    private static HttpHandler handler(Endpoint endpoint) {
+        return ex -> {
+            Response response;
+            try {
+                response = endpoint.handle(ex);
+            } catch (HttpError e) {
+                response = Response.error(e.status, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                response = Response.error(400, e.getMessage());
+            } catch (RuntimeException e) {
+                Log.getInstance().log(Log.Level.ERROR, "Server error on {} {}: {}",
+                        ex.getRequestMethod(), ex.getRequestURI(), e.toString());
+                response = Response.error(500, "Internal error");
+            }
+            byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "application/json");
+            ex.sendResponseHeaders(response.status, bytes.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(bytes);
+            }
+        };
+    }
+
+    private static boolean isPost(HttpExchange ex) {
+        return ex.getRequestMethod().equalsIgnoreCase("POST");
+    }
+
+    private static void requirePost(HttpExchange ex) {
+        if (!isPost(ex)) throw new HttpError(405, "Use POST");
+    }
+
+    private static void requireGet(HttpExchange ex) {
+        if (!ex.getRequestMethod().equalsIgnoreCase("GET")) throw new HttpError(405, "Use GET");
+    }
+
+    private static Map<String, Object> body(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] bytes = in.readNBytes(64 * 1024 + 1);
+            if (bytes.length > 64 * 1024) throw new HttpError(413, "Request body too large");
+            return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange ex) {
+        Map<String, String> params = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static int pageSize(Map<String, String> q) {
+        return Math.min(MAX_PAGE, intParam(q, "count", DEFAULT_PAGE));
+    }
+
+    private static int intParam(Map<String, String> q, String name, int defaultValue) {
+        long v = longParam(q, name, defaultValue);
+        if (v > Integer.MAX_VALUE) throw new IllegalArgumentException(name + " is too large");
+        return (int) v;
+    }
+
+    private static long longParam(Map<String, String> q, String name, long defaultValue) {
+        String v = q.get(name);
+        if (v == null) return defaultValue;
+        try {
+            long n = Long.parseLong(v);
+            if (n < 0) throw new IllegalArgumentException(name + " must not be negative");
+            return n;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a whole number");
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package app;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the depot server: a builder that writes compact
+ * objects and arrays, and a reader for the flat request bodies it accepts
+ * (one object of string, number, boolean or null members).
+ */
+final class Json {
+    private final StringBuilder out;
+    private boolean first = true;
+
+    Json() {
+        this(new StringBuilder(128));
+    }
+
+    private Json(StringBuilder out) {
+        this.out = out;
+    }
+
+    Json beginObject() {
+        separate();
+        out.append('{');
+        first = true;
+        return this;
+    }
+
+    Json endObject() {
+        out.append('}');
+        first = false;
+        return this;
+    }
+
+    Json beginArray(String name) {
+        key(name);
+        out.append('[');
+        first = true;
+        return this;
+    }
+
+    Json endArray() {
+        out.append(']');
+        first = false;
+        return this;
+    }
+
+    Json field(String name, String value) {
+        key(name);
+        if (value == null) {
+            out.append("null");
+        } else {
+            quote(value);
+        }
+        return this;
+    }
+
+    Json field(String name, long value) {
+        key(name);
+        out.append(value);
+        return this;
+    }
+
+    Json field(String name, double value) {
+        key(name);
+        if (Double.isFinite(value)) {
+            out.append(value);
+        } else {
+            out.append("null");
+        }
+        return this;
+    }
+
+    Json field(String name, boolean value) {
+        key(name);
+        out.append(value);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void key(String name) {
+        separate();
+        quote(name);
+        out.append(':');
+    }
+
+    private void separate() {
+        if (!first) out.append(',');
+        first = false;
+    }
+
+    private void quote(String s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Reads a flat JSON object. Numbers come back as {@link Double}, so
+     * callers read them through {@link #number(Map, String)}.
+     *
+     * @throws IllegalArgumentException if the text is not such an object.
+     */
+    static Map<String, Object> parseObject(String text) {
+        Reader r = new Reader(text);
+        Map<String, Object> members = new LinkedHashMap<>();
+        r.expect('{');
+        if (!r.consume('}')) {
+            do {
+                String name = r.string();
+                r.expect(':');
+                members.put(name, r.value());
+            } while (r.consume(','));
+            r.expect('}');
+        }
+        r.end();
+        return members;
+    }
+
+    /** A required string member. */
+    static String string(Map<String, Object> members, String name) {
+        Object v = members.get(name);
+        if (!(v instanceof String) || ((String) v).trim().isEmpty()) {
+            throw new IllegalArgumentException("\"" + name + "\" must be a non-empty string");
+        }
+        return ((String) v).trim();
+    }
+
+    /** A required non-negative number member. */
+    static double number(Map<String, Object> members, String name) {
+        Object v = members.get(name);
+        if (!(v instanceof Double) || (Double) v < 0) {
+            throw new IllegalArgumentException("\"" + name + "\" must be a non-negative number");
+        }
+        return (Double) v;
+    }
+
+    private static final class Reader {
+        private final String s;
+        private int pos;
+
+        Reader(String s) {
+            this.s = s;
+        }
+
+        Object value() {
+            skipSpace();
+            if (pos >= s.length()) throw error("value expected");
+            char c = s.charAt(pos);
+            if (c == '"') return string();
+            if (s.startsWith("true", pos)) { pos += 4; return Boolean.TRUE; }
+            if (s.startsWith("false", pos)) { pos += 5; return Boolean.FALSE; }
+            if (s.startsWith("null", pos)) { pos += 4; return null; }
+            int start = pos;
+            while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) >= 0) pos++;
+            try {
+                return Double.valueOf(s.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error("value expected");
+            }
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder b = new StringBuilder();
+            while (pos < s.length()) {
+                char c = s.charAt(pos++);
+                if (c == '"') return b.toString();
+                if (c != '\\') {
+                    b.append(c);
+                    continue;
+                }
+                if (pos >= s.length()) break;
+                char e = s.charAt(pos++);
+                switch (e) {
+                    case 'n': b.append('\n'); break;
+                    case 'r': b.append('\r'); break;
+                    case 't': b.append('\t'); break;
+                    case 'b': b.append('\b'); break;
+                    case 'f': b.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > s.length()) throw error("bad escape");
+                        try {
+                            b.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("bad escape");
+                        }
+                        pos += 4;
+                        break;
+                    default: b.append(e);
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        void expect(char c) {
+            if (!consume(c)) throw error("'" + c + "' expected");
+        }
+
+        boolean consume(char c) {
+            skipSpace();
+            if (pos < s.length() && s.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void end() {
+            skipSpace();
+            if (pos != s.length()) throw error("unexpected text");
+        }
+
+        private void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        private IllegalArgumentException error(String what) {
+            return new IllegalArgumentException("Bad JSON at " + pos + ": " + what);
+        }
+    }
+}
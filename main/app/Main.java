@@ -1,42 +1,202 @@
 package app;
 
 import model.*;
+import view.CommandPipeline;
 import view.Gui;
 
 import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
 
 /**
  * Entry point for the Parcel Depot application.
- * Run with "console" argument for console-based processing,
+ * Run with "console" argument for console-based processing
+ * (optionally followed by the number of parallel workers),
+ * "report" (optionally followed by a report file and {@code --tail}) to print
+ * analytics over report.txt (see {@link ReportAnalytics}),
+ * "server" (optionally followed by a port, 8080 by default) to serve the
+ * depot over HTTP until stopped (see {@link DepotServer}),
  * or no argument for GUI mode.
+ * <p>
+ * Set the system property {@code depot.journal} to a directory to journal
+ * every change there and recover the depot from it on the next start
+ * ({@code depot.journal.sync} = NONE, GROUP or ALWAYS; GROUP by default).
+ * Set {@code depot.manifest} to a binary parcel manifest (built with
+ * {@link ParcelManifest}) to serve parcels from it instead of parcels.csv.
+ * Set {@code depot.scheduler} to fifo, shortest, days or fair to choose
+ * which customer is processed next (see {@link CustomerScheduler}).
+ * Set {@code depot.tariff} to a tariff rules file (see {@link Tariff}) to
+ * price parcels by it; the file is re-read whenever it changes. Run the JVM
+ * with {@code --add-modules jdk.incubator.vector} to compute bulk fees with
+ * the Vector API (see {@link Tariff#fees}); {@code depot.vector=false} turns
+ * that off again.
+ * In GUI mode the window shows at once and the data loads behind it; the
+ * times to first frame and to fully loaded are logged and published as metrics.
+ * Metrics are always published over JMX; set {@code depot.metrics.dump} to
+ * a number of seconds to also append a snapshot to metrics.txt that often.
  */
 public class Main {
-    public static void main(String[] args) {
+    /**
+     * How long the GUI's shutdown hook waits for queued commands before
+     * closing the manager anyway.
+     */
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5_000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equalsIgnoreCase("report")) {
+            ReportAnalytics.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        startMetrics();
+        loadTariff();
         if (args.length > 0 && args[0].equalsIgnoreCase("console")) {
-            runConsoleMode();
+            int workers = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+            runConsoleMode(workers);
+        } else if (args.length > 0 && args[0].equalsIgnoreCase("server")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            runServerMode(port);
         } else {
             runGuiMode();
         }
     }
 
+    private static void startMetrics() {
+        DepotMetrics.getInstance().registerMBean();
+        String dump = System.getProperty("depot.metrics.dump");
+        if (dump != null) {
+            DepotMetrics.getInstance().startSnapshots(Long.parseLong(dump), "main/resources/metrics.txt");
+        }
+    }
+
+    private static void loadTariff() {
+        String path = System.getProperty("depot.tariff");
+        if (path == null) return;
+        try {
+            Tariff.install(Tariff.load(path));
+        } catch (IOException | IllegalArgumentException e) {
+            Log.getInstance().log(Log.Level.ERROR, "Tariff {} not loaded, using the default: {}", path, e.getMessage());
+        }
+        Tariff.watch(path, 2);
+    }
+
+    /**
+     * Creates the manager and fills it, either by recovering the journal
+     * (when enabled and present) or by loading the CSV files.
+     */
+    private static Manager createManager() {
+        Manager manager = new Manager();
+        fillManager(manager, null);
+        return manager;
+    }
+
+    /**
+     * Recovers the journal into the manager (when enabled and present) or
+     * loads the CSV files, then attaches the configured scheduler and starts
+     * journaling if enabled. With a GUI, shows progress on it as the data
+     * comes in.
+     * <p>
+     * The scheduler is attached only once the parcels are in, because keyed
+     * schedulers rank each customer by its parcel when it joins them.
+     *
+     * @throws IllegalStateException if the journal exists but cannot be
+     *         recovered. The manager then holds part of the journaled state, so
+     *         the depot must not start from it, nor load the CSV files on top
+     *         of it, nor journal after the damaged records.
+     */
+    private static void fillManager(Manager manager, Gui gui) {
+        String journalDir = System.getProperty("depot.journal");
+        DepotJournal journal = null;
+        boolean recovered = false;
+        if (journalDir != null) {
+            DepotJournal.SyncPolicy policy = DepotJournal.SyncPolicy.valueOf(
+                    System.getProperty("depot.journal.sync", "GROUP").toUpperCase());
+            journal = new DepotJournal(new File(journalDir), policy, 5, 10_000);
+            showLoading(gui, "Recovering depot from " + journalDir + "...", -1);
+            try {
+                recovered = journal.recover(manager);
+            } catch (IOException e) {
+                Log.getInstance().log(Log.Level.ERROR, "Journal recovery from {} failed: {}", journalDir, e.getMessage());
+                throw new IllegalStateException("Journal recovery from " + journalDir + " failed (" + e.getMessage()
+                        + "); repair the journal or move it aside, then restart", e);
+            }
+        }
+        if (!recovered) {
+            manager.loadCustomers("main/resources/customers.csv", progress(gui, "customers"));
+            String manifest = System.getProperty("depot.manifest");
+            if (manifest != null && new File(manifest).isFile()) {
+                showLoading(gui, "Opening parcel manifest...", -1);
+                manager.loadManifest(manifest);
+            } else {
+                manager.loadParcels("main/resources/parcels.csv", progress(gui, "parcels"));
+            }
+        }
+        String scheduler = System.getProperty("depot.scheduler");
+        if (scheduler != null) {
+            manager.setScheduler(CustomerScheduler.forName(scheduler));
+        }
+        if (journal != null) {
+            try {
+                manager.enableJournal(journal);
+            } catch (IOException e) {
+                Log.getInstance().log(Log.Level.ERROR, "Could not start journal: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static CsvIngestor.Progress progress(Gui gui, String what) {
+        if (gui == null) return null;
+        showLoading(gui, "Loading " + what + "...", 0);
+        return (rows, bytesDone, bytesTotal) -> showLoading(gui, "Loading " + what + ": " + rows,
+                (int) (100 * bytesDone / Math.max(1, bytesTotal)));
+    }
+
+    private static void showLoading(Gui gui, String message, int percent) {
+        if (gui != null) {
+            SwingUtilities.invokeLater(() -> gui.showLoading(message, percent));
+        }
+    }
+
     /**
      * Loads data, processes all customers in queue, writes log to file, then exits.
      */
-    private static void runConsoleMode() {
+    private static void runConsoleMode(int workers) {
         System.out.println("Running in CONSOLE mode...");
 
-        Manager manager = new Manager();
-        manager.loadCustomers("main/resources/customers.csv");
-        manager.loadParcels("main/resources/parcels.csv");
+        Manager manager = createManager();
 
-        while (!manager.getCustomerQueue().isEmpty()) {
-            manager.processNextCustomer();
+        if (workers > 1) {
+            new ProcessingEngine(manager, workers).processAll();
+        } else {
+            System.out.println(manager.drainAll());
         }
 
+        manager.close();
         Log.getInstance().writeToFile("main/resources/eventsLog.txt");
         System.out.println("All customers processed. Log written to eventsLog.txt.");
     }
 
+    /**
+     * Loads data and serves it over HTTP until the process is stopped, then
+     * closes the depot and writes the log as console mode does.
+     */
+    private static void runServerMode(int port) throws IOException, InterruptedException {
+        System.out.println("Running in SERVER mode...");
+
+        Manager manager = createManager();
+        DepotServer server = new DepotServer(manager, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            manager.close();
+            Log.getInstance().writeToFile("main/resources/eventsLog.txt");
+        }, "depot-server-shutdown"));
+        server.start();
+        System.out.println("Listening on http://localhost:" + server.getPort() + "/ (Ctrl+C to stop)");
+        Thread.currentThread().join();
+    }
+
     /**
      * Loads data, launches the GUI, and attaches button listeners for user interactions.
      */
@@ -44,11 +204,20 @@ public class Main {
         System.out.println("Running in GUI mode...");
 
         Manager manager = new Manager();
-        manager.loadCustomers("main/resources/customers.csv");
-        manager.loadParcels("main/resources/parcels.csv");
 
         SwingUtilities.invokeLater(() -> {
             Gui gui = new Gui(manager);
+            CommandPipeline commands = new CommandPipeline(gui::refreshViews);
+            commands.setPendingListener(gui::showPendingCommands);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    commands.close(SHUTDOWN_TIMEOUT_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                manager.close();
+                Log.getInstance().flush();
+            }, "depot-gui-shutdown"));
 
             // Customer tab: "Collect Parcel" button
             gui.addCollectParcelListener(e -> {
@@ -63,13 +232,16 @@ public class Main {
                     return;
                 }
 
-                boolean success = manager.collectParcel(customerName.trim(), parcelID.trim());
-                if (success) {
-                    gui.showMessage("Parcel " + parcelID + " has been collected by " + customerName + ".");
-                } else {
-                    gui.showError("Parcel " + parcelID + " not found!");
-                }
-                gui.refreshViews();
+                commands.submit("collectParcel",
+                        () -> manager.collectParcel(customerName.trim(), parcelID.trim()),
+                        success -> {
+                            if (success) {
+                                gui.showStatus("Parcel " + parcelID + " has been collected by " + customerName + ".");
+                            } else {
+                                gui.showError("Parcel " + parcelID + " not found!");
+                            }
+                        },
+                        ex -> gui.showError("Could not collect parcel " + parcelID + ": " + ex.getMessage()));
             });
 
             // Worker tab: "Add Customer"
@@ -84,17 +256,23 @@ public class Main {
                     gui.showError("No parcel ID entered.");
                     return;
                 }
-                if (!manager.getParcelMap().containsParcel(parcelID.trim())) {
-                    gui.showError("Parcel ID " + parcelID + " doesn't exist in the parcel list.");
-                    return;
-                }
-                int seqNo = manager.getCustomerQueue().size() + 1;
-                Customer c = new Customer(seqNo, name.trim(), parcelID.trim());
-                manager.getCustomerQueue().enqueue(c);
-                Log.getInstance().addEntry("Worker added new customer: " + c);
 
-                gui.refreshViews();
-                gui.showMessage("Customer " + name + " added successfully!");
+                commands.submit("addCustomer", () -> {
+                    if (!manager.getParcelMap().containsParcel(parcelID.trim())) {
+                        return null;
+                    }
+                    int seqNo = manager.getCustomerQueue().nextSeqNumber();
+                    Customer c = new Customer(seqNo, name.trim(), parcelID.trim());
+                    manager.addCustomer(c);
+                    Log.getInstance().addEntry("Worker added new customer: " + c);
+                    return c;
+                }, c -> {
+                    if (c != null) {
+                        gui.showStatus("Customer " + name + " added successfully!");
+                    } else {
+                        gui.showError("Parcel ID " + parcelID + " doesn't exist in the parcel list.");
+                    }
+                }, ex -> gui.showError("Could not add customer " + name + ": " + ex.getMessage()));
             });
 
             // Worker tab: "Add Parcel"
@@ -116,26 +294,86 @@ public class Main {
                 if (days < 0) return;
 
                 Parcel p = new Parcel(pid.trim().toUpperCase(), length, width, height, weight, (int)days);
-                manager.getParcelMap().putParcel(p);
-                Log.getInstance().addEntry("Worker added new parcel: " + p);
-
-                gui.refreshViews();
-                gui.showMessage("Parcel " + pid + " added successfully.");
+                commands.submit("addParcel", () -> {
+                    manager.addParcel(p);
+                    Log.getInstance().addEntry("Worker added new parcel: " + p);
+                }, () -> gui.showStatus("Parcel " + pid + " added successfully."),
+                        ex -> gui.showError("Could not add parcel " + pid + ": " + ex.getMessage()));
             });
 
-            // Worker tab: "Process Parcel"
-            gui.addProcessParcelListener(e -> {
-                if (manager.getCustomerQueue().isEmpty()) {
-                    gui.showError("No customers in queue to process.");
-                    return;
-                }
-                manager.processNextCustomer();
-                gui.showMessage("Processed the next customer in the queue.");
-                gui.refreshViews();
+            // Worker tab: scheduling policy
+            gui.addSchedulerListener(e -> {
+                String name = gui.getSelectedScheduler();
+                commands.submit("setScheduler", () -> {
+                    if (!name.equals(manager.getScheduler().getName())) {
+                        manager.setScheduler(CustomerScheduler.forName(name));
+                    }
+                }, null, ex -> gui.showError("Could not switch scheduling to " + name + ": " + ex.getMessage()));
             });
 
+            // Worker tab: "Process Parcel". Each click queues one customer to
+            // serve; results go to the status bar so clicks are never blocked.
+            gui.addProcessParcelListener(e -> commands.submit("processParcel",
+                    () -> manager.serveNextCustomer(manager.getWorker()),
+                    outcome -> {
+                        Customer c = outcome.getCustomer();
+                        if (c == null) {
+                            gui.showStatus("No customers in queue to process.");
+                        } else if (outcome.isParcelFound()) {
+                            gui.showStatus(String.format(Locale.ROOT, "Processed %s: parcel %s, fee $%.2f",
+                                    c.getName(), c.getDesiredParcelID(), outcome.getFee()));
+                        } else {
+                            gui.showStatus("Processed " + c.getName() + ": parcel " + c.getDesiredParcelID() + " not found.");
+                        }
+                    },
+                    ex -> gui.showError("Could not process the next customer: " + ex.getMessage())));
+
+            gui.showLoading("Starting...", -1);
+            gui.whenFirstPainted(() -> {
+                long ms = ManagementFactory.getRuntimeMXBean().getUptime();
+                DepotMetrics.getInstance().firstFrame(ms);
+                Log.getInstance().log(Log.Level.INFO, "First frame {} ms after start", ms);
+                System.out.println("First frame after " + ms + " ms");
+            });
             gui.setVisible(true);
             gui.refreshViews();
+            loadInBackground(manager, gui);
         });
     }
+
+    /**
+     * Fills the manager on a background thread while the GUI is up. The
+     * tables fill as batches land; the actions stay disabled until the end.
+     */
+    private static void loadInBackground(Manager manager, Gui gui) {
+        Thread loader = new Thread(() -> {
+            String message;
+            boolean loaded = false;
+            try {
+                fillManager(manager, gui);
+                message = "Loaded " + manager.getCustomerQueue().size() + " customers and "
+                        + manager.getParcelMap().size() + " parcels";
+                loaded = true;
+            } catch (RuntimeException e) {
+                Log.getInstance().log(Log.Level.ERROR, "Loading failed: {}", e.toString());
+                message = "Loading failed: " + e.getMessage();
+            }
+            long ms = ManagementFactory.getRuntimeMXBean().getUptime();
+            DepotMetrics.getInstance().fullyLoaded(ms);
+            Log.getInstance().log(Log.Level.INFO, "Fully loaded {} ms after start", ms);
+            System.out.println("Fully loaded after " + ms + " ms");
+            String status = message + " (" + ms + " ms after start)";
+            boolean ok = loaded;
+            SwingUtilities.invokeLater(() -> {
+                gui.refreshViews();
+                if (ok) {
+                    gui.loadingFinished(status);
+                } else {
+                    gui.loadingFailed(status);
+                }
+            });
+        }, "depot-load");
+        loader.setDaemon(true);
+        loader.start();
+    }
 }
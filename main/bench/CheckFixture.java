@@ -0,0 +1,32 @@
+package bench;
+
+import model.Customer;
+import model.Parcel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory depot shared by the concurrency checks: parcels 1..n, each with
+ * one customer waiting for it. Even IDs are discounted ("C" + i), odd ones
+ * are not ("X" + i).
+ */
+final class CheckFixture {
+    final List<Parcel> parcels;
+    final List<Customer> customers;
+
+    CheckFixture(int count) {
+        parcels = new ArrayList<>(count);
+        customers = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            String pid = parcelID(i);
+            parcels.add(new Parcel(pid, 1 + i % 7, 2, 3, 4, i % 10));
+            customers.add(new Customer(i, "Customer" + i, pid));
+        }
+    }
+
+    /** ID of the i-th parcel (1-based). */
+    static String parcelID(int i) {
+        return (i % 2 == 0 ? "C" : "X") + i;
+    }
+}
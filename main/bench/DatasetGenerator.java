@@ -0,0 +1,188 @@
+package bench;
+
+import model.Customer;
+import model.Parcel;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic depot data in the CSV layouts the depot loads
+ * (parcels: "ParcelID,Length,Width,Height,Weight,Days"; customers:
+ * "Name,ParcelID"). The same parameters and seed always give the same data,
+ * so results from different commits are comparable.
+ */
+public class DatasetGenerator {
+    private final int parcels;
+    private final int customers;
+    private final double missingRate;
+    private final double discountedRate;
+    private final double skew;
+    private final long seed;
+
+    /**
+     * @param parcels     number of parcels.
+     * @param customers   number of customers; each asks for a distinct parcel
+     *                    while there are enough, then repeats IDs.
+     * @param missingRate fraction of customers asking for a parcel that does not exist.
+     * @param seed        random seed.
+     */
+    public DatasetGenerator(int parcels, int customers, double missingRate, long seed) {
+        this(parcels, customers, missingRate, 1.0 / 3, 0, seed);
+    }
+
+    /**
+     * @param discountedRate fraction of parcel IDs starting with 'C' (discounted).
+     * @param skew           Zipf exponent of how customers pick parcels: 0 gives
+     *                       each customer a distinct parcel; around 1 a few
+     *                       parcels draw most requests, so repeat requests for
+     *                       an already collected parcel fail as "not found".
+     */
+    public DatasetGenerator(int parcels, int customers, double missingRate, double discountedRate,
+                            double skew, long seed) {
+        this.parcels = parcels;
+        this.customers = customers;
+        this.missingRate = missingRate;
+        this.discountedRate = discountedRate;
+        this.skew = skew;
+        this.seed = seed;
+    }
+
+    public int getParcelCount() {
+        return parcels;
+    }
+
+    public int getCustomerCount() {
+        return customers;
+    }
+
+    /** ID of the i-th generated parcel. */
+    public String parcelId(int i) {
+        boolean discounted = (mix(seed ^ i) & 0xFFFF) < discountedRate * 0x10000;
+        return (discounted ? "C" : "X") + i;
+    }
+
+    public List<Parcel> parcels() {
+        Random random = new Random(seed);
+        List<Parcel> result = new ArrayList<>(parcels);
+        for (int i = 0; i < parcels; i++) {
+            result.add(new Parcel(parcelId(i),
+                    1 + random.nextInt(100) / 2.0,
+                    1 + random.nextInt(100) / 2.0,
+                    1 + random.nextInt(100) / 2.0,
+                    0.5 + random.nextInt(400) / 8.0,
+                    random.nextInt(60)));
+        }
+        return result;
+    }
+
+    public List<Customer> customers() {
+        Random random = new Random(seed * 31 + 7);
+        int[] order = permutation(random);
+        double[] zipf = skew > 0 ? zipfCumulative() : null;
+        List<Customer> result = new ArrayList<>(customers);
+        for (int i = 0; i < customers; i++) {
+            String pid;
+            if (random.nextDouble() < missingRate || parcels == 0) {
+                pid = "X" + (parcels + i); // never generated
+            } else if (zipf != null) {
+                pid = parcelId(order[zipfRank(zipf, random.nextDouble())]);
+            } else {
+                pid = parcelId(order[i % parcels]);
+            }
+            result.add(new Customer(i + 1, "Customer " + i, pid));
+        }
+        return result;
+    }
+
+    /**
+     * Writes parcels.csv and customers.csv into the directory (created if missing).
+     */
+    public Dataset writeTo(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File parcelFile = new File(dir, "parcels.csv");
+        File customerFile = new File(dir, "customers.csv");
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(parcelFile), 1 << 16)) {
+            for (Parcel p : parcels()) {
+                out.write(p.getParcelID() + "," + p.getLength() + "," + p.getWidth() + "," + p.getHeight()
+                        + "," + p.getWeight() + "," + p.getDaysInDepot());
+                out.newLine();
+            }
+        }
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(customerFile), 1 << 16)) {
+            for (Customer c : customers()) {
+                out.write(c.getName() + "," + c.getDesiredParcelID());
+                out.newLine();
+            }
+        }
+        return new Dataset(parcelFile, customerFile);
+    }
+
+    private int[] permutation(Random random) {
+        int[] order = new int[parcels];
+        for (int i = 0; i < parcels; i++) {
+            order[i] = i;
+        }
+        for (int i = parcels - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        return order;
+    }
+
+    /** Cumulative Zipf distribution over parcel ranks 0..parcels-1. */
+    private double[] zipfCumulative() {
+        double[] cumulative = new double[parcels];
+        double total = 0;
+        for (int r = 0; r < parcels; r++) {
+            total += 1 / Math.pow(r + 1, skew);
+            cumulative[r] = total;
+        }
+        for (int r = 0; r < parcels; r++) {
+            cumulative[r] /= total;
+        }
+        return cumulative;
+    }
+
+    private static int zipfRank(double[] cumulative, double u) {
+        int i = Arrays.binarySearch(cumulative, u);
+        return Math.min(cumulative.length - 1, i >= 0 ? i : -i - 1);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The pair of CSV files written by {@link #writeTo(File)}.
+     */
+    public static class Dataset {
+        private final File parcels;
+        private final File customers;
+
+        Dataset(File parcels, File customers) {
+            this.parcels = parcels;
+            this.customers = customers;
+        }
+
+        public String getParcelsPath() {
+            return parcels.getPath();
+        }
+
+        public String getCustomersPath() {
+            return customers.getPath();
+        }
+    }
+}
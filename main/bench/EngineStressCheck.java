@@ -0,0 +1,93 @@
+package bench;
+
+import model.Log;
+import model.Manager;
+import model.ProcessedHistory;
+import model.ProcessingEngine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stress check for {@link ProcessingEngine}: several workers process the
+ * queue while collector threads race them with direct collections of the
+ * same parcel IDs. Verifies that every parcel was handed out exactly once.
+ * <p>
+ * Usage: {@code EngineStressCheck [workers] [parcels]}
+ * <br>Exits with status 1 if the check fails.
+ */
+public class EngineStressCheck {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int workerCount = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int parcelCount = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int collectorCount = 2;
+
+        Log.getInstance().setConsoleLevel(Log.Level.ERROR);
+        File report = File.createTempFile("stress-report", ".txt");
+        report.deleteOnExit();
+        Manager manager = new Manager(report.getPath());
+        CheckFixture fixture = new CheckFixture(parcelCount);
+        manager.getParcelMap().putAll(fixture.parcels);
+        fixture.customers.forEach(manager.getCustomerQueue()::enqueue);
+
+        AtomicInteger collected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] collectors = new Thread[collectorCount];
+        for (int i = 0; i < collectorCount; i++) {
+            long seed = i;
+            collectors[i] = new Thread(() -> {
+                Random rnd = new Random(seed);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int n = 0; n < parcelCount / 2; n++) {
+                    int id = 1 + rnd.nextInt(parcelCount);
+                    if (manager.collectParcel("Collector", CheckFixture.parcelID(id))) {
+                        collected.incrementAndGet();
+                    }
+                }
+            }, "depot-collector-" + (i + 1));
+            collectors[i].start();
+        }
+
+        ProcessingEngine engine = new ProcessingEngine(manager, workerCount);
+        long startNanos = System.nanoTime();
+        start.countDown();
+        int dequeued = engine.processAll();
+        for (Thread t : collectors) {
+            t.join();
+        }
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+
+        ProcessedHistory history = manager.getProcessedHistory();
+        Set<String> seen = new HashSet<>();
+        int[] duplicates = {0};
+        history.forEach(0, history.size(), e -> {
+            if (!seen.add(e.getParcelID())) {
+                duplicates[0]++;
+            }
+        });
+        manager.close();
+
+        boolean ok = dequeued == parcelCount
+                && duplicates[0] == 0
+                && seen.size() == parcelCount
+                && manager.getParcelMap().getAllParcels().isEmpty();
+        System.out.println("Workers: " + workerCount + ", parcels: " + parcelCount
+                + ", dequeued: " + dequeued + ", collected directly: " + collected.get()
+                + ", handed out: " + seen.size() + ", duplicates: " + duplicates[0]
+                + ", elapsed: " + elapsedMs + " ms");
+        System.out.println(ok ? "STRESS CHECK PASSED" : "STRESS CHECK FAILED");
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+}
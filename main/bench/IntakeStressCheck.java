@@ -0,0 +1,212 @@
+package bench;
+
+import model.BoundedCustomerQueue;
+import model.Customer;
+import model.QueueOfCustomers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrency stress check for {@link BoundedCustomerQueue}: producers and
+ * consumers hammer a small queue with every enqueue and dequeue variant,
+ * then the check verifies that each customer came out exactly once and that
+ * customers from one producer reached each consumer in the order they were
+ * enqueued. Also checks the REJECT and DROP_OLDEST policies.
+ * <p>
+ * Usage: {@code IntakeStressCheck [producers] [consumers] [perProducer] [capacity] [rounds]}
+ * <br>Exits with status 1 on the first violation.
+ */
+public class IntakeStressCheck {
+    /** Tells a consumer that the producers are done. */
+    private static final Customer END = new Customer(-1, "END", "-");
+
+    public static void main(String[] args) throws Exception {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int consumers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int perProducer = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        int capacity = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        int rounds = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+
+        for (int round = 1; round <= rounds; round++) {
+            long start = System.nanoTime();
+            String failure = transfer(producers, consumers, perProducer, capacity);
+            if (failure != null) {
+                System.out.println("FAILED round " + round + ": " + failure);
+                System.exit(1);
+            }
+            System.out.printf("round %d: %,d customers through %d producers / %d consumers, capacity %d, in %d ms%n",
+                    round, (long) producers * perProducer, producers, consumers, capacity,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        String failure = checkPolicies();
+        if (failure != null) {
+            System.out.println("FAILED policies: " + failure);
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Customer sequence numbers encode producer * perProducer + index, so a
+     * consumer can check per-producer order without any shared state. Once
+     * the producers finish, one END marker per consumer stops the consumers.
+     *
+     * @return a description of the first violation, or null.
+     */
+    private static String transfer(int producers, int consumers, int perProducer, int capacity)
+            throws InterruptedException {
+        BoundedCustomerQueue queue = new BoundedCustomerQueue(capacity, BoundedCustomerQueue.WhenFull.BLOCK);
+        int total = producers * perProducer;
+        AtomicReferenceArray<Customer> seen = new AtomicReferenceArray<>(total);
+        AtomicInteger taken = new AtomicInteger();
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(new Thread(() -> {
+                try {
+                    go.await();
+                    for (int i = 0; i < perProducer && failure.get() == null; i++) {
+                        Customer c = new Customer(producer * perProducer + i, "P" + producer, "X" + i);
+                        switch (ThreadLocalRandom.current().nextInt(3)) {
+                            case 0:
+                                while (!queue.tryEnqueue(c)) {
+                                    Thread.onSpinWait();
+                                }
+                                break;
+                            case 1:
+                                while (!queue.tryEnqueue(c, 50, TimeUnit.MICROSECONDS)) {
+                                    // keep trying
+                                }
+                                break;
+                            default:
+                                queue.enqueue(c);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    failure.compareAndSet(null, "producer interrupted");
+                }
+            }, "producer-" + p));
+        }
+        for (int k = 0; k < consumers; k++) {
+            threads.add(new Thread(() -> {
+                int[] lastFrom = new int[producers];
+                Arrays.fill(lastFrom, -1);
+                List<Customer> batch = new ArrayList<>();
+                try {
+                    go.await();
+                    boolean done = false;
+                    while (!done && failure.get() == null) {
+                        batch.clear();
+                        switch (ThreadLocalRandom.current().nextInt(5)) {
+                            case 0:
+                                addIfPresent(batch, queue.dequeue());
+                                break;
+                            case 1:
+                                addIfPresent(batch, queue.dequeue(100, TimeUnit.MICROSECONDS));
+                                break;
+                            case 2:
+                                addIfPresent(batch, queue.dequeueBlocking());
+                                break;
+                            case 3:
+                                queue.drainTo(batch, 1 + ThreadLocalRandom.current().nextInt(32));
+                                break;
+                            default:
+                                addIfPresent(batch, queue.dequeue(1, TimeUnit.MILLISECONDS));
+                        }
+                        for (Customer c : batch) {
+                            if (c == END) {
+                                if (done) queue.enqueueBlocking(END); // leave it for another consumer
+                                done = true;
+                                continue;
+                            }
+                            String problem = check(c, perProducer, lastFrom, seen);
+                            if (problem != null) failure.compareAndSet(null, problem);
+                            taken.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    failure.compareAndSet(null, "consumer interrupted");
+                }
+            }, "consumer-" + k));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        go.countDown();
+        for (Thread t : threads.subList(0, producers)) {
+            t.join(TimeUnit.MINUTES.toMillis(2));
+        }
+        for (int k = 0; k < consumers; k++) {
+            queue.enqueueBlocking(END);
+        }
+        for (Thread t : threads) {
+            t.join(TimeUnit.MINUTES.toMillis(2));
+            if (t.isAlive()) {
+                failure.compareAndSet(null, t.getName() + " stuck; " + taken.get() + " of " + total + " taken");
+                for (Thread other : threads) {
+                    other.interrupt();
+                }
+            }
+        }
+        if (failure.get() != null) return failure.get();
+        for (int i = 0; i < total; i++) {
+            if (seen.get(i) == null) return "customer " + i + " lost";
+        }
+        if (!queue.isEmpty()) return "queue not empty at the end: " + queue.size();
+        return null;
+    }
+
+    private static void addIfPresent(List<Customer> batch, Customer c) {
+        if (c != null) batch.add(c);
+    }
+
+    private static String check(Customer c, int perProducer, int[] lastFrom, AtomicReferenceArray<Customer> seen) {
+        int seq = c.getSeqNumber();
+        if (!seen.compareAndSet(seq, null, c)) return "customer " + seq + " dequeued twice";
+        int producer = seq / perProducer;
+        int index = seq % perProducer;
+        if (index <= lastFrom[producer]) {
+            return "producer " + producer + " order broken: " + index + " after " + lastFrom[producer];
+        }
+        lastFrom[producer] = index;
+        return null;
+    }
+
+    private static String checkPolicies() throws InterruptedException {
+        BoundedCustomerQueue reject = new BoundedCustomerQueue(4, BoundedCustomerQueue.WhenFull.REJECT);
+        for (int i = 0; i < 6; i++) {
+            reject.enqueue(new Customer(i, "R", "X" + i));
+        }
+        if (reject.size() != 4 || reject.getRejectedCount() != 2) {
+            return "REJECT kept " + reject.size() + ", rejected " + reject.getRejectedCount();
+        }
+        if (reject.dequeue().getSeqNumber() != 0) return "REJECT lost the head";
+        if (!reject.tryEnqueue(new Customer(9, "R", "X9"), 1, TimeUnit.MILLISECONDS)) {
+            return "timed enqueue failed with space available";
+        }
+
+        BoundedCustomerQueue drop = new BoundedCustomerQueue(4, BoundedCustomerQueue.WhenFull.DROP_OLDEST);
+        for (int i = 0; i < 6; i++) {
+            drop.enqueue(new Customer(i, "D", "X" + i));
+        }
+        QueueOfCustomers target = new QueueOfCustomers();
+        int moved = drop.drainTo(target, 10);
+        if (moved != 4 || drop.getDroppedCount() != 2 || target.get(0).getSeqNumber() != 2
+                || target.get(3).getSeqNumber() != 5) {
+            return "DROP_OLDEST kept " + target.getAllCustomers() + ", dropped " + drop.getDroppedCount();
+        }
+        if (drop.dequeue(1, TimeUnit.MILLISECONDS) != null) return "timed dequeue on empty queue returned a customer";
+        return null;
+    }
+}
@@ -0,0 +1,516 @@
+package bench;
+
+import model.Customer;
+import model.LatencyHistogram;
+import model.Log;
+import model.Manager;
+import model.Parcel;
+import model.ReportWriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drives a real {@link Manager} with a stream of depot operations (process
+ * next customer, collect, add customer, add parcel) and reports sustained
+ * throughput and p50/p99/p999 latency per operation type.
+ * <p>
+ * Usage:
+ * <pre>
+ *   LoadHarness generate &lt;dir&gt; [data options]
+ *   LoadHarness synthetic [data options] [--ops=N] [--mix=process:70,collect:20,addCustomer:5,addParcel:5]
+ *                         [--rate=ops/s] [run options]
+ *   LoadHarness replay &lt;report.txt|eventsLog.txt&gt;... [--data=dir] [--speed=x] [run options]
+ *
+ *   data options: --parcels=N --customers=N --skew=S --missing=R --seed=N
+ *   run options:  --threads=N --repeat=N --report=file|none --out=results.csv --label=name
+ * </pre>
+ * Replay reads the operations recorded in report.txt (processed, collected
+ * and failed entries) and in the event log (customers and parcels added by
+ * staff). Without --data, the depot starts with the parcels the trace
+ * shows as found, so the recorded "not found" failures recur. With
+ * --speed=x the recorded gaps are kept (x times faster) and latency is
+ * measured from each operation's scheduled time, so a stalled depot shows
+ * up as queueing delay; without it operations run back to back.
+ */
+public class LoadHarness {
+    enum OpType { PROCESS, COLLECT, ADD_CUSTOMER, ADD_PARCEL }
+
+    /** One operation of a load stream, due {@code atNanos} after the start. */
+    static final class Op {
+        final OpType type;
+        final long atNanos;
+        final String name;
+        final String parcelID;
+        final Parcel parcel;   // ADD_PARCEL only
+        final boolean found;   // whether the trace recorded success
+
+        Op(OpType type, long atNanos, String name, String parcelID, Parcel parcel, boolean found) {
+            this.type = type;
+            this.atNanos = atNanos;
+            this.name = name;
+            this.parcelID = parcelID;
+            this.parcel = parcel;
+            this.found = found;
+        }
+    }
+
+    private static final DateTimeFormatter REPORT_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter LOG_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final Pattern REPORT_LINE = Pattern.compile("^\\[(\\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d)] (.*)$");
+    private static final Pattern LOG_LINE =
+            Pattern.compile("^(\\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d\\.\\d{3}) [A-Z]+ (.*)$");
+    private static final Pattern PROCESSED = Pattern.compile("^Processed Parcel ID (\\S+) for (.*?) \\| Fee:");
+    private static final Pattern PROCESS_FAILED = Pattern.compile("^Failed to process Parcel ID (\\S+) for (.*) - Parcel not found\\.");
+    private static final Pattern COLLECTED = Pattern.compile("^Collected Parcel ID (\\S+) by (.*?) \\| Fee:");
+    private static final Pattern COLLECT_FAILED = Pattern.compile("^Failed to collect Parcel ID (\\S+) by (.*) - Parcel not found\\.");
+    private static final Pattern NOTHING_TO_PROCESS = Pattern.compile("^Attempted to process parcel but no customers in queue\\.");
+    private static final Pattern ADDED_CUSTOMER = Pattern.compile("^Worker added new customer: C\\d+ - (.*) \\(Parcel: (\\S+)\\)$");
+    private static final Pattern ADDED_PARCEL = Pattern.compile(
+            "^Worker added new parcel: Parcel\\{ID='([^']*)', dim=([^x]+)x([^x]+)x([^,]+), weight=([^,]+), daysInDepot=(-?\\d+)");
+
+    private static final long SPIN_NANOS = 200_000;
+
+    private final Map<OpType, LatencyHistogram> latencies = new EnumMap<>(OpType.class);
+    private final Map<OpType, AtomicLong> failures = new EnumMap<>(OpType.class);
+    private final LatencyHistogram overall = new LatencyHistogram();
+
+    public LoadHarness() {
+        for (OpType t : OpType.values()) {
+            latencies.put(t, new LatencyHistogram());
+            failures.put(t, new AtomicLong());
+        }
+    }
+
+    // --- trace reading ---
+
+    /**
+     * Reads the operations recorded in report and event-log files, merged in
+     * time order. Unrecognised lines are skipped.
+     */
+    static List<Op> readTrace(List<File> files) throws IOException {
+        List<long[]> order = new ArrayList<>(); // {epochMillis, sequence}
+        List<Op> raw = new ArrayList<>();
+        for (File file : files) {
+            try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    long millis;
+                    String entry;
+                    Matcher m = REPORT_LINE.matcher(line);
+                    if (m.matches()) {
+                        millis = epochMillis(m.group(1), REPORT_TIME);
+                        entry = m.group(2);
+                    } else if ((m = LOG_LINE.matcher(line)).matches()) {
+                        millis = epochMillis(m.group(1), LOG_TIME);
+                        entry = m.group(2);
+                    } else {
+                        continue;
+                    }
+                    Op op = parseEntry(entry);
+                    if (op != null) {
+                        order.add(new long[]{millis, raw.size()});
+                        raw.add(op);
+                    }
+                }
+            }
+        }
+        order.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        List<Op> ops = new ArrayList<>(raw.size());
+        long first = order.isEmpty() ? 0 : order.get(0)[0];
+        for (long[] o : order) {
+            Op op = raw.get((int) o[1]);
+            ops.add(new Op(op.type, (o[0] - first) * 1_000_000, op.name, op.parcelID, op.parcel, op.found));
+        }
+        return ops;
+    }
+
+    private static long epochMillis(String text, DateTimeFormatter format) {
+        return LocalDateTime.parse(text, format).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static Op parseEntry(String entry) {
+        Matcher m;
+        if ((m = PROCESSED.matcher(entry)).find()) {
+            return new Op(OpType.PROCESS, 0, m.group(2), m.group(1), null, true);
+        }
+        if ((m = PROCESS_FAILED.matcher(entry)).find()) {
+            return new Op(OpType.PROCESS, 0, m.group(2), m.group(1), null, false);
+        }
+        if ((m = COLLECTED.matcher(entry)).find()) {
+            return new Op(OpType.COLLECT, 0, m.group(2), m.group(1), null, true);
+        }
+        if ((m = COLLECT_FAILED.matcher(entry)).find()) {
+            return new Op(OpType.COLLECT, 0, m.group(2), m.group(1), null, false);
+        }
+        if (NOTHING_TO_PROCESS.matcher(entry).find()) {
+            return new Op(OpType.PROCESS, 0, null, null, null, false);
+        }
+        if ((m = ADDED_CUSTOMER.matcher(entry)).find()) {
+            return new Op(OpType.ADD_CUSTOMER, 0, m.group(1), m.group(2), null, true);
+        }
+        if ((m = ADDED_PARCEL.matcher(entry)).find()) {
+            try {
+                Parcel p = new Parcel(m.group(1), Double.parseDouble(m.group(2)), Double.parseDouble(m.group(3)),
+                        Double.parseDouble(m.group(4)), Double.parseDouble(m.group(5)), Integer.parseInt(m.group(6)));
+                return new Op(OpType.ADD_PARCEL, 0, null, p.getParcelID(), p, true);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parcels a trace needs to find at start: every ID it processed or
+     * collected successfully without adding it first. Dimensions are made up.
+     */
+    static List<Parcel> initialParcels(List<Op> ops, long seed) {
+        Random random = new Random(seed);
+        Set<String> added = new HashSet<>();
+        Map<String, Parcel> needed = new LinkedHashMap<>();
+        for (Op op : ops) {
+            if (op.type == OpType.ADD_PARCEL) {
+                added.add(op.parcelID);
+            } else if (op.found && op.parcelID != null && (op.type == OpType.PROCESS || op.type == OpType.COLLECT)
+                    && !added.contains(op.parcelID) && !needed.containsKey(op.parcelID)) {
+                needed.put(op.parcelID, new Parcel(op.parcelID, 1 + random.nextInt(10), 1 + random.nextInt(10),
+                        1 + random.nextInt(10), 1 + random.nextInt(20), random.nextInt(30)));
+            }
+        }
+        return new ArrayList<>(needed.values());
+    }
+
+    // --- synthetic streams ---
+
+    /**
+     * Builds a stream of operations over the dataset's customers and parcels.
+     *
+     * @param mix          relative weights of PROCESS, COLLECT, ADD_CUSTOMER, ADD_PARCEL.
+     * @param opsPerSecond Poisson arrival rate, or 0 for no timing.
+     */
+    static List<Op> synthesize(DatasetGenerator data, int count, int[] mix, double opsPerSecond, long seed) {
+        Random random = new Random(seed);
+        List<Customer> requests = data.customers();
+        int total = 0;
+        for (int w : mix) {
+            total += w;
+        }
+        List<Op> ops = new ArrayList<>(count);
+        double at = 0;
+        int addedParcels = 0;
+        for (int i = 0; i < count; i++) {
+            if (opsPerSecond > 0) {
+                at += -Math.log(1 - random.nextDouble()) / opsPerSecond * 1e9;
+            }
+            int pick = random.nextInt(Math.max(1, total));
+            OpType type = OpType.PROCESS;
+            for (int t = 0; t < mix.length; t++) {
+                if (pick < mix[t]) {
+                    type = OpType.values()[t];
+                    break;
+                }
+                pick -= mix[t];
+            }
+            Customer c = requests.isEmpty() ? null : requests.get(random.nextInt(requests.size()));
+            switch (type) {
+                case COLLECT:
+                case ADD_CUSTOMER:
+                    if (c == null) continue;
+                    ops.add(new Op(type, (long) at, c.getName(), c.getDesiredParcelID(), null, true));
+                    break;
+                case ADD_PARCEL:
+                    String id = "X" + (data.getParcelCount() + data.getCustomerCount() + addedParcels++);
+                    ops.add(new Op(type, (long) at, null, id, new Parcel(id, 1 + random.nextInt(50),
+                            1 + random.nextInt(50), 1 + random.nextInt(50), 1 + random.nextInt(50),
+                            random.nextInt(60)), true));
+                    break;
+                default:
+                    ops.add(new Op(type, (long) at, null, null, null, true));
+            }
+        }
+        return ops;
+    }
+
+    // --- running ---
+
+    /**
+     * Runs the operations on {@code threads} threads, each taking the next
+     * operation in order. With {@code speed > 0} every operation waits for
+     * its scheduled time ({@code atNanos / speed}) and its latency counts from
+     * then; otherwise they run back to back and latency is service time.
+     *
+     * @return wall-clock nanoseconds for the whole stream.
+     */
+    long run(Manager manager, List<Op> ops, int threads, double speed) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger seq = new AtomicInteger(manager.getCustomerQueue().size() + 1_000_000);
+        long start = System.nanoTime();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < ops.size()) {
+                    Op op = ops.get(i);
+                    long due = speed > 0 ? start + (long) (op.atNanos / speed) : 0;
+                    if (speed > 0) {
+                        long wait;
+                        while ((wait = due - System.nanoTime()) > 0) {
+                            if (wait > SPIN_NANOS) {
+                                LockSupport.parkNanos(wait - SPIN_NANOS);
+                            } else {
+                                Thread.onSpinWait(); // park overshoots by far more than this
+                            }
+                        }
+                    }
+                    if (op.type == OpType.PROCESS && op.name != null && manager.getCustomerQueue().isEmpty()) {
+                        // replayed customer: queue them up first (not timed)
+                        manager.getCustomerQueue().enqueue(new Customer(seq.getAndIncrement(), op.name, op.parcelID));
+                    }
+                    long opStart = System.nanoTime();
+                    boolean ok = apply(manager, op, seq);
+                    long end = System.nanoTime();
+                    long latency = end - (speed > 0 ? due : opStart);
+                    latencies.get(op.type).record(latency);
+                    overall.record(latency);
+                    if (!ok) failures.get(op.type).incrementAndGet();
+                }
+            }, "load-" + (t + 1));
+            workers[t].start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static boolean apply(Manager manager, Op op, AtomicInteger seq) {
+        switch (op.type) {
+            case PROCESS:
+                return manager.processNextCustomer(manager.getWorker());
+            case COLLECT:
+                return manager.collectParcel(op.name, op.parcelID);
+            case ADD_CUSTOMER:
+                manager.addCustomer(new Customer(seq.getAndIncrement(), op.name, op.parcelID));
+                return true;
+            default:
+                Parcel p = op.parcel;
+                manager.addParcel(new Parcel(p.getParcelID(), p.getLength(), p.getWidth(), p.getHeight(),
+                        p.getWeight(), p.getDaysInDepot()));
+                return true;
+        }
+    }
+
+    /**
+     * Prints one line per operation type plus a total, and appends the same
+     * to the CSV file if given.
+     */
+    void report(long wallNanos, String label, int threads, double speed, File csv, PrintStream out)
+            throws IOException {
+        double seconds = wallNanos / 1e9;
+        out.printf(Locale.ROOT, "%-13s %10s %12s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "ops/s", "failed", "p50", "p99", "p999", "max");
+        Map<String, LatencyHistogram> rows = new LinkedHashMap<>();
+        Map<String, Long> failed = new HashMap<>();
+        long totalFailed = 0;
+        for (OpType t : OpType.values()) {
+            if (latencies.get(t).getCount() == 0) continue;
+            rows.put(t.name().toLowerCase(Locale.ROOT), latencies.get(t));
+            failed.put(t.name().toLowerCase(Locale.ROOT), failures.get(t).get());
+            totalFailed += failures.get(t).get();
+        }
+        rows.put("total", overall);
+        failed.put("total", totalFailed);
+        PrintWriter csvOut = null;
+        if (csv != null) {
+            boolean fresh = !csv.exists();
+            csvOut = new PrintWriter(new FileWriter(csv, true));
+            if (fresh) {
+                csvOut.println("time,label,threads,speed,operation,count,ops_per_sec,failed,"
+                        + "p50_ns,p99_ns,p999_ns,max_ns,mean_ns");
+            }
+        }
+        String now = LocalDateTime.now().format(REPORT_TIME);
+        for (Map.Entry<String, LatencyHistogram> e : rows.entrySet()) {
+            LatencyHistogram h = e.getValue();
+            out.printf(Locale.ROOT, "%-13s %10d %12.0f %10d %10s %10s %10s %10s%n", e.getKey(), h.getCount(),
+                    h.getCount() / seconds, failed.get(e.getKey()),
+                    LatencyHistogram.formatNanos(h.getPercentile(0.5)),
+                    LatencyHistogram.formatNanos(h.getPercentile(0.99)),
+                    LatencyHistogram.formatNanos(h.getPercentile(0.999)),
+                    LatencyHistogram.formatNanos(h.getMax()));
+            if (csvOut != null) {
+                csvOut.printf(Locale.ROOT, "%s,%s,%d,%s,%s,%d,%.1f,%d,%d,%d,%d,%d,%.0f%n", now,
+                        label == null ? "" : label, threads, speed, e.getKey(), h.getCount(), h.getCount() / seconds,
+                        failed.get(e.getKey()), h.getPercentile(0.5), h.getPercentile(0.99),
+                        h.getPercentile(0.999), h.getMax(), h.getMean());
+            }
+        }
+        out.printf(Locale.ROOT, "wall time %.3f s%n", seconds);
+        if (csvOut != null) {
+            csvOut.close();
+        }
+    }
+
+    // --- command line ---
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            usage();
+            return;
+        }
+        Map<String, String> options = new HashMap<>();
+        List<String> positional = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                int eq = args[i].indexOf('=');
+                options.put(eq < 0 ? args[i].substring(2) : args[i].substring(2, eq),
+                        eq < 0 ? "true" : args[i].substring(eq + 1));
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        int parcels = Integer.parseInt(options.getOrDefault("parcels", "10000"));
+        int customers = Integer.parseInt(options.getOrDefault("customers", String.valueOf(parcels)));
+        DatasetGenerator data = new DatasetGenerator(parcels, customers,
+                Double.parseDouble(options.getOrDefault("missing", "0.05")), 1.0 / 3,
+                Double.parseDouble(options.getOrDefault("skew", "0")),
+                Long.parseLong(options.getOrDefault("seed", "1")));
+
+        switch (args[0]) {
+            case "generate":
+                if (positional.size() != 1) {
+                    usage();
+                    return;
+                }
+                data.writeTo(new File(positional.get(0)));
+                System.out.println("Wrote " + parcels + " parcels and " + customers + " customers to "
+                        + positional.get(0));
+                return;
+            case "synthetic":
+            case "replay":
+                break;
+            default:
+                usage();
+                return;
+        }
+
+        Log.getInstance().setConsoleLevel(Log.Level.ERROR);
+        File work = Files.createTempDirectory("depot-load").toFile();
+        Log.getInstance().writeToFile(new File(work, "eventsLog.txt").getPath());
+        String reportPath = options.getOrDefault("report", "file").equals("none")
+                ? (System.getProperty("os.name", "").startsWith("Windows") ? "NUL" : "/dev/null")
+                : new File(work, "report.txt").getPath();
+
+        List<Op> ops;
+        double speed;
+        List<Parcel> startParcels = null;
+        if (args[0].equals("synthetic")) {
+            int count = Integer.parseInt(options.getOrDefault("ops", String.valueOf(customers)));
+            double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+            ops = synthesize(data, count, parseMix(options.getOrDefault("mix",
+                    "process:70,collect:20,addCustomer:5,addParcel:5")), rate, data.hashCode());
+            speed = rate > 0 ? 1 : 0;
+        } else {
+            if (positional.isEmpty()) {
+                usage();
+                return;
+            }
+            List<File> files = new ArrayList<>();
+            for (String p : positional) {
+                files.add(new File(p));
+            }
+            ops = readTrace(files);
+            speed = Double.parseDouble(options.getOrDefault("speed", "0"));
+            if (!options.containsKey("data")) {
+                startParcels = initialParcels(ops, 1);
+            }
+            System.out.println("Read " + ops.size() + " operations from " + positional);
+        }
+
+        int threads = Integer.parseInt(options.getOrDefault("threads", "1"));
+        int repeat = Integer.parseInt(options.getOrDefault("repeat", "1"));
+        String label = options.get("label");
+        File csv = options.containsKey("out") ? new File(options.get("out")) : null;
+        PrintStream console = System.out;
+        for (int r = 1; r <= repeat; r++) {
+            LoadHarness harness = new LoadHarness();
+            System.setOut(new PrintStream(OutputStream.nullOutputStream())); // loaders print summaries
+            Manager manager = new Manager(new ReportWriter(reportPath));
+            long wall;
+            try {
+                if (options.containsKey("data")) {
+                    File dir = new File(options.get("data"));
+                    manager.loadParcels(new File(dir, "parcels.csv").getPath());
+                    manager.loadCustomers(new File(dir, "customers.csv").getPath());
+                } else if (startParcels != null) {
+                    for (Parcel p : startParcels) {
+                        manager.addParcel(new Parcel(p.getParcelID(), p.getLength(), p.getWidth(),
+                                p.getHeight(), p.getWeight(), p.getDaysInDepot()));
+                    }
+                } else {
+                    manager.getParcelMap().putAll(data.parcels());
+                    manager.getCustomerQueue().enqueueAll(data.customers());
+                }
+                wall = harness.run(manager, ops, threads, speed);
+                manager.close();
+            } finally {
+                System.setOut(console);
+            }
+            console.println("Run " + r + "/" + repeat + ": " + ops.size() + " operations, " + threads
+                    + " thread(s)" + (speed > 0 ? ", timed at " + speed + "x" : ", back to back"));
+            harness.report(wall, label, threads, speed, csv, console);
+        }
+        Log.getInstance().flush();
+    }
+
+    private static int[] parseMix(String text) {
+        int[] mix = new int[OpType.values().length];
+        for (String part : text.split(",")) {
+            String[] kv = part.split(":");
+            String key = kv[0].trim().toLowerCase(Locale.ROOT);
+            int weight = Integer.parseInt(kv[1].trim());
+            switch (key) {
+                case "process": mix[OpType.PROCESS.ordinal()] = weight; break;
+                case "collect": mix[OpType.COLLECT.ordinal()] = weight; break;
+                case "addcustomer": mix[OpType.ADD_CUSTOMER.ordinal()] = weight; break;
+                case "addparcel": mix[OpType.ADD_PARCEL.ordinal()] = weight; break;
+                default: throw new IllegalArgumentException("Unknown operation in --mix: " + kv[0]);
+            }
+        }
+        return mix;
+    }
+
+    private static void usage() {
+        System.out.println("Usage: LoadHarness generate <dir> [--parcels=N --customers=N --skew=S --missing=R --seed=N]");
+        System.out.println("       LoadHarness synthetic [data options] [--ops=N --mix=process:70,collect:20,"
+                + "addCustomer:5,addParcel:5 --rate=ops/s] [run options]");
+        System.out.println("       LoadHarness replay <report.txt|eventsLog.txt>... [--data=dir --speed=x] [run options]");
+        System.out.println("  run options: --threads=N --repeat=N --report=file|none --out=results.csv --label=name");
+    }
+}
@@ -0,0 +1,254 @@
+package bench;
+
+import app.DepotServer;
+import model.LatencyHistogram;
+import model.Log;
+import model.Manager;
+import model.ReportWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load client for {@link DepotServer}: keeps a fixed number of requests in
+ * flight (one connection each) until it has sent them all, and reports
+ * throughput and latency per request type, measured from send to the last
+ * byte of the response.
+ * <p>
+ * Usage:
+ * <pre>
+ *   ServerLoadClient [--url=http://host:port] [--concurrency=2000] [--requests=100000]
+ *                    [--mix=read:50,enqueue:20,process:15,collect:10,addParcel:5]
+ *                    [--parcels=N] [--seed=N] [--maxP99=ms]
+ * </pre>
+ * Without --url it starts a server in this process on a free port, over a
+ * generated depot of --parcels parcels (20000 by default) and as many
+ * customers. Against another server it uses the same generated parcel IDs,
+ * so start that one with matching data for the collect and enqueue calls
+ * to find their parcels; "not found" answers are counted, not failures.
+ * Exits with status 1 if any request fails (5xx or I/O error) or, with
+ * --maxP99, if the overall p99 is above that many milliseconds.
+ */
+public class ServerLoadClient {
+    enum RequestType { READ, ENQUEUE, PROCESS, COLLECT, ADD_PARCEL }
+
+    private final HttpClient client;
+    private final String base;
+    private final DatasetGenerator data;
+    private final int[] mix;
+    private final Map<RequestType, LatencyHistogram> latency = new EnumMap<>(RequestType.class);
+    private final LatencyHistogram overall = new LatencyHistogram();
+    private final AtomicLong ok = new AtomicLong();
+    private final AtomicLong notFound = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong newParcels = new AtomicLong();
+    private volatile String firstFailure;
+
+    ServerLoadClient(String base, DatasetGenerator data, int[] mix) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.base = base;
+        this.data = data;
+        this.mix = mix;
+        for (RequestType t : RequestType.values()) {
+            latency.put(t, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Sends {@code total} requests, at most {@code concurrency} at a time.
+     *
+     * @return the wall time taken, in nanoseconds.
+     */
+    long run(int total, int concurrency) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(total);
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            inFlight.acquire();
+            RequestType type = pick();
+            long sent = System.nanoTime();
+            client.sendAsync(request(type), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, error) -> {
+                        long nanos = System.nanoTime() - sent;
+                        latency.get(type).record(nanos);
+                        overall.record(nanos);
+                        if (error != null) {
+                            fail(type + ": " + error);
+                        } else if (response.statusCode() == 404) {
+                            notFound.incrementAndGet();
+                        } else if (response.statusCode() >= 400) {
+                            fail(type + ": HTTP " + response.statusCode() + " " + response.body());
+                        } else {
+                            ok.incrementAndGet();
+                        }
+                        inFlight.release();
+                        done.countDown();
+                    });
+        }
+        done.await();
+        return System.nanoTime() - start;
+    }
+
+    private void fail(String message) {
+        if (failed.getAndIncrement() == 0) firstFailure = message;
+    }
+
+    private RequestType pick() {
+        int sum = 0;
+        for (int w : mix) sum += w;
+        int r = ThreadLocalRandom.current().nextInt(sum);
+        for (RequestType t : RequestType.values()) {
+            if (r < mix[t.ordinal()]) return t;
+            r -= mix[t.ordinal()];
+        }
+        return RequestType.READ;
+    }
+
+    private HttpRequest request(RequestType type) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String pid = data.parcelId(random.nextInt(Math.max(1, data.getParcelCount())));
+        String name = "Terminal " + random.nextInt(100);
+        switch (type) {
+            case ENQUEUE:
+                return post("/queue", "{\"name\":\"" + name + "\",\"parcelId\":\"" + pid + "\"}");
+            case PROCESS:
+                return post("/process", "");
+            case COLLECT:
+                return post("/collect", "{\"name\":\"" + name + "\",\"parcelId\":\"" + pid + "\"}");
+            case ADD_PARCEL:
+                return post("/parcels", String.format(Locale.ROOT,
+                        "{\"id\":\"N%d\",\"length\":%d,\"width\":%d,\"height\":%d,\"weight\":%.1f,\"days\":%d}",
+                        newParcels.incrementAndGet(), 1 + random.nextInt(50), 1 + random.nextInt(50),
+                        1 + random.nextInt(50), 0.5 + random.nextInt(50), random.nextInt(30)));
+            default:
+                switch (random.nextInt(4)) {
+                    case 0: return get("/parcels/" + pid);
+                    case 1: return get("/queue?count=20");
+                    case 2: return get("/history?from=" + random.nextInt(1000) + "&count=20");
+                    default: return get("/stats");
+                }
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(base + path)).timeout(Duration.ofSeconds(60)).GET().build();
+    }
+
+    private HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder(URI.create(base + path))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    void report(long wallNanos, int concurrency) {
+        long n = overall.getCount();
+        System.out.printf(Locale.ROOT, "%d requests, %d in flight: %.0f req/s over %s%n",
+                n, concurrency, n / (wallNanos / 1e9), LatencyHistogram.formatNanos(wallNanos));
+        System.out.printf("  ok=%d notFound=%d failed=%d%n", ok.get(), notFound.get(), failed.get());
+        for (RequestType t : RequestType.values()) {
+            LatencyHistogram h = latency.get(t);
+            if (h.getCount() > 0) System.out.printf("  %-10s %s%n", t, h);
+        }
+        System.out.printf("  %-10s %s%n", "ALL", overall);
+        if (firstFailure != null) System.out.println("  first failure: " + firstFailure);
+    }
+
+    // --- command line ---
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                usage();
+                return;
+            }
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+        }
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "2000"));
+        int requests = Integer.parseInt(options.getOrDefault("requests", "100000"));
+        int parcels = Integer.parseInt(options.getOrDefault("parcels", "20000"));
+        DatasetGenerator data = new DatasetGenerator(parcels, parcels, 0.05,
+                Long.parseLong(options.getOrDefault("seed", "1")));
+        int[] mix = parseMix(options.getOrDefault("mix", "read:50,enqueue:20,process:15,collect:10,addParcel:5"));
+
+        DepotServer server = null;
+        Manager manager = null;
+        String url = options.get("url");
+        if (url == null) {
+            Log.getInstance().setConsoleLevel(Log.Level.ERROR);
+            File work = Files.createTempDirectory("depot-server-load").toFile();
+            Log.getInstance().writeToFile(new File(work, "eventsLog.txt").getPath());
+            manager = new Manager(new ReportWriter(new File(work, "report.txt").getPath()));
+            manager.getParcelMap().putAll(data.parcels());
+            manager.getCustomerQueue().enqueueAll(data.customers());
+            server = new DepotServer(manager, 0);
+            server.start();
+            url = "http://localhost:" + server.getPort();
+            System.out.println("Started an in-process server on " + url + " with " + parcels + " parcels");
+        }
+
+        ServerLoadClient load = new ServerLoadClient(url.replaceAll("/+$", ""), data, mix);
+        long wall;
+        try {
+            load.run(Math.min(requests, Math.max(1, concurrency)), concurrency); // warm up connections and JIT
+            load = new ServerLoadClient(load.base, data, mix);
+            wall = load.run(requests, concurrency);
+        } finally {
+            if (server != null) {
+                server.close();
+                manager.close();
+                Log.getInstance().flush();
+            }
+        }
+        load.report(wall, concurrency);
+
+        double maxP99 = Double.parseDouble(options.getOrDefault("maxP99", "0"));
+        boolean slow = maxP99 > 0 && load.overall.getPercentile(0.99) > maxP99 * 1e6;
+        if (slow) System.out.println("  p99 above " + maxP99 + " ms");
+        if (load.failed.get() > 0 || slow) System.exit(1);
+    }
+
+    private static int[] parseMix(String text) {
+        int[] mix = new int[RequestType.values().length];
+        for (String part : text.split(",")) {
+            String[] kv = part.split(":");
+            String key = kv[0].trim().toLowerCase(Locale.ROOT);
+            int weight = Integer.parseInt(kv[1].trim());
+            switch (key) {
+                case "read": mix[RequestType.READ.ordinal()] = weight; break;
+                case "enqueue": mix[RequestType.ENQUEUE.ordinal()] = weight; break;
+                case "process": mix[RequestType.PROCESS.ordinal()] = weight; break;
+                case "collect": mix[RequestType.COLLECT.ordinal()] = weight; break;
+                case "addparcel": mix[RequestType.ADD_PARCEL.ordinal()] = weight; break;
+                default: throw new IllegalArgumentException("Unknown request in --mix: " + kv[0]);
+            }
+        }
+        return mix;
+    }
+
+    private static void usage() {
+        System.out.println("Usage: ServerLoadClient [--url=http://host:port] [--concurrency=N] [--requests=N]");
+        System.out.println("         [--mix=read:50,enqueue:20,process:15,collect:10,addParcel:5]"
+                + " [--parcels=N] [--seed=N] [--maxP99=ms]");
+    }
+}
@@ -0,0 +1,120 @@
+package bench;
+
+import model.Customer;
+import model.Log;
+import model.Parcel;
+import model.ProcessedHistory;
+import model.ShardedDepot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Check and scaling run for {@link ShardedDepot}: serves the same generated
+ * depot with 1, 2, 4 and 8 shards, then rebalances from 2 to 5 shards while
+ * two intake threads, a collector and a processor work on it, and verifies every parcel was handed
+ * out exactly once and none was lost.
+ * <p>
+ * Usage: {@code ShardCheck [parcels]}
+ * <br>Exits with status 1 if the check fails.
+ */
+public class ShardCheck {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int parcelCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Log.getInstance().setConsoleLevel(Log.Level.ERROR);
+        File work = Files.createTempDirectory("depot-shards").toFile();
+        CheckFixture fixture = new CheckFixture(parcelCount);
+
+        System.out.println(Runtime.getRuntime().availableProcessors() + " processor(s)");
+        for (int n : new int[] {1, 2, 4, 8}) {
+            scale(n, new File(work, "scale-" + n), fixture);
+        }
+        boolean ok = rebalance(new File(work, "rebalance"), fixture);
+        System.out.println(ok ? "SHARD CHECK PASSED" : "SHARD CHECK FAILED");
+        if (!ok) System.exit(1);
+    }
+
+    private static void scale(int shards, File dir, CheckFixture fixture) {
+        dir.mkdirs();
+        ShardedDepot depot = new ShardedDepot(shards, dir);
+        depot.putAll(fixture.parcels);
+        depot.enqueueAll(fixture.customers);
+        long start = System.nanoTime();
+        int served = depot.processAll();
+        long ms = (System.nanoTime() - start) / 1_000_000;
+        depot.close();
+        System.out.printf("%d shard(s): %d customers in %d ms (%.0f/s)%n",
+                shards, served, ms, served * 1000.0 / Math.max(1, ms));
+    }
+
+    // Half the depot is loaded up front; the rest arrives, from two intake
+    // threads at once, while shards are added.
+    private static boolean rebalance(File dir, CheckFixture fixture) throws InterruptedException {
+        dir.mkdirs();
+        List<Parcel> parcels = fixture.parcels;
+        List<Customer> customers = fixture.customers;
+        int parcelCount = parcels.size();
+        ShardedDepot depot = new ShardedDepot(2, dir);
+        depot.putAll(parcels.subList(0, parcelCount / 2));
+        depot.enqueueAll(customers.subList(0, parcelCount / 2));
+        AtomicInteger collected = new AtomicInteger();
+        AtomicInteger served = new AtomicInteger();
+        int intakeCount = 2;
+        CountDownLatch loaded = new CountDownLatch(intakeCount);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < intakeCount; t++) {
+            int first = parcelCount / 2 + t;
+            threads.add(new Thread(() -> {
+                for (int i = first; i < parcelCount; i += intakeCount) {
+                    depot.addParcel(parcels.get(i));
+                    depot.addCustomer(customers.get(i));
+                }
+                loaded.countDown();
+            }, "check-intake-" + (t + 1)));
+        }
+        threads.add(new Thread(() -> {
+            Random rnd = new Random(7);
+            for (int n = 0; n < parcelCount / 4; n++) {
+                int id = 1 + rnd.nextInt(parcelCount);
+                if (depot.collectParcel("Collector", CheckFixture.parcelID(id))) collected.incrementAndGet();
+            }
+        }, "check-collector"));
+        threads.add(new Thread(() -> {
+            while (loaded.getCount() > 0 || depot.getQueueSize() > 0) {
+                if (depot.processNextCustomer()) served.incrementAndGet();
+            }
+        }, "check-processor"));
+        threads.forEach(Thread::start);
+        for (int k = 0; k < 3; k++) {
+            Thread.sleep(50);
+            depot.addShard();
+        }
+        for (Thread t : threads) t.join();
+
+        Set<String> seen = new HashSet<>();
+        int duplicates = 0;
+        for (int i = 0; i < depot.getShardCount(); i++) {
+            ProcessedHistory history = depot.getShard(i).getProcessedHistory();
+            for (ProcessedHistory.Entry e : history.page(0, history.size())) {
+                if (!seen.add(e.getParcelID())) duplicates++;
+            }
+        }
+        int left = depot.getParcelCount();
+        int[] slots = depot.getSlotCounts();
+        depot.close();
+        System.out.println("Rebalanced to " + slots.length + " shards: served " + served.get()
+                + ", collected " + collected.get() + ", handed out " + seen.size() + ", left " + left
+                + ", duplicates " + duplicates + ", slots per shard " + Arrays.toString(slots));
+        return duplicates == 0 && seen.size() == parcelCount && left == 0 && served.get() == parcelCount;
+    }
+}
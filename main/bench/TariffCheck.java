@@ -0,0 +1,175 @@
+package bench;
+
+import model.Parcel;
+import model.ParcelMap;
+import model.Tariff;
+import model.Worker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Golden check for {@link Tariff}: the default tariff, and the shipped
+ * tariff file, must give exactly (bit for bit) the fees of the original
+ * hard-coded formula, through every fee path. Also checks a tiered tariff
+ * against hand-worked fees.
+ * <p>
+ * Usage: {@code TariffCheck [parcels.csv] [tariff.properties]}
+ * (defaults: main/database/parcels.csv, main/database/tariff.properties).
+ * Exits with status 1 on the first mismatch.
+ */
+public class TariffCheck {
+    private static int checked;
+
+    public static void main(String[] args) throws IOException {
+        String csv = args.length > 0 ? args[0] : "main/database/parcels.csv";
+        String file = args.length > 1 ? args[1] : "main/database/tariff.properties";
+
+        List<Parcel> parcels = new ArrayList<>(new DatasetGenerator(50_000, 0, 0, 23).parcels());
+        if (new File(csv).isFile()) parcels.addAll(readParcels(csv));
+        parcels.addAll(edgeCases());
+
+        checkMatchesOriginal(Tariff.defaultTariff(), parcels);
+        if (new File(file).isFile()) checkMatchesOriginal(Tariff.load(file), parcels);
+        checkTiered();
+        System.out.println("OK: " + checked + " fees identical to the original formula");
+    }
+
+    /** The fee formula as it was hard-coded in Worker.calculateFee before tariffs. */
+    static double originalFee(Parcel p) {
+        double baseFee = (p.getLength() * p.getWidth() * p.getHeight()) * p.getWeight();
+        double dayFactor = 1.0 + (p.getDaysInDepot() / 100.0);
+        double dayAdjustedFee = baseFee * dayFactor;
+        if (p.getParcelID().startsWith("C")) {
+            dayAdjustedFee *= 0.8;
+        }
+        return dayAdjustedFee;
+    }
+
+    private static void checkMatchesOriginal(Tariff tariff, List<Parcel> parcels) {
+        Tariff previous = Tariff.install(tariff);
+        try {
+            Worker worker = new Worker();
+            double[] listFees = new double[parcels.size()];
+            Worker.calculateFees(parcels, listFees);
+            for (int i = 0; i < parcels.size(); i++) {
+                Parcel p = parcels.get(i);
+                double expected = originalFee(p);
+                same(tariff + " calculateFee", p, expected, worker.calculateFee(p));
+                same(tariff + " list", p, expected, listFees[i]);
+            }
+            // column path: the map keeps one row per ID, in insertion order
+            ParcelMap map = new ParcelMap();
+            for (Parcel p : parcels) {
+                map.putParcel(new Parcel(p.getParcelID(), p.getLength(), p.getWidth(), p.getHeight(),
+                        p.getWeight(), p.getDaysInDepot()));
+            }
+            double[] fees = new double[1024];
+            for (int row = 0; row < map.size(); row += fees.length) {
+                int n = Worker.calculateFees(map, row, row + fees.length, fees);
+                for (int i = 0; i < n; i++) {
+                    Parcel p = map.getParcelAt(row + i);
+                    same(tariff + " columns", p, originalFee(p), fees[i]);
+                }
+            }
+        } finally {
+            Tariff.install(previous);
+        }
+    }
+
+    private static void checkTiered() {
+        Properties rules = new Properties();
+        rules.setProperty("day.surcharge", "0:1%, 10:2%, 20:5%");
+        rules.setProperty("weight.bands", "0:100%, 10:150%");
+        rules.setProperty("discount.C", "20%");
+        rules.setProperty("discount.CX", "50%");
+        rules.setProperty("fee.max", "1000");
+        Tariff tariff = Tariff.compile(rules, "tiered check");
+        // 10 x 1 x 1 cm, 2 kg: base 20; 25 days = 10*1% + 10*2% + 5*5% = 55%
+        close(tariff, "X1", 10, 1, 1, 2, 25, 20 * 1.55);
+        close(tariff, "X1", 10, 1, 1, 2, 5, 20 * 1.05);
+        close(tariff, "C1", 10, 1, 1, 2, 15, 20 * 1.20 * 0.8);
+        close(tariff, "CX1", 10, 1, 1, 2, 0, 20 * 0.5);
+        // 12 kg: x1.5 band; 10 x 10 x 1 x 12 = 1200 -> capped
+        close(tariff, "X1", 10, 10, 1, 12, 0, 1000);
+        close(tariff, "X1", 1, 1, 1, 12, 20, 12 * 1.30 * 1.5);
+
+        // a "CX" rule cannot be read from encoded keys, so the map path prices parcel by parcel
+        Tariff previous = Tariff.install(tariff);
+        try {
+            ParcelMap map = new ParcelMap();
+            map.putAll(new DatasetGenerator(5_000, 0, 0, 29).parcels());
+            map.putParcel(new Parcel("CX7", 3, 4, 5, 11, 40));
+            double[] fees = new double[map.size()];
+            int n = Worker.calculateFees(map, 0, map.size(), fees);
+            for (int i = 0; i < n; i++) {
+                Parcel p = map.getParcelAt(i);
+                same("tiered columns", p, tariff.fee(p), fees[i]);
+            }
+            if (n != map.size()) fail("tiered columns: " + n + " of " + map.size() + " fees");
+        } finally {
+            Tariff.install(previous);
+        }
+    }
+
+    private static void same(String path, Parcel p, double expected, double actual) {
+        checked++;
+        if (Double.doubleToLongBits(expected) != Double.doubleToLongBits(actual)) {
+            fail(path + ": " + p + " expected " + expected + " but got " + actual);
+        }
+    }
+
+    private static void close(Tariff tariff, String id, double l, double w, double h, double weight, int days,
+                              double expected) {
+        double actual = tariff.fee(id, l, w, h, weight, days);
+        if (Math.abs(actual - expected) > 1e-9 * Math.max(1, Math.abs(expected))) {
+            fail("tiered: " + id + " " + days + " days, " + weight + " kg: expected " + expected + " but got " + actual);
+        }
+    }
+
+    private static void fail(String message) {
+        System.out.println("MISMATCH " + message);
+        System.exit(1);
+    }
+
+    private static List<Parcel> edgeCases() {
+        List<Parcel> parcels = new ArrayList<>();
+        Random random = new Random(1);
+        double[] sizes = {0, 0.1, 0.3, 1, 1.5, 7.77, 99.99, 1e6};
+        int[] days = {0, 1, 3, 7, 29, 30, 99, 100, 101, 365, 10_000};
+        int id = 0;
+        for (double size : sizes) {
+            for (int d : days) {
+                double weight = sizes[random.nextInt(sizes.length)];
+                parcels.add(new Parcel("C" + id++, size, 1 / 3.0, size + 0.01, weight, d));
+                parcels.add(new Parcel("X" + id++, size + 0.7, size, 3.3, weight, d));
+                parcels.add(new Parcel("CUSTOM-" + id++, size, size, size, weight, d));
+            }
+        }
+        return parcels;
+    }
+
+    private static List<Parcel> readParcels(String csv) throws IOException {
+        List<Parcel> parcels = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(csv))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] f = line.split(",");
+                if (f.length < 6) continue;
+                try {
+                    parcels.add(new Parcel(f[0].trim(), Double.parseDouble(f[1].trim()), Double.parseDouble(f[2].trim()),
+                            Double.parseDouble(f[3].trim()), Double.parseDouble(f[4].trim()), Integer.parseInt(f[5].trim())));
+                } catch (NumberFormatException e) {
+                    // header or malformed row
+                }
+            }
+        }
+        return parcels;
+    }
+}
@@ -0,0 +1,82 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * What a {@link Manager#processBatch(int)} or {@link Manager#drainAll()} run
+ * did: customers dequeued, parcels handed out, revenue, the customers whose
+ * parcel was not found (in the order they were served), and time taken.
+ */
+public class BatchSummary {
+    private int batches;
+    private int dequeued;
+    private int processed;
+    private double revenue;
+    private final List<Customer> failures = new ArrayList<>();
+    private long elapsedNanos;
+
+    void processed(double fee) {
+        dequeued++;
+        processed++;
+        revenue += fee;
+    }
+
+    void notFound(Customer c) {
+        dequeued++;
+        failures.add(c);
+    }
+
+    void finishBatch(long nanos) {
+        if (dequeued > 0) batches++;
+        elapsedNanos += nanos;
+    }
+
+    void add(BatchSummary other) {
+        batches += other.batches;
+        dequeued += other.dequeued;
+        processed += other.processed;
+        revenue += other.revenue;
+        failures.addAll(other.failures);
+        elapsedNanos += other.elapsedNanos;
+    }
+
+    /** Batches that served at least one customer. */
+    public int getBatches() {
+        return batches;
+    }
+
+    public int getDequeued() {
+        return dequeued;
+    }
+
+    public int getProcessed() {
+        return processed;
+    }
+
+    public int getNotFound() {
+        return failures.size();
+    }
+
+    /** Sum of the fees charged. */
+    public double getRevenue() {
+        return revenue;
+    }
+
+    /** Customers whose parcel was not found, in the order they were served. */
+    public List<Customer> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d customers in %d batch(es): %d processed, %d not found, revenue $%.2f, %s",
+                dequeued, batches, processed, failures.size(), revenue, LatencyHistogram.formatNanos(elapsedNanos));
+    }
+}
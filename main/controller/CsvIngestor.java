@@ -0,0 +1,509 @@
+package model;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Bulk loader for the customer and parcel CSV files.
+ * <p>
+ * The file is memory-mapped in newline-aligned chunks which are parsed in
+ * parallel. Numbers are parsed straight from the mapped bytes, so the only
+ * strings created per row are the ones a Customer or Parcel keeps.
+ * Rows are inserted in file order, each chunk as soon as it and the chunks
+ * before it are parsed, so the store fills while the rest is still read.
+ * <p>
+ * Invalid rows are handled as the line-by-line loader did: rows with the
+ * wrong number of fields are reported and skipped, and a malformed number
+ * stops the load at that row (rows before it stay loaded).
+ */
+public final class CsvIngestor {
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+    private static final long MAX_CHUNK_BYTES = 256L << 20;
+    private static final int PARCEL_FIELDS = 6;
+
+    // Exactly representable powers of ten, so mantissa / 10^n is correctly rounded.
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private CsvIngestor() {
+    }
+
+    /**
+     * Told about each batch of rows as it is inserted, on the loading thread,
+     * e.g. to show a progress bar.
+     */
+    public interface Progress {
+        /**
+         * @param rows       rows inserted so far.
+         * @param bytesDone  bytes of the file parsed and inserted so far.
+         * @param bytesTotal size of the file.
+         */
+        void loaded(int rows, long bytesDone, long bytesTotal);
+    }
+
+    // Chunks per file when someone is watching, so rows land in small batches.
+    private static final int STREAMING_CHUNKS = 64;
+
+    /**
+     * Loads parcels (format: "ParcelID,Length,Width,Height,Weight,Days") into the map.
+     *
+     * @return the number of parcels loaded.
+     */
+    public static int loadParcels(String filename, ParcelMap parcelMap) {
+        return loadParcels(filename, parcelMap, null);
+    }
+
+    /**
+     * As {@link #loadParcels(String, ParcelMap)}, inserting each chunk as soon
+     * as it and those before it are parsed and reporting to {@code progress}
+     * (may be null) after each, so the map fills while the file is read.
+     */
+    public static int loadParcels(String filename, ParcelMap parcelMap, Progress progress) {
+        long start = System.nanoTime();
+        int[] count = {0};
+        int[] invalid = {0};
+        long[] done = {0};
+        int chunkCount;
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            long size = channel.size();
+            List<long[]> chunks = split(channel, 0, size, progress == null ? 1 : STREAMING_CHUNKS);
+            chunkCount = chunks.size();
+            inFileOrder(channel, chunks, CsvIngestor::parseParcels, chunk -> {
+                parcelMap.putAll(chunk.parcels);
+                count[0] += chunk.parcels.size();
+                for (String line : chunk.invalidLines) {
+                    Log.getInstance().log(Log.Level.WARN, "Invalid parcel entry: {}", line);
+                }
+                invalid[0] += chunk.invalidLines.size();
+                done[0] = chunk.end;
+                if (progress != null) progress.loaded(count[0], done[0], size);
+                if (chunk.error != null) {
+                    Log.getInstance().log(Log.Level.ERROR, "Error loading parcels: {}", chunk.error.getMessage());
+                    return false;
+                }
+                return true;
+            });
+        } catch (IOException | UncheckedChunkException e) {
+            Log.getInstance().log(Log.Level.ERROR, "Error loading parcels: {}", e.getMessage());
+            return count[0];
+        }
+        DepotMetrics.getInstance().invalidRows(invalid[0]);
+        printSummary("Parcels", filename, count[0], invalid[0], chunkCount, start);
+        return count[0];
+    }
+
+    /**
+     * Loads customers (format: "Name,ParcelID") into the queue, numbering them
+     * 1, 2, 3... in file order.
+     *
+     * @return the number of customers loaded.
+     */
+    public static int loadCustomers(String filename, QueueOfCustomers queue) {
+        return loadCustomers(filename, queue, null);
+    }
+
+    /**
+     * As {@link #loadCustomers(String, QueueOfCustomers)}, enqueueing each
+     * chunk as soon as it and those before it are parsed and reporting to
+     * {@code progress} (may be null) after each.
+     */
+    public static int loadCustomers(String filename, QueueOfCustomers queue, Progress progress) {
+        long start = System.nanoTime();
+        int[] seqCounter = {1};
+        int[] invalid = {0};
+        int chunkCount;
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            long size = channel.size();
+            List<long[]> chunks = split(channel, 0, size, progress == null ? 1 : STREAMING_CHUNKS);
+            chunkCount = chunks.size();
+            List<Customer> batch = new ArrayList<>();
+            inFileOrder(channel, chunks, CsvIngestor::parseCustomers, chunk -> {
+                batch.clear();
+                for (int i = 0; i < chunk.names.size(); i++) {
+                    batch.add(new Customer(seqCounter[0]++, chunk.names.get(i), chunk.parcelIDs.get(i)));
+                }
+                queue.enqueueAll(batch);
+                for (String line : chunk.invalidLines) {
+                    Log.getInstance().log(Log.Level.WARN, "Invalid customer entry: {}", line);
+                }
+                invalid[0] += chunk.invalidLines.size();
+                if (progress != null) progress.loaded(seqCounter[0] - 1, chunk.end, size);
+                return true;
+            });
+        } catch (IOException | UncheckedChunkException e) {
+            Log.getInstance().log(Log.Level.ERROR, "Error loading customers: {}", e.getMessage());
+            return seqCounter[0] - 1;
+        }
+        DepotMetrics.getInstance().invalidRows(invalid[0]);
+        printSummary("Customers", filename, seqCounter[0] - 1, invalid[0], chunkCount, start);
+        return seqCounter[0] - 1;
+    }
+
+    /**
+     * Parses the chunks on a pool of one thread per core, earliest first, and
+     * hands each to {@code consumer} on this thread in file order, as soon as
+     * it and all before it are parsed. Stops when the consumer returns false.
+     */
+    private static <C> void inFileOrder(FileChannel channel, List<long[]> chunks,
+                                        BiFunction<FileChannel, long[], C> parser, Predicate<C> consumer) {
+        int threads = Math.min(chunks.size(), Runtime.getRuntime().availableProcessors());
+        if (threads <= 1) { // nothing to overlap with; parse in line
+            for (long[] chunk : chunks) {
+                if (!consumer.test(parser.apply(channel, chunk))) return;
+            }
+            return;
+        }
+        AtomicInteger n = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "csv-parse-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<C>> parsed = new ArrayList<>(chunks.size());
+            for (long[] chunk : chunks) {
+                parsed.add(pool.submit(() -> parser.apply(channel, chunk)));
+            }
+            for (Future<C> f : parsed) {
+                if (!consumer.test(join(f))) break;
+            }
+        } finally {
+            pool.shutdownNow();
+            try {
+                pool.awaitTermination(1, TimeUnit.MINUTES); // the channel must outlive the parsers
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static <C> C join(Future<C> f) {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedChunkException(new InterruptedIOException("Load interrupted"));
+        }
+    }
+
+    private static void printSummary(String what, String filename, int count, int invalid, int chunks, long startNanos) {
+        long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+        String summary = "Total " + what + " Loaded: " + count +
+                " (invalid rows: " + invalid + ", chunks: " + chunks + ", " + elapsedMs + " ms)";
+        Log.getInstance().addEntry("Loaded " + count + " " + what.toLowerCase() + " from " + filename);
+        System.out.println(summary);
+    }
+
+    /**
+     * Splits bytes [from, size) of the file into chunks of [start, end) byte
+     * offsets, each ending just after a newline (or at end of file);
+     * {@code from} should be the start of a line. Chunks are small enough to map.
+     */
+    static List<long[]> split(FileChannel channel, long from, long size) throws IOException {
+        return split(channel, from, size, 1);
+    }
+
+    /**
+     * As {@link #split(FileChannel, long, long)}, in at least about
+     * {@code minChunks} chunks where the minimum chunk size allows.
+     */
+    static List<long[]> split(FileChannel channel, long from, long size, int minChunks) throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long parts = Math.max(cores * 4L, minChunks);
+        long target = Math.min(MAX_CHUNK_BYTES, Math.max(MIN_CHUNK_BYTES, (size - from) / parts));
+        List<long[]> chunks = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = from;
+        while (start < size) {
+            long end = Math.min(size, start + target);
+            while (end < size) {
+                probe.clear();
+                int n = channel.read(probe, end);
+                if (n <= 0) {
+                    end = size;
+                    break;
+                }
+                int newline = -1;
+                for (int i = 0; i < n; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = i;
+                        break;
+                    }
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end += n;
+            }
+            chunks.add(new long[]{start, Math.min(end, size)});
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long[] chunk) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+        } catch (IOException e) {
+            throw new UncheckedChunkException(e);
+        }
+    }
+
+    private static ParcelChunk parseParcels(FileChannel channel, long[] range) {
+        MappedByteBuffer buf = map(channel, range);
+        ParcelChunk chunk = new ParcelChunk();
+        chunk.end = range[1];
+        int[] fieldStart = new int[PARCEL_FIELDS];
+        int[] fieldEnd = new int[PARCEL_FIELDS];
+        byte[] scratch = new byte[64];
+        int limit = buf.limit();
+        int pos = 0;
+        while (pos < limit) {
+            int lineEnd = lineEnd(buf, pos, limit);
+            int s = trimStart(buf, pos, lineEnd);
+            int e = trimEnd(buf, s, lineEnd);
+
+            int fields = splitFields(buf, s, e, fieldStart, fieldEnd);
+            if (fields != PARCEL_FIELDS) {
+                chunk.invalidLines.add(decode(buf, pos, lineEnd, scratch));
+            } else {
+                try {
+                    String pid = decodeUpper(buf, fieldStart[0], fieldEnd[0], scratch);
+                    double length = parseDouble(buf, fieldStart[1], fieldEnd[1], scratch);
+                    double width = parseDouble(buf, fieldStart[2], fieldEnd[2], scratch);
+                    double height = parseDouble(buf, fieldStart[3], fieldEnd[3], scratch);
+                    double weight = parseDouble(buf, fieldStart[4], fieldEnd[4], scratch);
+                    int days = parseInt(buf, fieldStart[5], fieldEnd[5], scratch);
+                    chunk.parcels.add(new Parcel(pid, length, width, height, weight, days));
+                } catch (NumberFormatException ex) {
+                    chunk.error = ex;
+                    return chunk;
+                }
+            }
+            pos = nextLine(buf, lineEnd, limit);
+        }
+        return chunk;
+    }
+
+    private static CustomerChunk parseCustomers(FileChannel channel, long[] range) {
+        MappedByteBuffer buf = map(channel, range);
+        CustomerChunk chunk = new CustomerChunk();
+        chunk.end = range[1];
+        byte[] scratch = new byte[64];
+        int limit = buf.limit();
+        int pos = 0;
+        while (pos < limit) {
+            int lineEnd = lineEnd(buf, pos, limit);
+            int s = trimStart(buf, pos, lineEnd);
+            int e = trimEnd(buf, s, lineEnd);
+
+            int comma = -1;
+            for (int i = s; i < e; i++) {
+                if (buf.get(i) == ',') {
+                    comma = i;
+                    break;
+                }
+            }
+            if (comma < 0) {
+                chunk.invalidLines.add(decode(buf, pos, lineEnd, scratch));
+            } else {
+                int ns = trimStart(buf, s, comma);
+                int ps = trimStart(buf, comma + 1, e);
+                chunk.names.add(decode(buf, ns, trimEnd(buf, ns, comma), scratch));
+                chunk.parcelIDs.add(decodeUpper(buf, ps, trimEnd(buf, ps, e), scratch));
+            }
+            pos = nextLine(buf, lineEnd, limit);
+        }
+        return chunk;
+    }
+
+    /**
+     * Finds the comma-separated fields of [s, e), trimming each one and dropping
+     * trailing empty fields, as {@code line.split("\\s*,\\s*")} does.
+     *
+     * @return the number of fields, or -1 if there are more than fit.
+     */
+    private static int splitFields(ByteBuffer buf, int s, int e, int[] starts, int[] ends) {
+        int count = 0;
+        int nonEmpty = 0;
+        int fieldStart = s;
+        for (int i = s; i <= e; i++) {
+            if (i == e || buf.get(i) == ',') {
+                int fs = trimStart(buf, fieldStart, i);
+                int fe = trimEnd(buf, fs, i);
+                if (count >= starts.length) {
+                    if (fe > fs) return -1;
+                } else {
+                    starts[count] = fs;
+                    ends[count] = fe;
+                }
+                count++;
+                if (fe > fs) nonEmpty = count;
+                fieldStart = i + 1;
+            }
+        }
+        return nonEmpty;
+    }
+
+    private static int lineEnd(ByteBuffer buf, int pos, int limit) {
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b == '\n' || b == '\r') return pos;
+            pos++;
+        }
+        return limit;
+    }
+
+    private static int nextLine(ByteBuffer buf, int lineEnd, int limit) {
+        if (lineEnd < limit && buf.get(lineEnd) == '\r') {
+            lineEnd++;
+            if (lineEnd < limit && buf.get(lineEnd) == '\n') lineEnd++;
+            return lineEnd;
+        }
+        return lineEnd + 1;
+    }
+
+    private static int trimStart(ByteBuffer buf, int s, int e) {
+        while (s < e && (buf.get(s) & 0xFF) <= ' ') s++;
+        return s;
+    }
+
+    private static int trimEnd(ByteBuffer buf, int s, int e) {
+        while (e > s && (buf.get(e - 1) & 0xFF) <= ' ') e--;
+        return e;
+    }
+
+    /**
+     * Parses a decimal like "12" or "-3.75" directly from the bytes. Anything
+     * else (exponents, long mantissas, NaN...) goes through Double.parseDouble,
+     * so results and error messages are identical to the String-based parser.
+     */
+    private static double parseDouble(ByteBuffer buf, int s, int e, byte[] scratch) {
+        int i = s;
+        boolean negative = false;
+        if (i < e && (buf.get(i) == '-' || buf.get(i) == '+')) {
+            negative = buf.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenDot = false;
+        for (; i < e; i++) {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (seenDot) fractionDigits++;
+                if (digits > 15) break;
+            } else if (b == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                break;
+            }
+        }
+        if (i != e || digits == 0 || mantissa > MAX_EXACT_MANTISSA || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(decode(buf, s, e, scratch));
+        }
+        double value = fractionDigits == 0 ? (double) mantissa : mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    private static int parseInt(ByteBuffer buf, int s, int e, byte[] scratch) {
+        int i = s;
+        boolean negative = false;
+        if (i < e && (buf.get(i) == '-' || buf.get(i) == '+')) {
+            negative = buf.get(i) == '-';
+            i++;
+        }
+        int value = 0;
+        int digits = 0;
+        for (; i < e; i++) {
+            byte b = buf.get(i);
+            if (b < '0' || b > '9' || ++digits > 9) {
+                return Integer.parseInt(decode(buf, s, e, scratch));
+            }
+            value = value * 10 + (b - '0');
+        }
+        if (digits == 0) {
+            return Integer.parseInt(decode(buf, s, e, scratch));
+        }
+        return negative ? -value : value;
+    }
+
+    private static String decode(ByteBuffer buf, int s, int e, byte[] scratch) {
+        byte[] bytes = copy(buf, s, e, scratch);
+        return new String(bytes, 0, e - s, Charset.defaultCharset());
+    }
+
+    /**
+     * Decodes and upper-cases in one pass for plain ASCII IDs.
+     */
+    private static String decodeUpper(ByteBuffer buf, int s, int e, byte[] scratch) {
+        byte[] bytes = copy(buf, s, e, scratch);
+        int len = e - s;
+        for (int i = 0; i < len; i++) {
+            byte b = bytes[i];
+            if (b < 0) {
+                return new String(bytes, 0, len, Charset.defaultCharset()).toUpperCase();
+            }
+            if (b >= 'a' && b <= 'z') {
+                bytes[i] = (byte) (b - ('a' - 'A'));
+            }
+        }
+        return new String(bytes, 0, len, StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] copy(ByteBuffer buf, int s, int e, byte[] scratch) {
+        byte[] bytes = e - s <= scratch.length ? scratch : new byte[e - s];
+        buf.get(s, bytes, 0, e - s);
+        return bytes;
+    }
+
+    private static final class ParcelChunk {
+        long end;
+        final List<Parcel> parcels = new ArrayList<>();
+        final List<String> invalidLines = new ArrayList<>();
+        NumberFormatException error;
+    }
+
+    private static final class CustomerChunk {
+        long end;
+        final List<String> names = new ArrayList<>();
+        final List<String> parcelIDs = new ArrayList<>();
+        final List<String> invalidLines = new ArrayList<>();
+    }
+
+    private static final class UncheckedChunkException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UncheckedChunkException(IOException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+}
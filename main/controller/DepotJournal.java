@@ -0,0 +1,873 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Write-ahead journal and snapshots for a manager's in-memory depot state.
+ * <p>
+ * Every state change (parcel added, customer enqueued, customer processed,
+ * parcel collected, queue entry cancelled, depot day advanced) is appended as a small binary record before the change
+ * becomes visible to other mutations. Every {@code snapshotEvery} records a
+ * snapshot of the whole state is written and older journal segments are
+ * deleted, so recovery only replays the tail written since the last snapshot.
+ * Mutations only wait for the state to be captured, which shares the stores'
+ * arrays copy-on-write; the snapshot is written from that capture afterwards.
+ * <p>
+ * Files in the journal directory:
+ * <pre>
+ *   snapshot.bin            latest complete snapshot (replaced atomically)
+ *   journal-&lt;lsn&gt;.bin   segment whose first record has that sequence number
+ *   history/history-&lt;n&gt;.bin  processed history block from entry n on
+ * </pre>
+ * Record layout: int length, int CRC32 of the payload, payload (type byte,
+ * long lsn, fields). A torn or corrupt record ends replay; the segment is cut
+ * back to the last good record.
+ * <p>
+ * With a {@link ParcelManifest} attached, snapshots name the manifest (path,
+ * checksum, day opened) and hold only what differs from it: the parcels kept
+ * in memory and the manifest records removed. The manifest itself is never
+ * copied, so a snapshot costs what was changed, not the size of the depot.
+ * <p>
+ * The processed history spills its older blocks into the history directory
+ * (see {@link ProcessedHistory#keepSpillsIn}). Those blocks never change, so
+ * a snapshot lists the ones already on disk and holds only the newer entries
+ * still in memory; recovery takes the listed blocks over without reading them.
+ * <p>
+ * Customers are named by their unique {@link Customer#getId() ID}, not by
+ * sequence number, since several queued customers can share a number.
+ * <p>
+ * Parcel records hold days in depot as of the {@link DepotClock} day they
+ * were written; snapshots record that day and day records move it on, so
+ * replay rebuilds the same arrival days.
+ * <p>
+ * A failed write or sync stops the journal for good (fail-stop): the record
+ * call throws {@link UncheckedIOException}, later {@link #begin()} calls throw
+ * {@link IllegalStateException}, and mutations waiting for a group commit
+ * get an {@link UncheckedIOException} instead of returning as if durable. The
+ * depot then refuses changes rather than letting memory and journal diverge.
+ */
+public class DepotJournal implements AutoCloseable {
+
+    public enum SyncPolicy {
+        /** Records reach the OS on every group flush but are never forced to disk. */
+        NONE,
+        /** Mutations wait for a shared fsync that runs every {@code groupCommitMillis}. */
+        GROUP,
+        /** Every record is forced to disk before its mutation completes. */
+        ALWAYS
+    }
+
+    static final byte PUT_PARCEL = 1;
+    static final byte ENQUEUE = 2;
+    static final byte PROCESS = 3;
+    static final byte COLLECT = 4;
+    static final byte CANCEL = 5;
+    static final byte DAY = 6;
+
+    private static final int SNAPSHOT_MAGIC_V1 = 0x44505331; // "DPS1": days in depot, no clock
+    private static final int SNAPSHOT_MAGIC_V2 = 0x44505332; // "DPS2": depot day, arrival days
+    private static final int SNAPSHOT_MAGIC_V3 = 0x44505333; // "DPS3": history as fields, with times
+    private static final int SNAPSHOT_MAGIC_V4 = 0x44505334; // "DPS4": customer IDs
+    private static final int SNAPSHOT_MAGIC_V5 = 0x44505335; // "DPS5": manifest reference and overlay
+    private static final int SNAPSHOT_MAGIC = 0x44505336; // "DPS6": spilled history blocks by reference
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String HISTORY_DIR = "history";
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+
+    private final File dir;
+    private final SyncPolicy policy;
+    private final long groupCommitMillis;
+    private final int snapshotEvery;
+
+    private final ReentrantLock mutationLock = new ReentrantLock();
+    private final Object syncLock = new Object();
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(128);
+    private final DataOutputStream record = new DataOutputStream(recordBuffer);
+    private final CRC32 crc = new CRC32();
+    private final ExecutorService snapshotExecutor;
+    private final Thread syncThread;
+
+    private Manager manager;
+    private FileOutputStream segmentFile;
+    private DataOutputStream segment;
+    private long lastLsn;             // guarded by mutationLock
+    private long beginLsn;            // guarded by mutationLock
+    private long recordsSinceSnapshot; // guarded by mutationLock
+    private boolean snapshotPending;   // guarded by mutationLock
+    private long durableLsn;           // guarded by syncLock
+    private boolean recovered;
+    private volatile IOException failure; // set once, under syncLock
+    private volatile boolean closed;
+
+    /**
+     * @param dir               journal directory (created if missing).
+     * @param policy            when records are forced to disk.
+     * @param groupCommitMillis interval of the shared flush/fsync for NONE and GROUP.
+     * @param snapshotEvery     records between automatic snapshots.
+     */
+    public DepotJournal(File dir, SyncPolicy policy, long groupCommitMillis, int snapshotEvery) {
+        this.dir = dir;
+        this.policy = policy;
+        this.groupCommitMillis = Math.max(1, groupCommitMillis);
+        this.snapshotEvery = Math.max(1, snapshotEvery);
+        snapshotExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "journal-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        syncThread = new Thread(this::runSync, "journal-sync");
+        syncThread.setDaemon(true);
+    }
+
+    public File getDirectory() {
+        return dir;
+    }
+
+    // --- recovery ---
+
+    /**
+     * Restores the manager's queue, parcels and processed list from the latest
+     * snapshot plus the journal tail.
+     *
+     * @return false if the directory holds no snapshot or journal to recover from.
+     * @throws IOException if the snapshot or a record cannot be read. The target
+     *         then holds part of the state and must be discarded, and this
+     *         journal must not be attached.
+     */
+    public boolean recover(Manager target) throws IOException {
+        File snapshot = new File(dir, SNAPSHOT_FILE);
+        List<File> segments = segments();
+        if (!snapshot.exists() && segments.isEmpty()) {
+            return false;
+        }
+        long start = System.nanoTime();
+        target.getProcessedHistory().keepSpillsIn(new File(dir, HISTORY_DIR));
+        long snapshotLsn = snapshot.exists() ? readSnapshot(snapshot, target) : 0;
+        long lsn = snapshotLsn;
+        int replayed = 0;
+        for (File seg : segments) {
+            long[] result = replay(seg, target, snapshotLsn);
+            lsn = Math.max(lsn, result[0]);
+            replayed += (int) result[1];
+        }
+        lastLsn = lsn;
+        recovered = true;
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        Log.getInstance().log(Log.Level.INFO, "Recovered depot from {}: snapshot at {}, replayed {} records in {} ms",
+                dir, snapshotLsn, replayed, elapsedMs);
+        return true;
+    }
+
+    /**
+     * Starts journaling the manager's changes. Writes an initial snapshot so
+     * that whatever the manager holds now (e.g. freshly loaded CSV data) is
+     * covered without journaling it record by record.
+     *
+     * @throws IOException if the directory already holds a journal that was
+     *         not {@link #recover recovered} first, since its records would
+     *         later be replayed on top of the new state.
+     */
+    public void attach(Manager target) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + dir);
+        }
+        if (!recovered && (new File(dir, SNAPSHOT_FILE).exists() || !segments().isEmpty())) {
+            throw new IOException("Journal directory " + dir + " holds a journal that was not recovered");
+        }
+        target.getProcessedHistory().keepSpillsIn(new File(dir, HISTORY_DIR));
+        this.manager = target;
+        mutationLock.lock();
+        try {
+            openSegment(lastLsn + 1);
+            synchronized (syncLock) {
+                durableLsn = lastLsn;
+            }
+            State state = captureState();
+            try {
+                writeSnapshot(state);
+            } finally {
+                state.release();
+            }
+            deleteSegmentsBefore(lastLsn + 1);
+        } finally {
+            mutationLock.unlock();
+        }
+        syncThread.start();
+    }
+
+    // --- mutation bracket, used by Manager ---
+
+    /**
+     * Starts a mutation: no snapshot or other journaled mutation can run until
+     * {@link #end()}, so the journal order matches the order changes were applied.
+     */
+    void begin() {
+        mutationLock.lock();
+        if (failure != null) {
+            mutationLock.unlock();
+            throw new IllegalStateException("Journal failed: " + dir, failure);
+        }
+        beginLsn = lastLsn;
+    }
+
+    /**
+     * Ends a mutation and, under the GROUP policy, waits until its records are on disk.
+     *
+     * @throws UncheckedIOException if the journal failed before they were.
+     */
+    void end() {
+        long lsn = lastLsn;
+        boolean wrote = lsn != beginLsn;
+        boolean snapshotDue = false;
+        if (wrote && recordsSinceSnapshot >= snapshotEvery && !snapshotPending) {
+            snapshotPending = true;
+            snapshotDue = true;
+        }
+        mutationLock.unlock();
+        if (snapshotDue) {
+            snapshotExecutor.execute(this::checkpoint);
+        }
+        if (wrote && policy == SyncPolicy.GROUP) {
+            awaitDurable(lsn);
+        }
+    }
+
+    void logPutParcel(Parcel p) {
+        try {
+            startRecord(PUT_PARCEL);
+            record.writeUTF(p.getParcelID());
+            record.writeDouble(p.getLength());
+            record.writeDouble(p.getWidth());
+            record.writeDouble(p.getHeight());
+            record.writeDouble(p.getWeight());
+            record.writeInt(p.getDaysInDepot());
+            finishRecord();
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    void logEnqueue(Customer c) {
+        try {
+            startRecord(ENQUEUE);
+            record.writeInt(c.getSeqNumber());
+            record.writeUTF(c.getName());
+            record.writeUTF(c.getDesiredParcelID());
+            record.writeLong(c.getId());
+            finishRecord();
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * @param record     the processed-list record, or null if the parcel was not found.
+     * @param timeMillis when the record was added to the processed history.
+     */
+    void logProcess(Customer c, String record, long timeMillis) {
+        try {
+            startRecord(PROCESS);
+            this.record.writeInt(c.getSeqNumber());
+            this.record.writeUTF(c.getDesiredParcelID());
+            this.record.writeBoolean(record != null);
+            if (record != null) {
+                this.record.writeUTF(record);
+                this.record.writeLong(timeMillis);
+            }
+            this.record.writeLong(c.getId());
+            finishRecord();
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    void logCollect(String parcelID, String record, long timeMillis) {
+        try {
+            startRecord(COLLECT);
+            this.record.writeUTF(parcelID);
+            this.record.writeUTF(record);
+            this.record.writeLong(timeMillis);
+            finishRecord();
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    void logCancel(Customer c) {
+        try {
+            startRecord(CANCEL);
+            record.writeInt(c.getSeqNumber());
+            record.writeLong(c.getId());
+            finishRecord();
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    void logDay(int today) {
+        try {
+            startRecord(DAY);
+            record.writeInt(today);
+            finishRecord();
+        } catch (IOException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Writes a snapshot now and drops the journal segments it covers.
+     */
+    public void checkpoint() {
+        State state = null;
+        long segmentStart;
+        mutationLock.lock();
+        try {
+            if (failure != null) return;
+            // O(1): the state shares the stores' arrays, which copy
+            // themselves if they change before it is released
+            state = captureState();
+            segmentStart = lastLsn + 1;
+            openSegment(segmentStart);
+            recordsSinceSnapshot = 0;
+        } catch (IOException e) {
+            failed(e); // the old segment may be closed with no new one open
+            state.release();
+            return;
+        } finally {
+            snapshotPending = false;
+            mutationLock.unlock();
+        }
+        // A failed snapshot leaves the old snapshot and every segment in
+        // place, so the journal stays usable.
+        try {
+            writeSnapshot(state);
+            deleteSegmentsBefore(segmentStart);
+        } catch (IOException e) {
+            Log.getInstance().log(Log.Level.ERROR, "Journal snapshot failed: {}", e.getMessage());
+        } finally {
+            state.release();
+        }
+    }
+
+    /**
+     * Flushes and forces outstanding records, then stops the journal.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        snapshotExecutor.shutdown();
+        try {
+            snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mutationLock.lock();
+        try {
+            if (failure == null && segment != null) syncNow(true);
+            if (segmentFile != null) segmentFile.close();
+        } catch (IOException e) {
+            failed(e);
+        } finally {
+            mutationLock.unlock();
+        }
+        syncThread.interrupt();
+    }
+
+    // --- record writing (callers hold mutationLock) ---
+
+    private void startRecord(byte type) throws IOException {
+        if (!mutationLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("Journal records must be written between begin() and end()");
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Journal failed: " + dir, failure);
+        }
+        recordBuffer.reset();
+        record.writeByte(type);
+        record.writeLong(lastLsn + 1);
+    }
+
+    private void finishRecord() throws IOException {
+        crc.reset();
+        byte[] bytes = recordBuffer.toByteArray();
+        crc.update(bytes);
+        segment.writeInt(bytes.length);
+        segment.writeInt((int) crc.getValue());
+        segment.write(bytes);
+        lastLsn++;
+        recordsSinceSnapshot++;
+        if (policy == SyncPolicy.ALWAYS) {
+            syncNow(true);
+        }
+    }
+
+    private void openSegment(long firstLsn) throws IOException {
+        if (segment != null) {
+            syncNow(policy != SyncPolicy.NONE);
+            segmentFile.close();
+        }
+        // Never appended to: a file already named for this LSN holds no record
+        // recovery accepted (it would have moved lastLsn past it), only debris.
+        segmentFile = new FileOutputStream(new File(dir, SEGMENT_PREFIX + firstLsn + SEGMENT_SUFFIX));
+        segment = new DataOutputStream(new BufferedOutputStream(segmentFile, 1 << 16));
+    }
+
+    private void syncNow(boolean force) throws IOException {
+        segment.flush();
+        if (force) {
+            segmentFile.getChannel().force(false);
+        }
+        markDurable(lastLsn);
+    }
+
+    private void markDurable(long lsn) {
+        synchronized (syncLock) {
+            if (lsn > durableLsn) {
+                durableLsn = lsn;
+            }
+            syncLock.notifyAll();
+        }
+    }
+
+    /**
+     * Puts the journal in the failed state (the first failure is kept),
+     * wakes the mutations waiting for a group commit, and returns the
+     * exception for the writer to throw.
+     */
+    private UncheckedIOException failed(IOException e) {
+        synchronized (syncLock) {
+            if (failure == null) {
+                failure = e;
+                Log.getInstance().log(Log.Level.ERROR, "Journal write failed, refusing further changes: {}",
+                        e.getMessage());
+            }
+            syncLock.notifyAll();
+        }
+        return new UncheckedIOException("Journal write failed: " + dir, e);
+    }
+
+    // --- group commit ---
+
+    private void runSync() {
+        while (!closed) {
+            try {
+                Thread.sleep(groupCommitMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            // Flush under the lock, but force outside it so mutations keep going
+            // while the disk catches up.
+            long lsn;
+            FileOutputStream file;
+            mutationLock.lock();
+            try {
+                if (segment == null || closed || failure != null) continue;
+                segment.flush();
+                lsn = lastLsn;
+                file = segmentFile;
+            } catch (IOException e) {
+                failed(e);
+                return;
+            } finally {
+                mutationLock.unlock();
+            }
+            if (policy == SyncPolicy.GROUP) {
+                try {
+                    file.getChannel().force(false);
+                } catch (ClosedChannelException e) {
+                    // segment was rotated meanwhile; rotation already forced it
+                } catch (IOException e) {
+                    failed(e);
+                    return;
+                }
+            }
+            markDurable(lsn);
+        }
+    }
+
+    private void awaitDurable(long lsn) {
+        synchronized (syncLock) {
+            while (durableLsn < lsn && !closed) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Journal failed before record " + lsn + " was durable: " + dir,
+                            failure);
+                }
+                try {
+                    syncLock.wait(groupCommitMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // --- snapshots ---
+
+    private static final class State {
+        final long lsn;
+        final int today;
+        final ParcelManifest manifest;  // null if none is attached
+        final BitSet removedBase;       // manifest records no longer in the depot
+        final ParcelMap.Overlay parcels; // parcels held in memory, on top of the manifest
+        final QueueOfCustomers.Capture customers;
+        final int history; // entries of the processed history, which is append-only
+
+        State(long lsn, int today, ParcelManifest manifest, BitSet removedBase, ParcelMap.Overlay parcels,
+              QueueOfCustomers.Capture customers, int history) {
+            this.lsn = lsn;
+            this.today = today;
+            this.manifest = manifest;
+            this.removedBase = removedBase;
+            this.parcels = parcels;
+            this.customers = customers;
+            this.history = history;
+        }
+
+        void release() {
+            parcels.release();
+            customers.release();
+        }
+    }
+
+    private State captureState() {
+        ParcelMap parcelMap = manager.getParcelMap();
+        BitSet removedBase = new BitSet();
+        ParcelMap.Overlay parcels = parcelMap.captureOverlay(removedBase);
+        QueueOfCustomers.Capture customers = manager.getCustomerQueue().capture();
+        int history = manager.getProcessedHistory().size();
+        return new State(lastLsn, DepotClock.getInstance().today(), parcelMap.getManifest(), removedBase,
+                parcels, customers, history);
+    }
+
+    private void writeSnapshot(State state) throws IOException {
+        File tmp = new File(dir, SNAPSHOT_FILE + ".tmp");
+        CRC32 checksum = new CRC32();
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     new CheckedOutputStream(fos, checksum), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(state.lsn);
+            out.writeInt(state.today);
+            out.writeBoolean(state.manifest != null);
+            if (state.manifest != null) {
+                out.writeUTF(new File(state.manifest.getPath()).getAbsolutePath());
+                out.writeLong(state.manifest.getChecksum());
+                out.writeInt(state.manifest.size());
+                out.writeInt(state.manifest.getOpenedDay());
+                out.writeInt(state.removedBase.cardinality());
+                for (int rec = state.removedBase.nextSetBit(0); rec >= 0; rec = state.removedBase.nextSetBit(rec + 1)) {
+                    out.writeInt(rec);
+                }
+            }
+            out.writeInt(state.parcels.size());
+            for (int row = 0; row < state.parcels.size(); row++) {
+                out.writeUTF(state.parcels.id(row));
+                out.writeDouble(state.parcels.length(row));
+                out.writeDouble(state.parcels.width(row));
+                out.writeDouble(state.parcels.height(row));
+                out.writeDouble(state.parcels.weight(row));
+                out.writeInt(state.parcels.arrivalDay(row));
+            }
+            out.writeInt(state.customers.size());
+            for (Customer c : state.customers) {
+                out.writeLong(c.getId());
+                out.writeInt(c.getSeqNumber());
+                out.writeUTF(c.getName());
+                out.writeUTF(c.getDesiredParcelID());
+            }
+            ProcessedHistory history = manager.getProcessedHistory();
+            long[] keptBlocks = history.keptBlockTimes(state.history);
+            out.writeInt(keptBlocks.length / 2);
+            for (long time : keptBlocks) {
+                out.writeLong(time);
+            }
+            writeHistory(out, history, keptBlocks.length / 2 * ProcessedHistory.BLOCK_SIZE, state.history);
+            out.flush();
+            long sum = checksum.getValue();
+            new DataOutputStream(fos).writeLong(sum);
+            fos.getChannel().force(true);
+        }
+        Files.move(tmp.toPath(), new File(dir, SNAPSHOT_FILE).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Log.getInstance().log(Log.Level.INFO, "Journal snapshot written at record {} ({} parcels in memory,"
+                        + " {} manifest parcels removed, {} customers)",
+                state.lsn, state.parcels.size(), state.removedBase.cardinality(), state.customers.size());
+    }
+
+    private static long readSnapshot(File file, Manager target) throws IOException {
+        CRC32 checksum = new CRC32();
+        try (FileInputStream fis = new FileInputStream(file);
+             DataInputStream in = new DataInputStream(new CheckedInputStream(
+                     new BufferedInputStream(fis, 1 << 16), checksum))) {
+            int magic = in.readInt();
+            if (magic != SNAPSHOT_MAGIC && magic != SNAPSHOT_MAGIC_V5 && magic != SNAPSHOT_MAGIC_V4 && magic != SNAPSHOT_MAGIC_V3
+                    && magic != SNAPSHOT_MAGIC_V2 && magic != SNAPSHOT_MAGIC_V1) {
+                throw new IOException("Not a depot snapshot: " + file);
+            }
+            long lsn = in.readLong();
+            boolean arrivals = magic != SNAPSHOT_MAGIC_V1;
+            if (arrivals) DepotClock.getInstance().setToday(in.readInt());
+            boolean v5 = magic == SNAPSHOT_MAGIC || magic == SNAPSHOT_MAGIC_V5;
+            if (v5 && in.readBoolean()) {
+                attachManifest(in, target);
+            }
+            int parcels = in.readInt();
+            List<Parcel> batch = new ArrayList<>(Math.min(parcels, 1 << 16));
+            for (int i = 0; i < parcels; i++) {
+                String id = in.readUTF();
+                double length = in.readDouble();
+                double width = in.readDouble();
+                double height = in.readDouble();
+                double weight = in.readDouble();
+                int days = in.readInt();
+                batch.add(arrivals ? Parcel.arrivedOn(id, length, width, height, weight, days)
+                        : new Parcel(id, length, width, height, weight, days));
+                if (batch.size() == 1 << 16) {
+                    target.getParcelMap().putAll(batch);
+                    batch.clear();
+                }
+            }
+            target.getParcelMap().putAll(batch);
+            int customers = in.readInt();
+            List<Customer> queue = new ArrayList<>(customers);
+            for (int i = 0; i < customers; i++) {
+                queue.add(v5 || magic == SNAPSHOT_MAGIC_V4
+                        ? new Customer(in.readLong(), in.readInt(), in.readUTF(), in.readUTF())
+                        : new Customer(in.readInt(), in.readUTF(), in.readUTF()));
+            }
+            target.getCustomerQueue().enqueueAll(queue);
+            if (magic == SNAPSHOT_MAGIC) {
+                long[] keptBlocks = new long[2 * in.readInt()];
+                for (int i = 0; i < keptBlocks.length; i++) {
+                    keptBlocks[i] = in.readLong();
+                }
+                target.getProcessedHistory().adoptKeptBlocks(keptBlocks);
+            }
+            int history = in.readInt();
+            for (int i = 0; i < history; i++) {
+                if (v5 || magic == SNAPSHOT_MAGIC_V4 || magic == SNAPSHOT_MAGIC_V3) {
+                    readHistoryEntry(in, target.getProcessedHistory());
+                } else {
+                    target.restoreProcessedRecord(in.readUTF(), 0);
+                }
+            }
+            long expected = checksum.getValue();
+            long stored = in.readLong();
+            if (expected != stored) {
+                throw new IOException("Snapshot checksum mismatch: " + file);
+            }
+            return lsn;
+        }
+    }
+
+    /**
+     * Reopens the manifest a snapshot names, checks it is the same file, and
+     * attaches it with the records the snapshot lists as removed hidden.
+     */
+    private static void attachManifest(DataInputStream in, Manager target) throws IOException {
+        String path = in.readUTF();
+        long checksum = in.readLong();
+        int count = in.readInt();
+        int openedDay = in.readInt();
+        BitSet removed = new BitSet();
+        for (int i = in.readInt(); i > 0; i--) {
+            removed.set(in.readInt());
+        }
+        ParcelManifest manifest = ParcelManifest.open(path, openedDay);
+        if (manifest.getChecksum() != checksum || manifest.size() != count) {
+            manifest.close();
+            throw new IOException("Parcel manifest " + path + " has changed since the snapshot");
+        }
+        target.getParcelMap().attachManifest(manifest);
+        target.getParcelMap().hideBaseRecords(removed);
+    }
+
+    /**
+     * Writes history entries [from, to), a block at a time. These are the
+     * entries not yet spilled, so normally still in memory.
+     */
+    private static void writeHistory(DataOutputStream out, ProcessedHistory history, int from, int to)
+            throws IOException {
+        out.writeInt(to - from);
+        for (int i = from; i < to; i += ProcessedHistory.BLOCK_SIZE) {
+            for (ProcessedHistory.Entry e : history.page(i, Math.min(ProcessedHistory.BLOCK_SIZE, to - i))) {
+                out.writeByte(e.getAction().ordinal());
+                out.writeLong(e.getTimeMillis());
+                if (e.getAction() == ProcessedHistory.Action.OTHER) {
+                    out.writeUTF(e.getCustomer());
+                } else {
+                    out.writeUTF(e.getParcelID());
+                    out.writeUTF(e.getCustomer());
+                    out.writeDouble(e.getFee());
+                }
+            }
+        }
+    }
+
+    private static void readHistoryEntry(DataInputStream in, ProcessedHistory history) throws IOException {
+        ProcessedHistory.Action action = ProcessedHistory.Action.values()[in.readByte()];
+        long time = in.readLong();
+        if (action == ProcessedHistory.Action.OTHER) {
+            history.add(action, null, in.readUTF(), 0, time);
+        } else {
+            history.add(action, in.readUTF(), in.readUTF(), in.readDouble(), time);
+        }
+    }
+
+    // --- replay ---
+
+    /**
+     * Replays records with lsn &gt; afterLsn.
+     *
+     * @return {last lsn seen, records applied}.
+     */
+    private static long[] replay(File seg, Manager target, long afterLsn) throws IOException {
+        long lastLsn = afterLsn;
+        long applied = 0;
+        long goodBytes = 0;
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(seg), 1 << 16))) {
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int expected = in.readInt();
+                    if (length <= 0 || length > (1 << 20)) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != expected) break;
+                } catch (EOFException e) {
+                    break;
+                }
+                goodBytes += 8 + payload.length;
+                DataInputStream rec = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = rec.readByte();
+                long lsn = rec.readLong();
+                lastLsn = Math.max(lastLsn, lsn);
+                if (lsn <= afterLsn) continue;
+                apply(type, rec, target);
+                applied++;
+            }
+        }
+        if (goodBytes < seg.length()) {
+            Log.getInstance().log(Log.Level.WARN, "Journal segment {} has a torn tail; truncating at {} bytes",
+                    seg.getName(), goodBytes);
+            try (RandomAccessFile raf = new RandomAccessFile(seg, "rw")) {
+                raf.setLength(goodBytes);
+            }
+        }
+        return new long[]{lastLsn, applied};
+    }
+
+    private static void apply(byte type, DataInputStream rec, Manager target) throws IOException {
+        switch (type) {
+            case PUT_PARCEL:
+                target.getParcelMap().putParcel(new Parcel(rec.readUTF(), rec.readDouble(), rec.readDouble(),
+                        rec.readDouble(), rec.readDouble(), rec.readInt()));
+                break;
+            case ENQUEUE: {
+                int seq = rec.readInt();
+                String name = rec.readUTF();
+                String pid = rec.readUTF();
+                target.getCustomerQueue().enqueue(rec.available() >= 8
+                        ? new Customer(rec.readLong(), seq, name, pid) : new Customer(seq, name, pid));
+                break;
+            }
+            case PROCESS: {
+                int seq = rec.readInt();
+                String pid = rec.readUTF();
+                String record = null;
+                long time = 0;
+                if (rec.readBoolean()) {
+                    record = rec.readUTF();
+                    time = rec.available() >= 8 ? rec.readLong() : 0;
+                }
+                removeCustomer(target, seq, rec);
+                if (record != null) {
+                    target.getParcelMap().removeParcel(pid);
+                    target.restoreProcessedRecord(record, time);
+                }
+                break;
+            }
+            case COLLECT:
+                target.getParcelMap().removeParcel(rec.readUTF());
+                String record = rec.readUTF();
+                target.restoreProcessedRecord(record, rec.available() >= 8 ? rec.readLong() : 0);
+                break;
+            case CANCEL:
+                removeCustomer(target, rec.readInt(), rec);
+                break;
+            case DAY:
+                DepotClock.getInstance().setToday(rec.readInt());
+                break;
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    /**
+     * Removes a processed or cancelled customer by the ID at the end of the
+     * record; journals written before IDs were recorded fall back to the
+     * first customer with the sequence number.
+     */
+    private static void removeCustomer(Manager target, int seq, DataInputStream rec) throws IOException {
+        if (rec.available() >= 8) {
+            target.getCustomerQueue().removeById(rec.readLong());
+        } else {
+            target.getCustomerQueue().removeBySeqNumber(seq);
+        }
+    }
+
+    // --- segment files ---
+
+    private List<File> segments() {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) return new ArrayList<>();
+        Arrays.sort(files, (a, b) -> Long.compare(segmentStart(a), segmentStart(b)));
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    private static long segmentStart(File f) {
+        String name = f.getName();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private void deleteSegmentsBefore(long firstLsn) {
+        for (File f : segments()) {
+            if (segmentStart(f) < firstLsn && !f.delete()) {
+                Log.getInstance().log(Log.Level.WARN, "Could not delete old journal segment {}", f);
+            }
+        }
+    }
+}
@@ -1,29 +1,59 @@
 package model;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Coordinates data loading, managing customers/parcels, fee calculations, logging, and reporting.
  */
-public class Manager {
+public class Manager implements AutoCloseable {
+    /** Customers per batch in {@link #drainAll()}. */
+    public static final int DRAIN_BATCH_SIZE = 1024;
+
     private final QueueOfCustomers customerQueue;
     private final ParcelMap parcelMap;
     private final Worker worker;
-    private final List<String> processedParcels;
+    private final ProcessedHistory processedHistory;
+    private final ReportWriter reportWriter;
+    private final Log log;
+    private volatile DepotJournal journal;
+    private volatile CustomerScheduler scheduler;
 
     public Manager() {
+        this("main/resources/report.txt");
+    }
+
+    /**
+     * Creates a manager that appends its report entries to the given file
+     * using the default group-commit policy.
+     */
+    public Manager(String reportFilePath) {
+        this(new ReportWriter(reportFilePath));
+    }
+
+    /**
+     * Creates a manager that reports through the given writer.
+     */
+    public Manager(ReportWriter reportWriter) {
+        this(reportWriter, Log.getInstance());
+    }
+
+    /**
+     * Creates a manager that reports through the given writer and logs its
+     * events to the given log rather than the shared one. The manager owns
+     * that log and closes it in {@link #close()}.
+     */
+    public Manager(ReportWriter reportWriter, Log log) {
+        this.log = log;
         customerQueue = new QueueOfCustomers();
         parcelMap = new ParcelMap();
         worker = new Worker();
-        processedParcels = new ArrayList<>();
+        processedHistory = new ProcessedHistory();
+        this.reportWriter = reportWriter;
+        scheduler = new FifoScheduler();
+        scheduler.attach(customerQueue, parcelMap);
+        DepotMetrics.getInstance().register(this);
     }
 
     public QueueOfCustomers getCustomerQueue() {
@@ -38,153 +68,522 @@ public class Manager {
         return worker;
     }
 
-    public List<String> getProcessedParcels() {
-        return processedParcels;
+    /**
+     * Processed and collected parcels, oldest first.
+     */
+    public ProcessedHistory getProcessedHistory() {
+        return processedHistory;
+    }
+
+    public CustomerScheduler getScheduler() {
+        return scheduler;
     }
 
     /**
-     * Loads customers from a file (format: "Name,ParcelID").
+     * Switches the policy that picks the next customer to process. Takes
+     * effect for the next pick; customers already waiting are ranked by the
+     * new policy too.
      */
-    public void loadCustomers(String filename) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
-            int seqCounter = 1;
-            int count = 0;
-            String line;
-
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.trim().split(",", 2);
-                if (parts.length == 2) {
-                    String name = parts[0].trim();
-                    String parcelID = parts[1].trim().toUpperCase();
-
-                    Customer c = new Customer(seqCounter++, name, parcelID);
-                    customerQueue.enqueue(c);
-                    Log.getInstance().addEntry("Loaded Customer: " + c);
-                    System.out.println("Loaded Customer: " + c);
-                    count++;
-                } else {
-                    System.err.println("Invalid customer entry: " + line);
-                }
+    public synchronized void setScheduler(CustomerScheduler newScheduler) {
+        newScheduler.attach(customerQueue, parcelMap);
+        CustomerScheduler old = scheduler;
+        scheduler = newScheduler;
+        old.detach();
+        log.log(Log.Level.INFO, "Customer scheduling switched from {} to {}",
+                old.getName(), newScheduler.getName());
+    }
+
+    /**
+     * Registers a listener for records added to the processed list.
+     *
+     * @return the number of records at the moment of registration.
+     */
+    public int addProcessedListener(RowListener listener) {
+        return processedHistory.addListener(listener);
+    }
+
+    public ReportWriter getReportWriter() {
+        return reportWriter;
+    }
+
+    /**
+     * Blocks until all report entries so far are written to the report file.
+     *
+     * @throws java.io.UncheckedIOException if the report writer has failed.
+     */
+    public void flushReport() {
+        reportWriter.flush();
+    }
+
+    /**
+     * Flushes and closes the report file (and journal and manifest, if any,
+     * and the log if it is not the shared one). Call once on shutdown.
+     */
+    @Override
+    public void close() {
+        DepotMetrics.getInstance().unregister(this);
+        if (journal != null) journal.close();
+        reportWriter.close();
+        processedHistory.close();
+        ParcelManifest manifest = parcelMap.getManifest();
+        if (manifest != null) {
+            try {
+                manifest.close();
+            } catch (IOException e) {
+                log.log(Log.Level.WARN, "Error closing parcel manifest: {}", e.getMessage());
             }
-            System.out.println("Total Customers Loaded: " + count);
-        } catch (IOException e) {
-            System.err.println("Error loading customers: " + e.getMessage());
         }
+        if (log != Log.getInstance()) log.close();
+    }
+
+    /**
+     * Loads customers from a file (format: "Name,ParcelID").
+     * The file is parsed in parallel chunks; see {@link CsvIngestor}.
+     */
+    public void loadCustomers(String filename) {
+        loadCustomers(filename, null);
+    }
+
+    /**
+     * As {@link #loadCustomers(String)}, enqueueing customers in batches as
+     * the file is read and reporting each batch to {@code progress} (may be null).
+     */
+    public void loadCustomers(String filename, CsvIngestor.Progress progress) {
+        long start = System.nanoTime();
+        CsvIngestor.loadCustomers(filename, customerQueue, progress);
+        DepotMetrics.getInstance().recordSince(DepotMetrics.Op.LOAD_CUSTOMERS, start);
     }
 
     /**
      * Loads parcels from a file (format: "ParcelID,Length,Width,Height,Weight,Days").
+     * The file is parsed in parallel chunks; see {@link CsvIngestor}.
      */
     public void loadParcels(String filename) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
-            int count = 0;
-            String line;
-
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.trim().split("\\s*,\\s*");
-                if (parts.length == 6) {
-                    String pid = parts[0].toUpperCase();
-                    double length = Double.parseDouble(parts[1]);
-                    double width = Double.parseDouble(parts[2]);
-                    double height = Double.parseDouble(parts[3]);
-                    double weight = Double.parseDouble(parts[4]);
-                    int days = Integer.parseInt(parts[5]);
-
-                    Parcel p = new Parcel(pid, length, width, height, weight, days);
-                    parcelMap.putParcel(p);
-                    Log.getInstance().addEntry("Loaded Parcel: " + p);
-                    System.out.println("Loaded Parcel: " + p);
-                    count++;
-                } else {
-                    System.err.println("Invalid parcel entry: " + line);
-                }
-            }
-            System.out.println("Total Parcels Loaded: " + count);
-        } catch (IOException | NumberFormatException e) {
-            System.err.println("Error loading parcels: " + e.getMessage());
+        loadParcels(filename, null);
+    }
+
+    /**
+     * As {@link #loadParcels(String)}, adding parcels in batches as the file
+     * is read and reporting each batch to {@code progress} (may be null).
+     */
+    public void loadParcels(String filename, CsvIngestor.Progress progress) {
+        long start = System.nanoTime();
+        CsvIngestor.loadParcels(filename, parcelMap, progress);
+        DepotMetrics.getInstance().recordSince(DepotMetrics.Op.LOAD_PARCELS, start);
+    }
+
+    /**
+     * Serves parcels from a binary manifest (see {@link ParcelManifest})
+     * instead of parsing a CSV file. The file is mapped, not read, so this
+     * takes about the same time for any number of parcels. Call on an empty
+     * parcel map.
+     *
+     * @return the number of parcels in the manifest, or 0 if it could not be opened.
+     */
+    public int loadManifest(String filename) {
+        long start = System.nanoTime();
+        try {
+            ParcelManifest manifest = ParcelManifest.open(filename);
+            parcelMap.attachManifest(manifest);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            log.addEntry("Opened parcel manifest " + filename + " with " + manifest.size() + " parcels");
+            System.out.println("Total Parcels Loaded: " + manifest.size() + " (manifest, " + elapsedMs + " ms)");
+            return manifest.size();
+        } catch (IOException | IllegalStateException e) {
+            log.log(Log.Level.ERROR, "Error loading parcel manifest: {}", e.getMessage());
+            return 0;
         }
     }
 
     /**
-     * Processes the next customer in the queue:
+     * Processes the next customer in the queue (the one the scheduler picks;
+     * the first in line unless {@link #setScheduler} chose another policy):
      * Removes them from the queue, finds their parcel, calculates fees,
      * removes the parcel from the map, logs everything, writes a report entry.
      */
     public void processNextCustomer() {
-        if (!customerQueue.isEmpty()) {
-            Customer c = customerQueue.dequeue();
-            System.out.println("Processing Customer: " + c);
-
-            String pid = c.getDesiredParcelID().toUpperCase();
-            Parcel p = parcelMap.getParcel(pid);
-            if (p == null) {
-                String errorMsg = "Parcel " + pid + " not found for " + c.getName();
-                Log.getInstance().addEntry(errorMsg);
-                System.err.println(errorMsg);
-                writeReport("Failed to process Parcel ID " + pid + " for " + c.getName() + " - Parcel not found.");
-                return;
-            }
-            System.out.println("Found Parcel: " + p);
+        if (!processNextCustomer(worker)) {
+            log.addEntry("No customer left in queue to process.");
+            writeReport("Attempted to process parcel but no customers in queue.");
+        }
+    }
+
+    /**
+     * Processes the next customer in the queue using the given worker.
+     * Safe to call from several threads at once: the parcel is claimed by
+     * removing it from the map, so it can only be handed out once, even if
+     * {@link #collectParcel(String, String)} races for the same ID.
+     *
+     * @return false if the queue was empty, true if a customer was dequeued
+     *         (whether or not their parcel was found).
+     */
+    public boolean processNextCustomer(Worker w) {
+        return serveNextCustomer(w).getCustomer() != null;
+    }
+
+    /**
+     * As {@link #processNextCustomer(Worker)}, but says what happened, for
+     * callers that report it back (e.g. the depot server).
+     */
+    public Outcome serveNextCustomer(Worker w) {
+        long start = System.nanoTime();
+        beginMutation();
+        try {
+            return processNext(w);
+        } finally {
+            endMutation();
+            DepotMetrics.getInstance().recordSince(DepotMetrics.Op.PROCESS_NEXT_CUSTOMER, start);
+        }
+    }
+
+    /**
+     * The result of serving one customer: who was served (null if the queue
+     * was empty), whether their parcel was found, and the fee charged.
+     */
+    public static final class Outcome {
+        static final Outcome QUEUE_EMPTY = new Outcome(null, false, 0);
+
+        private final Customer customer;
+        private final boolean parcelFound;
+        private final double fee;
+
+        Outcome(Customer customer, boolean parcelFound, double fee) {
+            this.customer = customer;
+            this.parcelFound = parcelFound;
+            this.fee = fee;
+        }
+
+        public Customer getCustomer() {
+            return customer;
+        }
+
+        public boolean isParcelFound() {
+            return parcelFound;
+        }
+
+        public double getFee() {
+            return fee;
+        }
+    }
+
+    private Customer nextScheduled() {
+        CustomerScheduler s;
+        Customer c;
+        do {
+            s = scheduler;
+            c = s.next();
+        } while (c == null && s != scheduler); // switched meanwhile; ask the new one
+        return c;
+    }
+
+    private Outcome processNext(Worker w) {
+        Customer c = nextScheduled();
+        if (c == null) {
+            DepotMetrics.getInstance().queueEmpty();
+            return Outcome.QUEUE_EMPTY;
+        }
+        log.log(Log.Level.DEBUG, "Processing Customer: {}", c);
 
-            double fee = worker.calculateFee(p);
-            parcelMap.removeParcel(pid);
+        String pid = c.getDesiredParcelID().toUpperCase();
+        Parcel p = parcelMap.removeParcel(pid);
+        if (p == null) {
+            if (journal != null) journal.logProcess(c, null, 0);
+            DepotMetrics.getInstance().parcelNotFound();
+            log.log(Log.Level.WARN, "Parcel {} not found for {}", pid, c.getName());
+            writeReport("Failed to process Parcel ID " + pid + " for " + c.getName() + " - Parcel not found.");
+            return new Outcome(c, false, 0);
+        }
+        log.log(Log.Level.DEBUG, "Found Parcel: {}", p);
+
+        double fee = w.calculateFee(p);
 
+        long now = System.currentTimeMillis();
+        String record = "Processed Parcel ID " + pid +
+                " for " + c.getName() +
+                " | Fee: $" + String.format("%.2f", fee);
+        if (journal != null) journal.logProcess(c, record, now);
+        DepotMetrics.getInstance().parcelProcessed();
+        processedHistory.add(ProcessedHistory.Action.PROCESSED, pid, c.getName(), fee, now);
+        log.addEntry(record);
+        writeReport(record + " (Action: Processed via Worker)");
+        return new Outcome(c, true, fee);
+    }
+
+    /**
+     * Serves up to {@code maxCustomers} customers as one batch: dequeues them
+     * (in the order the scheduler picks), claims their parcels under one map
+     * lock, prices them in bulk, then commits the journal, history, report
+     * and log entries for the whole batch at once. Records are the same, and
+     * in the same order, as serving them one by one would give.
+     * <p>
+     * A batch of 0 returns an empty summary without touching the queue.
+     *
+     * @throws IllegalArgumentException if {@code maxCustomers} is negative.
+     */
+    public BatchSummary processBatch(int maxCustomers) {
+        if (maxCustomers < 0) {
+            throw new IllegalArgumentException("maxCustomers must be >= 0: " + maxCustomers);
+        }
+        BatchSummary summary = new BatchSummary();
+        if (maxCustomers == 0) return summary;
+        long start = System.nanoTime();
+        beginMutation();
+        try {
+            processBatch(worker, maxCustomers, summary);
+        } finally {
+            endMutation();
+            DepotMetrics.getInstance().recordSince(DepotMetrics.Op.PROCESS_BATCH, start);
+        }
+        summary.finishBatch(System.nanoTime() - start);
+        return summary;
+    }
+
+    /**
+     * Serves the whole queue in batches of {@link #DRAIN_BATCH_SIZE}, e.g. for
+     * an end-of-day run.
+     */
+    public BatchSummary drainAll() {
+        BatchSummary total = new BatchSummary();
+        BatchSummary batch;
+        do {
+            batch = processBatch(DRAIN_BATCH_SIZE);
+            total.add(batch);
+        } while (batch.getDequeued() > 0);
+        return total;
+    }
+
+    private void processBatch(Worker w, int maxCustomers, BatchSummary summary) {
+        List<Customer> batch = new ArrayList<>(Math.min(maxCustomers, DRAIN_BATCH_SIZE));
+        List<String> ids = new ArrayList<>(Math.min(maxCustomers, DRAIN_BATCH_SIZE));
+        Customer next;
+        while (batch.size() < maxCustomers && (next = nextScheduled()) != null) {
+            batch.add(next);
+            ids.add(next.getDesiredParcelID().toUpperCase());
+        }
+        if (batch.isEmpty()) {
+            DepotMetrics.getInstance().queueEmpty();
+            return;
+        }
+
+        Parcel[] parcels = parcelMap.removeParcels(ids);
+        List<Parcel> found = new ArrayList<>(parcels.length);
+        for (Parcel p : parcels) {
+            if (p != null) found.add(p);
+        }
+        double[] fees = new double[found.size()];
+        if (w.isTraceEnabled()) {
+            for (int i = 0; i < fees.length; i++) {
+                fees[i] = w.calculateFee(found.get(i));
+            }
+        } else {
+            Worker.calculateFees(found, fees);
+        }
+
+        long now = System.currentTimeMillis();
+        String[] processedIds = new String[found.size()];
+        String[] names = new String[found.size()];
+        List<String> report = new ArrayList<>(batch.size());
+        int f = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Customer c = batch.get(i);
+            String pid = ids.get(i);
+            if (parcels[i] == null) {
+                if (journal != null) journal.logProcess(c, null, 0);
+                log.log(Log.Level.WARN, "Parcel {} not found for {}", pid, c.getName());
+                report.add("Failed to process Parcel ID " + pid + " for " + c.getName() + " - Parcel not found.");
+                summary.notFound(c);
+                continue;
+            }
+            double fee = fees[f];
             String record = "Processed Parcel ID " + pid +
                     " for " + c.getName() +
                     " | Fee: $" + String.format("%.2f", fee);
-            processedParcels.add(record);
-            Log.getInstance().addEntry(record);
-            writeReport(record + " (Action: Processed via Worker)");
-        } else {
-            String msg = "No customer left in queue to process.";
-            Log.getInstance().addEntry(msg);
-            System.out.println(msg);
-            writeReport("Attempted to process parcel but no customers in queue.");
+            if (journal != null) journal.logProcess(c, record, now);
+            log.addEntry(record);
+            report.add(record + " (Action: Processed via Worker)");
+            processedIds[f] = pid;
+            names[f] = c.getName();
+            f++;
+            summary.processed(fee);
         }
+        processedHistory.addAll(ProcessedHistory.Action.PROCESSED, processedIds, names, fees, f, now);
+        DepotMetrics.getInstance().parcelsProcessed(f);
+        DepotMetrics.getInstance().parcelsNotFound(batch.size() - f);
+
+        long start = System.nanoTime();
+        try {
+            reportWriter.appendAll(report);
+        } catch (IllegalStateException e) {
+            log.log(Log.Level.ERROR, "Error writing to report: {}", e.getMessage());
+        }
+        DepotMetrics.getInstance().recordSince(DepotMetrics.Op.WRITE_REPORT, start);
+        log.log(Log.Level.DEBUG, "Report: {} entries added", report.size());
     }
 
     /**
      * Collects a parcel directly from the Customer tab,
      * calculates fees, removes the parcel, and logs the action.
+     * If the customer is also waiting in the queue for this parcel, that
+     * queue entry is cancelled, since processing it later could only fail.
      */
     public boolean collectParcel(String customerName, String parcelID) {
         String pid = parcelID.toUpperCase();
-        if (parcelMap.containsParcel(pid)) {
-            Parcel p = parcelMap.getParcel(pid);
-            double fee = worker.calculateFee(p);
-            parcelMap.removeParcel(pid);
+        long start = System.nanoTime();
+        beginMutation();
+        try {
+            Parcel p = parcelMap.removeParcel(pid);
+            if (p != null) {
+                double fee = worker.calculateFee(p);
 
-            String record = "Collected Parcel ID " + pid +
-                    " by " + customerName +
-                    " | Fee: $" + String.format("%.2f", fee);
-            processedParcels.add(record);
-            Log.getInstance().addEntry(record);
-            writeReport(record + " (Action: Collected via Customer)");
-            return true;
-        }
-        String errorMsg = "Parcel " + pid + " not found for collection by " + customerName;
-        Log.getInstance().addEntry(errorMsg);
-        System.err.println(errorMsg);
+                long now = System.currentTimeMillis();
+                String record = "Collected Parcel ID " + pid +
+                        " by " + customerName +
+                        " | Fee: $" + String.format("%.2f", fee);
+                if (journal != null) journal.logCollect(pid, record, now);
+                cancelQueued(customerName, pid);
+                DepotMetrics.getInstance().parcelCollected();
+                processedHistory.add(ProcessedHistory.Action.COLLECTED, pid, customerName, fee, now);
+                log.addEntry(record);
+                writeReport(record + " (Action: Collected via Customer)");
+                return true;
+            }
+        } finally {
+            endMutation();
+            DepotMetrics.getInstance().recordSince(DepotMetrics.Op.COLLECT_PARCEL, start);
+        }
+        DepotMetrics.getInstance().parcelNotFound();
+        log.log(Log.Level.WARN, "Parcel {} not found for collection by {}", pid, customerName);
         writeReport("Failed to collect Parcel ID " + pid + " by " + customerName + " - Parcel not found.");
         return false;
     }
 
+    private void cancelQueued(String customerName, String pid) {
+        for (Customer c : customerQueue.findByParcelId(pid)) {
+            if (c.getName().equalsIgnoreCase(customerName.trim()) && customerQueue.remove(c)) {
+                if (journal != null) journal.logCancel(c);
+                log.log(Log.Level.INFO, "Cancelled queue entry {} after direct collection", c);
+                return;
+            }
+        }
+    }
+
     /**
-     * Appends a report entry to report.txt with a timestamp.
+     * Adds (or replaces) a parcel in the depot, journaling the change if enabled.
      */
-    private void writeReport(String entry) {
-        String timestamp = LocalDateTime.now()
-                .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-        String reportEntry = "[" + timestamp + "] " + entry;
+    public void addParcel(Parcel p) {
+        beginMutation();
+        try {
+            parcelMap.putParcel(p);
+            if (journal != null) journal.logPutParcel(p);
+        } finally {
+            endMutation();
+        }
+    }
 
-        String reportFilePath = "main/resources/report.txt";
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(reportFilePath, true))) {
-            bw.write(reportEntry);
-            bw.newLine();
-            System.out.println("Report Entry Added: " + reportEntry);
-        } catch (IOException e) {
-            System.err.println("Error writing to report.txt: " + e.getMessage());
+    /**
+     * The nightly roll-over: moves the depot clock on a day, so every parcel
+     * is a day older, journaling the change if enabled. Costs the same
+     * however many parcels there are.
+     *
+     * @return the new depot day (an epoch day).
+     */
+    public int advanceDay() {
+        beginMutation();
+        int today;
+        try {
+            today = DepotClock.getInstance().advanceDay();
+            if (journal != null) journal.logDay(today);
+        } finally {
+            endMutation();
         }
+        parcelMap.clockMoved();
+        log.log(Log.Level.INFO, "Depot day advanced to {}", DepotClock.getInstance().todayDate());
+        return today;
+    }
+
+    /**
+     * Adds a customer to the back of the queue, journaling the change if enabled.
+     */
+    public void addCustomer(Customer c) {
+        beginMutation();
+        try {
+            customerQueue.enqueue(c);
+            if (journal != null) journal.logEnqueue(c);
+        } finally {
+            endMutation();
+        }
+    }
+
+    /**
+     * Moves up to {@code max} customers waiting in an intake queue to the
+     * back of the customer queue as one batch, journaling each.
+     *
+     * @return the number admitted.
+     */
+    public int admit(BoundedCustomerQueue intake, int max) {
+        List<Customer> batch = new ArrayList<>(Math.min(max, intake.capacity()));
+        if (intake.drainTo(batch, max) == 0) return 0;
+        beginMutation();
+        try {
+            customerQueue.enqueueAll(batch);
+            if (journal != null) {
+                for (Customer c : batch) {
+                    journal.logEnqueue(c);
+                }
+            }
+        } finally {
+            endMutation();
+        }
+        return batch.size();
+    }
+
+    /**
+     * Starts journaling every change to the queue, parcels and processed list.
+     * Call after loading or recovering the initial state. If the journal
+     * later fails, the change being made throws and so does every change
+     * after it (see {@link DepotJournal}).
+     */
+    public void enableJournal(DepotJournal journal) throws IOException {
+        journal.attach(this);
+        this.journal = journal;
+    }
+
+    public DepotJournal getJournal() {
+        return journal;
+    }
+
+    private void beginMutation() {
+        if (journal != null) journal.begin();
+    }
+
+    private void endMutation() {
+        if (journal != null) journal.end();
+    }
+
+    /**
+     * Re-adds a processed-list record during journal recovery.
+     *
+     * @param timeMillis when it was first added, or 0 if the journal did not record it.
+     */
+    void restoreProcessedRecord(String record, long timeMillis) {
+        processedHistory.addRecord(record, timeMillis);
+    }
+
+    /**
+     * Queues a timestamped report entry for report.txt.
+     * The entry is written by the background report writer in the next group commit.
+     * If the writer has failed the entry is dropped and the error logged, as a
+     * failed write always was; {@link #flushReport()} still reports it.
+     */
+    private void writeReport(String entry) {
+        long start = System.nanoTime();
+        try {
+            String reportEntry = reportWriter.append(entry);
+            log.log(Log.Level.DEBUG, "Report Entry Added: {}", reportEntry);
+        } catch (IllegalStateException e) {
+            log.log(Log.Level.ERROR, "Error writing to report: {}", e.getMessage());
+        }
+        DepotMetrics.getInstance().recordSince(DepotMetrics.Op.WRITE_REPORT, start);
     }
 
     /**
@@ -193,9 +592,7 @@ public class Manager {
     public String getCustomerListAsString() {
         if (customerQueue.isEmpty()) return "[No customers in queue]";
         StringBuilder sb = new StringBuilder();
-        for (Customer c : customerQueue.getAllCustomers()) {
-            sb.append(c).append("\n");
-        }
+        customerQueue.forEach(c -> sb.append(c).append("\n"));
         return sb.toString();
     }
 
@@ -223,14 +620,23 @@ public class Manager {
     }
 
     /**
-     * Returns a formatted string of all processed parcels for display in the GUI.
+     * Returns a formatted string of all processed parcels. Reads the whole
+     * history, including spilled blocks; displays should page through it
+     * with {@link #getProcessedPageAsString(int, int)} instead.
      */
     public String getProcessedListAsString() {
-        if (processedParcels.isEmpty()) return "[No parcels processed yet]";
+        return getProcessedPageAsString(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns up to {@code count} processed-parcel records from index
+     * {@code from}, one per line, formatting only those.
+     */
+    public String getProcessedPageAsString(int from, int count) {
+        if (processedHistory.isEmpty()) return "[No parcels processed yet]";
         StringBuilder sb = new StringBuilder();
-        for (String record : processedParcels) {
-            sb.append(record).append("\n");
-        }
+        int to = (int) Math.min(processedHistory.size(), (long) from + count);
+        processedHistory.forEach(from, to, e -> sb.append(e.format()).append("\n"));
         return sb.toString();
     }
 
@@ -242,10 +648,9 @@ public class Manager {
         manager.loadCustomers("main/resources/customers.csv");
         manager.loadParcels("main/resources/parcels.csv");
 
-        while (!manager.getCustomerQueue().isEmpty()) {
-            manager.processNextCustomer();
-        }
+        System.out.println(manager.drainAll());
 
+        manager.close();
         Log.getInstance().writeToFile("main/resources/eventsLog.txt");
         System.out.println("All customers processed. Log written to eventsLog.txt.");
     }
@@ -0,0 +1,58 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs several workers in parallel over a manager's shared customer queue
+ * and parcel map, like counter staff serving one depot queue.
+ */
+public class ProcessingEngine {
+    private final Manager manager;
+    private final Worker[] workers;
+
+    public ProcessingEngine(Manager manager, int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("workerCount must be at least 1: " + workerCount);
+        }
+        this.manager = manager;
+        this.workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker();
+        }
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    /**
+     * Processes customers until the queue is empty, using one thread per worker.
+     * Blocks until every worker has finished.
+     *
+     * @return the number of customers dequeued (including failed lookups).
+     */
+    public int processAll() {
+        AtomicInteger processed = new AtomicInteger();
+        Thread[] threads = new Thread[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            Worker w = workers[i];
+            threads[i] = new Thread(() -> {
+                int count = 0;
+                while (manager.processNextCustomer(w)) {
+                    count++;
+                }
+                processed.addAndGet(count);
+            }, "depot-worker-" + (i + 1));
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return processed.get();
+    }
+}
@@ -0,0 +1,606 @@
+package model;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Aggregates over the report file written by {@link ReportWriter}: line
+ * counts and fee totals by action, by day, by hour of day and by parcel ID
+ * prefix, for questions like revenue per day, collected vs processed and
+ * failure rate.
+ * <p>
+ * {@link #scan(String)} maps the file in newline-aligned chunks (as
+ * {@link CsvIngestor} does) and parses them in parallel straight from the
+ * mapped bytes. A line allocates nothing unless it starts a day or prefix
+ * not seen before. Fees are summed in whole cents, so totals are exact.
+ * A {@link Tail} carries on from the end of a scan and reads only the lines
+ * appended since, so its totals stay current without rescanning the history.
+ * <p>
+ * Recognised lines; anything else is counted as unrecognised:
+ * <pre>
+ *   [yyyy-MM-dd HH:mm:ss] Processed Parcel ID X1 for Name | Fee: $12.34 ...
+ *   [yyyy-MM-dd HH:mm:ss] Collected Parcel ID X1 by Name | Fee: $12.34 ...
+ *   [yyyy-MM-dd HH:mm:ss] Failed to process Parcel ID X1 for Name - ...
+ *   [yyyy-MM-dd HH:mm:ss] Failed to collect Parcel ID X1 by Name - ...
+ * </pre>
+ * Only complete (newline-terminated) lines are counted, since the last line
+ * may still be being written.
+ */
+public final class ReportAnalytics {
+
+    /** What a report line records. */
+    public enum Action {
+        PROCESSED("Processed Parcel ID ", "Processed"),
+        COLLECTED("Collected Parcel ID ", "Collected"),
+        FAILED_PROCESS("Failed to process Parcel ID ", "Failed process"),
+        FAILED_COLLECT("Failed to collect Parcel ID ", "Failed collect");
+
+        private final byte[] marker;
+        private final String label;
+
+        Action(String marker, String label) {
+            this.marker = marker.getBytes(StandardCharsets.US_ASCII);
+            this.label = label;
+        }
+
+        public boolean isFailure() {
+            return this == FAILED_PROCESS || this == FAILED_COLLECT;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Action[] ACTIONS = Action.values();
+    private static final byte[] FEE_MARKER = "| Fee: $".getBytes(StandardCharsets.US_ASCII);
+    private static final int TIMESTAMP_BYTES = 21; // "[yyyy-MM-dd HH:mm:ss]"
+    private static final int MAX_PREFIX_LETTERS = 8;
+
+    private ReportAnalytics() {
+    }
+
+    /**
+     * Line counts and fee totals, per action, for one day, hour, prefix or
+     * the whole file.
+     */
+    public static final class Bucket {
+        private final long[] counts = new long[ACTIONS.length];
+        private final long[] cents = new long[ACTIONS.length];
+
+        public long count(Action action) {
+            return counts[action.ordinal()];
+        }
+
+        /** All recognised lines. */
+        public long count() {
+            long n = 0;
+            for (long c : counts) n += c;
+            return n;
+        }
+
+        public double revenue(Action action) {
+            return cents[action.ordinal()] / 100.0;
+        }
+
+        /** Fees of processed and collected parcels together. */
+        public double revenue() {
+            long total = 0;
+            for (long c : cents) total += c;
+            return total / 100.0;
+        }
+
+        /** Failed lines as a fraction of all recognised lines (0 if there are none). */
+        public double failureRate() {
+            long all = count();
+            if (all == 0) return 0;
+            return (count(Action.FAILED_PROCESS) + count(Action.FAILED_COLLECT)) / (double) all;
+        }
+
+        private void add(int action, long feeCents) {
+            counts[action]++;
+            cents[action] += feeCents;
+        }
+
+        private void add(Bucket other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+                cents[i] += other.cents[i];
+            }
+        }
+    }
+
+    /**
+     * Aggregates over a stretch of the report file. Not thread-safe; each
+     * scan worker fills its own and they are merged afterwards.
+     */
+    public static final class Summary {
+        private final Bucket total = new Bucket();
+        private final Bucket[] hours = new Bucket[24];
+        private final Map<Integer, Bucket> days = new HashMap<>(); // by yyyymmdd
+        private long[] prefixKeys = new long[4];
+        private Bucket[] prefixBuckets = new Bucket[4];
+        private int prefixCount;
+        private long unrecognised;
+        private long endOffset;
+
+        // Lines come in time order, so consecutive lines nearly always share a day.
+        private int lastDate = -1;
+        private Bucket lastDay;
+
+        Summary() {
+            for (int h = 0; h < hours.length; h++) {
+                hours[h] = new Bucket();
+            }
+        }
+
+        /** Totals over the whole file. */
+        public Bucket total() {
+            return total;
+        }
+
+        public Bucket hour(int hourOfDay) {
+            return hours[hourOfDay];
+        }
+
+        /** Per-day totals, oldest first. */
+        public SortedMap<LocalDate, Bucket> byDay() {
+            SortedMap<LocalDate, Bucket> result = new TreeMap<>();
+            for (Map.Entry<Integer, Bucket> e : days.entrySet()) {
+                int d = e.getKey();
+                result.put(LocalDate.of(d / 10000, d / 100 % 100, d % 100), e.getValue());
+            }
+            return result;
+        }
+
+        /**
+         * Totals by parcel ID prefix (its leading letters, upper case, e.g.
+         * "X" or "C"), in alphabetical order. IDs without letters are under "".
+         */
+        public SortedMap<String, Bucket> byPrefix() {
+            SortedMap<String, Bucket> result = new TreeMap<>();
+            for (int i = 0; i < prefixCount; i++) {
+                result.put(prefixOf(prefixKeys[i]), prefixBuckets[i]);
+            }
+            return result;
+        }
+
+        public long getUnrecognisedLines() {
+            return unrecognised;
+        }
+
+        /** All complete lines read, recognised or not. */
+        public long getLines() {
+            return total.count() + unrecognised;
+        }
+
+        /** File offset just after the last complete line read. */
+        public long getEndOffset() {
+            return endOffset;
+        }
+
+        private void add(int action, long feeCents, int date, int hour, long prefix) {
+            Bucket day = lastDay;
+            if (date != lastDate) {
+                day = days.computeIfAbsent(date, d -> new Bucket());
+                lastDate = date;
+                lastDay = day;
+            }
+            day.add(action, feeCents);
+            total.add(action, feeCents);
+            hours[hour].add(action, feeCents);
+            prefixBucket(prefix).add(action, feeCents);
+        }
+
+        private boolean knowsDate(int date) {
+            return date == lastDate || days.containsKey(date);
+        }
+
+        private Bucket prefixBucket(long key) {
+            for (int i = 0; i < prefixCount; i++) {
+                if (prefixKeys[i] == key) return prefixBuckets[i];
+            }
+            if (prefixCount == prefixKeys.length) {
+                prefixKeys = Arrays.copyOf(prefixKeys, prefixCount * 2);
+                prefixBuckets = Arrays.copyOf(prefixBuckets, prefixCount * 2);
+            }
+            prefixKeys[prefixCount] = key;
+            return prefixBuckets[prefixCount++] = new Bucket();
+        }
+
+        /** Adds another summary's counts; the end offset becomes the later of the two. */
+        private void merge(Summary other) {
+            total.add(other.total);
+            for (int h = 0; h < hours.length; h++) {
+                hours[h].add(other.hours[h]);
+            }
+            for (Map.Entry<Integer, Bucket> e : other.days.entrySet()) {
+                days.computeIfAbsent(e.getKey(), d -> new Bucket()).add(e.getValue());
+            }
+            for (int i = 0; i < other.prefixCount; i++) {
+                prefixBucket(other.prefixKeys[i]).add(other.prefixBuckets[i]);
+            }
+            unrecognised += other.unrecognised;
+            endOffset = Math.max(endOffset, other.endOffset);
+            lastDate = -1;
+            lastDay = null;
+        }
+
+        private Summary copy() {
+            Summary s = new Summary();
+            s.merge(this);
+            return s;
+        }
+
+        /**
+         * The aggregates as a plain-text report.
+         */
+        public String format() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.ROOT, "%d lines (%d unrecognised), revenue $%.2f, failure rate %.2f%%%n",
+                    getLines(), unrecognised, total.revenue(), total.failureRate() * 100));
+            sb.append(String.format(Locale.ROOT, "%nBy action:%n"));
+            for (Action a : ACTIONS) {
+                sb.append(String.format(Locale.ROOT, "  %-16s %10d  $%14.2f%n",
+                        a.getLabel(), total.count(a), total.revenue(a)));
+            }
+            sb.append(String.format(Locale.ROOT, "%nBy day:%n"));
+            for (Map.Entry<LocalDate, Bucket> e : byDay().entrySet()) {
+                row(sb, e.getKey().toString(), e.getValue());
+            }
+            sb.append(String.format(Locale.ROOT, "%nBy hour:%n"));
+            for (int h = 0; h < hours.length; h++) {
+                if (hours[h].count() > 0) row(sb, String.format(Locale.ROOT, "%02d:00", h), hours[h]);
+            }
+            sb.append(String.format(Locale.ROOT, "%nBy parcel prefix:%n"));
+            for (Map.Entry<String, Bucket> e : byPrefix().entrySet()) {
+                row(sb, e.getKey().isEmpty() ? "(none)" : e.getKey(), e.getValue());
+            }
+            return sb.toString();
+        }
+
+        private static void row(StringBuilder sb, String label, Bucket b) {
+            sb.append(String.format(Locale.ROOT,
+                    "  %-12s processed %8d  collected %8d  failed %6d  revenue $%14.2f%n",
+                    label, b.count(Action.PROCESSED), b.count(Action.COLLECTED),
+                    b.count(Action.FAILED_PROCESS) + b.count(Action.FAILED_COLLECT), b.revenue()));
+        }
+    }
+
+    // --- scanning ---
+
+    /**
+     * Scans the whole report file in parallel.
+     */
+    public static Summary scan(String path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r");
+             FileChannel channel = file.getChannel()) {
+            return scan(channel, 0, channel.size());
+        }
+    }
+
+    /**
+     * Scans bytes [from, to) of the file in parallel; {@code from} must be
+     * the start of a line.
+     */
+    static Summary scan(FileChannel channel, long from, long to) throws IOException {
+        List<long[]> chunks = CsvIngestor.split(channel, from, to);
+        List<Summary> parts;
+        try {
+            parts = IntStream.range(0, chunks.size()).parallel()
+                    .mapToObj(i -> scanChunk(channel, chunks.get(i)))
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Summary result = new Summary();
+        result.endOffset = from;
+        for (Summary part : parts) {
+            result.merge(part);
+        }
+        return result;
+    }
+
+    private static Summary scanChunk(FileChannel channel, long[] chunk) {
+        MappedByteBuffer buf;
+        try {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Summary summary = new Summary();
+        summary.endOffset = chunk[0] + parseLines(buf, 0, buf.limit(), summary);
+        return summary;
+    }
+
+    /**
+     * Parses the complete lines in buf[from, limit).
+     *
+     * @return the offset just after the last newline, or {@code from} if there is none.
+     */
+    private static int parseLines(ByteBuffer buf, int from, int limit, Summary into) {
+        int pos = from;
+        for (int i = from; i < limit; i++) {
+            if (buf.get(i) == '\n') {
+                parseLine(buf, pos, i, into);
+                pos = i + 1;
+            }
+        }
+        return pos;
+    }
+
+    private static void parseLine(ByteBuffer buf, int s, int e, Summary into) {
+        if (e > s && buf.get(e - 1) == '\r') e--;
+        if (e - s <= TIMESTAMP_BYTES + 1 || buf.get(s) != '[' || buf.get(s + 20) != ']' || buf.get(s + 21) != ' ') {
+            into.unrecognised++;
+            return;
+        }
+        int year = digits(buf, s + 1, 4);
+        int month = digits(buf, s + 6, 2);
+        int day = digits(buf, s + 9, 2);
+        int hour = digits(buf, s + 12, 2);
+        int date = year * 10000 + month * 100 + day;
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || hour > 23 || !validDate(into, date)) {
+            into.unrecognised++;
+            return;
+        }
+        int p = s + TIMESTAMP_BYTES + 1;
+        int action = -1;
+        for (int a = 0; a < ACTIONS.length; a++) {
+            if (matches(buf, p, e, ACTIONS[a].marker)) {
+                action = a;
+                break;
+            }
+        }
+        if (action < 0) {
+            into.unrecognised++;
+            return;
+        }
+        int idStart = p + ACTIONS[action].marker.length;
+        int idEnd = idStart;
+        while (idEnd < e && buf.get(idEnd) != ' ') idEnd++;
+        long cents = 0;
+        if (!ACTIONS[action].isFailure()) {
+            int fee = find(buf, idEnd, e, FEE_MARKER);
+            cents = fee < 0 ? -1 : parseCents(buf, fee + FEE_MARKER.length, e);
+        }
+        if (idEnd == idStart || cents < 0) {
+            into.unrecognised++;
+            return;
+        }
+        into.add(action, cents, date, hour, prefixKey(buf, idStart, idEnd));
+    }
+
+    private static boolean validDate(Summary summary, int date) {
+        if (summary.knowsDate(date)) return true;
+        try {
+            LocalDate.of(date / 10000, date / 100 % 100, date % 100);
+            return true;
+        } catch (DateTimeException e) {
+            return false;
+        }
+    }
+
+    /** @return the decimal value of n digits, or -1 if any is not a digit. */
+    private static int digits(ByteBuffer buf, int at, int n) {
+        int value = 0;
+        for (int i = at; i < at + n; i++) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private static boolean matches(ByteBuffer buf, int at, int limit, byte[] marker) {
+        if (limit - at < marker.length) return false;
+        for (int i = 0; i < marker.length; i++) {
+            if (buf.get(at + i) != marker[i]) return false;
+        }
+        return true;
+    }
+
+    private static int find(ByteBuffer buf, int from, int limit, byte[] marker) {
+        for (int i = from; i <= limit - marker.length; i++) {
+            if (buf.get(i) == marker[0] && matches(buf, i, limit, marker)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses an amount like "1234.5" or "1234,56" (fees are formatted in
+     * the default locale) into cents.
+     *
+     * @return the cents, or -1 if there is no amount.
+     */
+    private static long parseCents(ByteBuffer buf, int at, int limit) {
+        long units = 0;
+        int i = at;
+        while (i < limit && isDigit(buf.get(i))) {
+            units = units * 10 + (buf.get(i++) - '0');
+        }
+        if (i == at) return -1;
+        long cents = units * 100;
+        if (i < limit && (buf.get(i) == '.' || buf.get(i) == ',')) {
+            i++;
+            for (int scale = 10; scale >= 1 && i < limit && isDigit(buf.get(i)); scale /= 10) {
+                cents += (buf.get(i++) - '0') * scale;
+            }
+        }
+        return cents;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /** The leading letters of an ID, upper case, packed one byte each. */
+    private static long prefixKey(ByteBuffer buf, int from, int to) {
+        long key = 0;
+        for (int i = from; i < to && i < from + MAX_PREFIX_LETTERS; i++) {
+            int c = buf.get(i);
+            if (c >= 'a' && c <= 'z') c -= 'a' - 'A';
+            if (c < 'A' || c > 'Z') break;
+            key = key << 8 | c;
+        }
+        return key;
+    }
+
+    private static String prefixOf(long key) {
+        StringBuilder sb = new StringBuilder();
+        for (; key != 0; key >>>= 8) {
+            sb.append((char) (key & 0xFF));
+        }
+        return sb.reverse().toString();
+    }
+
+    // --- tail mode ---
+
+    /**
+     * Running totals over a report file that is still being appended to.
+     * Each {@link #poll()} reads only the complete lines added since the
+     * previous one. If the file gets shorter (replaced or truncated) it is
+     * scanned again from the start.
+     */
+    public static final class Tail implements AutoCloseable {
+        private final String path;
+        private Summary summary;
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private ScheduledExecutorService follower;
+
+        private Tail(String path, Summary summary) {
+            this.path = path;
+            this.summary = summary;
+        }
+
+        /**
+         * Scans the file as it is now, in parallel, and carries on from its end.
+         */
+        public static Tail open(String path) throws IOException {
+            return new Tail(path, scan(path));
+        }
+
+        /**
+         * Reads the lines appended since the last poll.
+         *
+         * @return the number of complete lines read.
+         */
+        public synchronized long poll() throws IOException {
+            long before = summary.getLines();
+            try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+                long size = channel.size();
+                long offset = summary.endOffset;
+                if (size < offset) {
+                    Log.getInstance().log(Log.Level.INFO, "Report {} got shorter; rescanning", path);
+                    summary = scan(channel, 0, size);
+                    return summary.getLines();
+                }
+                while (offset < size) {
+                    buffer.clear();
+                    int n = channel.read(buffer, offset);
+                    if (n <= 0) break;
+                    int consumed = parseLines(buffer, 0, n, summary);
+                    if (consumed == 0) {
+                        if (n < buffer.capacity()) break; // the last line is not finished yet
+                        buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                        continue;
+                    }
+                    offset += consumed;
+                }
+                summary.endOffset = offset;
+            }
+            return summary.getLines() - before;
+        }
+
+        /** A copy of the totals so far. */
+        public synchronized Summary snapshot() {
+            return summary.copy();
+        }
+
+        /**
+         * Polls every {@code periodMillis} on a daemon thread and hands a
+         * snapshot to {@code onChange} whenever new lines were read.
+         * Replaces any earlier follow.
+         */
+        public synchronized void follow(long periodMillis, Consumer<Summary> onChange) {
+            stopFollowing();
+            follower = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "report-tail");
+                t.setDaemon(true);
+                return t;
+            });
+            follower.scheduleWithFixedDelay(() -> {
+                try {
+                    if (poll() > 0) onChange.accept(snapshot());
+                } catch (IOException e) {
+                    Log.getInstance().log(Log.Level.WARN, "Could not read report {}: {}", path, e.getMessage());
+                }
+            }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+
+        public synchronized void stopFollowing() {
+            if (follower != null) {
+                follower.shutdownNow();
+                follower = null;
+            }
+        }
+
+        @Override
+        public void close() {
+            stopFollowing();
+        }
+    }
+
+    /**
+     * Prints the aggregates: {@code ReportAnalytics [report.txt] [--tail[=seconds]]}.
+     * With {@code --tail} it keeps running and prints updated totals as lines arrive.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String path = "main/resources/report.txt";
+        long tailSeconds = 0;
+        for (String arg : args) {
+            if (arg.equals("--tail")) {
+                tailSeconds = 2;
+            } else if (arg.startsWith("--tail=")) {
+                tailSeconds = Long.parseLong(arg.substring("--tail=".length()));
+            } else {
+                path = arg;
+            }
+        }
+        long start = System.nanoTime();
+        Tail tail = Tail.open(path);
+        Summary summary = tail.snapshot();
+        System.out.println("Report " + path + ", scanned in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        System.out.print(summary.format());
+        if (tailSeconds <= 0) return;
+        System.out.println();
+        System.out.println("Following " + path + " (Ctrl+C to stop)...");
+        tail.follow(tailSeconds * 1000, s -> System.out.printf(Locale.ROOT,
+                "%d lines, revenue $%.2f, processed %d, collected %d, failure rate %.2f%%%n",
+                s.getLines(), s.total().revenue(), s.total().count(Action.PROCESSED),
+                s.total().count(Action.COLLECTED), s.total().failureRate() * 100));
+        Thread.currentThread().join();
+    }
+}
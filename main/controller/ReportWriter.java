@@ -0,0 +1,247 @@
+package model;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends timestamped entries to the report file from a background thread.
+ * Entries are written in group commits: a batch is flushed once it reaches
+ * {@code batchSize} entries or {@code maxDelayMillis} after its first entry,
+ * whichever comes first, and optionally forced to disk (fsync).
+ * <p>
+ * Lines keep the existing report format: "[yyyy-MM-dd HH:mm:ss] entry".
+ * <p>
+ * If the file cannot be opened or a batch cannot be written, the writer
+ * stops: entries not yet on disk are dropped, later appends are rejected,
+ * and {@link #flush()} reports the failure instead of returning.
+ */
+public class ReportWriter implements AutoCloseable {
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 50;
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // Compared by identity: wakes the writer so it commits the current batch early.
+    private static final String FLUSH_MARKER = new String("flush");
+
+    private final String filePath;
+    private final int batchSize;
+    private final long maxDelayMillis;
+    private final boolean fsync;
+
+    private final BlockingQueue<String> pending = new LinkedBlockingQueue<>();
+    private final Object progressLock = new Object();
+    private final Thread writerThread;
+    private final Thread shutdownHook;
+
+    private long submitted;          // guarded by progressLock
+    private long committed;          // guarded by progressLock
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    public ReportWriter(String filePath) {
+        this(filePath, DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS, false);
+    }
+
+    /**
+     * @param filePath       report file, opened in append mode.
+     * @param batchSize      maximum number of entries per group commit.
+     * @param maxDelayMillis maximum time an entry waits before its batch is written.
+     * @param fsync          whether each group commit is forced to disk.
+     */
+    public ReportWriter(String filePath, int batchSize, long maxDelayMillis, boolean fsync) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1: " + batchSize);
+        }
+        this.filePath = filePath;
+        this.batchSize = batchSize;
+        this.maxDelayMillis = Math.max(0, maxDelayMillis);
+        this.fsync = fsync;
+
+        writerThread = new Thread(this::runWriter, "report-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        shutdownHook = new Thread(this::close, "report-writer-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Timestamps the entry and queues it for the next group commit.
+     *
+     * @return the formatted report line.
+     * @throws IllegalStateException if the writer is closed or has failed.
+     */
+    public String append(String entry) {
+        String line = "[" + LocalDateTime.now().format(TIMESTAMP_FORMAT) + "] " + entry;
+        synchronized (progressLock) {
+            checkOpen();
+            submitted++;
+            pending.add(line);
+        }
+        return line;
+    }
+
+    /**
+     * Queues several entries, in order, with one timestamp and one handoff.
+     *
+     * @throws IllegalStateException if the writer is closed or has failed.
+     */
+    public void appendAll(List<String> entries) {
+        String stamp = "[" + LocalDateTime.now().format(TIMESTAMP_FORMAT) + "] ";
+        List<String> lines = new ArrayList<>(entries.size());
+        for (String entry : entries) {
+            lines.add(stamp + entry);
+        }
+        synchronized (progressLock) {
+            checkOpen();
+            submitted += lines.size();
+            pending.addAll(lines);
+        }
+    }
+
+    private void checkOpen() {
+        if (failure != null) {
+            throw new IllegalStateException("Report writer failed: " + filePath, failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Report writer is closed: " + filePath);
+        }
+    }
+
+    /**
+     * Blocks until every entry appended before this call has been written
+     * (and forced to disk if fsync is enabled).
+     *
+     * @throws UncheckedIOException if the writer failed before writing them.
+     */
+    public void flush() {
+        synchronized (progressLock) {
+            long target = submitted;
+            if (committed >= target) return;
+            pending.add(FLUSH_MARKER);
+            while (committed < target && writerThread.isAlive()) {
+                try {
+                    progressLock.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (committed < target) {
+                IOException cause = failure != null ? failure
+                        : new IOException("report writer thread stopped");
+                throw new UncheckedIOException((target - committed) + " report entries not written to "
+                        + filePath, cause);
+            }
+        }
+    }
+
+    /**
+     * Flushes outstanding entries and stops the background thread.
+     */
+    @Override
+    public void close() {
+        synchronized (progressLock) {
+            if (closed) return;
+            closed = true;
+        }
+        try {
+            flush();
+        } catch (UncheckedIOException e) {
+            // already logged by the writer thread
+        }
+        pending.add(FLUSH_MARKER);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // JVM is already shutting down
+            }
+        }
+    }
+
+    private void runWriter() {
+        List<String> batch = new ArrayList<>(batchSize);
+        try (FileOutputStream out = new FileOutputStream(filePath, true);
+             BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(out))) {
+            while (!(closed && pending.isEmpty())) {
+                collectBatch(batch);
+                if (batch.isEmpty()) continue;
+                long start = System.nanoTime();
+                int entries = 0;
+                for (String line : batch) {
+                    if (line == FLUSH_MARKER) continue;
+                    bw.write(line);
+                    bw.newLine();
+                    entries++;
+                }
+                bw.flush();
+                if (fsync) {
+                    out.getChannel().force(false);
+                }
+                DepotMetrics.getInstance().recordSince(DepotMetrics.Op.REPORT_COMMIT, start);
+                markCommitted(entries);
+                batch.clear();
+            }
+        } catch (IOException e) {
+            Log.getInstance().log(Log.Level.ERROR, "Error writing to {}, report writer stopped: {}",
+                    filePath, e.getMessage());
+            synchronized (progressLock) {
+                failure = e;
+                pending.clear();
+            }
+        } finally {
+            synchronized (progressLock) {
+                progressLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits for the first entry, then gathers more until the batch is full,
+     * the delay expires, or a flush/close marker arrives.
+     */
+    private void collectBatch(List<String> batch) {
+        try {
+            String next = pending.poll(100, TimeUnit.MILLISECONDS);
+            if (next == null) return;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+            while (true) {
+                batch.add(next);
+                if (next == FLUSH_MARKER || batch.size() >= batchSize) return;
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return;
+                next = pending.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void markCommitted(int count) {
+        synchronized (progressLock) {
+            committed += count;
+            progressLock.notifyAll();
+        }
+    }
+}
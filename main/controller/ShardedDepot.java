@@ -0,0 +1,458 @@
+package model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Splits one depot across several in-process {@link Manager} shards, each
+ * with its own parcel map, customer queue, worker, report file and log, so
+ * that work on different shards never contends.
+ * <p>
+ * Parcel IDs hash to one of {@value #SLOTS} slots and each slot belongs to
+ * one shard. A customer lives on the shard of the parcel they want, so a
+ * customer and their parcel are always served by the same Manager, and
+ * {@link #collectParcel} and {@link #addCustomer} go straight to it.
+ * {@link #processNextCustomer()} takes the shards in turn; within a shard
+ * the shard's scheduler decides, but there is no order across shards.
+ * <p>
+ * {@link #addShard()} rebalances online: slots move to the new shard one at
+ * a time, and only operations on the shard giving up a slot wait, and only
+ * while that slot's parcels and customers are moved.
+ */
+public class ShardedDepot implements AutoCloseable {
+    public static final int SLOTS = 1024;
+
+    /** One Manager and the lock that keeps its slots still while it is used. */
+    private static final class Shard {
+        final int index;
+        final Manager manager;
+        final Log log;
+        // Read: any operation on the shard. Write: moving a slot off it.
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        Shard(int index, Manager manager, Log log) {
+            this.index = index;
+            this.manager = manager;
+            this.log = log;
+        }
+    }
+
+    private final File dir;
+    private final List<Shard> shards = new CopyOnWriteArrayList<>();
+    private final AtomicIntegerArray owner = new AtomicIntegerArray(SLOTS);
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    // Slots being moved, and what was added to them after they were scanned.
+    // The flags and the list entries only change under the owning shard's
+    // write lock. The per-slot collections are filled by any number of
+    // additions at once, each holding just the read lock, so they are
+    // concurrent ones.
+    private final boolean[] migrating = new boolean[SLOTS];
+    private final List<Set<String>> addedParcels = new ArrayList<>(SLOTS);
+    private final List<Queue<Customer>> addedCustomers = new ArrayList<>(SLOTS);
+
+    /**
+     * Creates a depot of {@code shardCount} empty shards. Shard {@code i}
+     * reports to {@code dir/report-i.txt} and logs to {@code dir/eventsLog-i.txt}.
+     */
+    public ShardedDepot(int shardCount, File dir) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be at least 1: " + shardCount);
+        }
+        this.dir = dir;
+        for (int i = 0; i < SLOTS; i++) {
+            addedParcels.add(null);
+            addedCustomers.add(null);
+        }
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(newShard(i));
+        }
+        for (int slot = 0; slot < SLOTS; slot++) {
+            owner.set(slot, slot % shardCount);
+        }
+    }
+
+    private Shard newShard(int index) {
+        Log log = Log.newLog(new File(dir, "eventsLog-" + index + ".txt").getPath());
+        log.setConsoleLevel(Log.getInstance().getConsoleLevel());
+        Manager manager = new Manager(new ReportWriter(new File(dir, "report-" + index + ".txt").getPath()), log);
+        return new Shard(index, manager, log);
+    }
+
+    /** The slot a parcel ID (in any case) belongs to. */
+    public static int slotOf(String parcelID) {
+        int h = parcelID.toUpperCase().hashCode() * 0x9E3779B9;
+        return h >>> (32 - Integer.numberOfTrailingZeros(SLOTS));
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public Manager getShard(int index) {
+        return shards.get(index).manager;
+    }
+
+    /** The index of the shard that now holds the parcel ID. */
+    public int shardOf(String parcelID) {
+        return owner.get(slotOf(parcelID));
+    }
+
+    /**
+     * Runs the operation on the shard owning the slot, holding that shard's
+     * read lock; retries on the new owner if the slot moved meanwhile.
+     */
+    private <T> T onSlot(int slot, Function<Shard, T> operation) {
+        while (true) {
+            Shard s = shards.get(owner.get(slot));
+            s.lock.readLock().lock();
+            try {
+                if (owner.get(slot) == s.index) {
+                    return operation.apply(s);
+                }
+            } finally {
+                s.lock.readLock().unlock();
+            }
+        }
+    }
+
+    // --- routed operations ---
+
+    public void addParcel(Parcel p) {
+        int slot = slotOf(p.getParcelID());
+        onSlot(slot, s -> {
+            s.manager.addParcel(p);
+            if (migrating[slot]) {
+                addedParcels.get(slot).add(p.getParcelID().toUpperCase());
+            }
+            return null;
+        });
+    }
+
+    public void addCustomer(Customer c) {
+        int slot = slotOf(c.getDesiredParcelID());
+        onSlot(slot, s -> {
+            s.manager.addCustomer(c);
+            if (migrating[slot]) {
+                addedCustomers.get(slot).add(c);
+            }
+            return null;
+        });
+    }
+
+    public boolean collectParcel(String customerName, String parcelID) {
+        return onSlot(slotOf(parcelID), s -> s.manager.collectParcel(customerName, parcelID));
+    }
+
+    public Parcel getParcel(String parcelID) {
+        return onSlot(slotOf(parcelID), s -> s.manager.getParcelMap().getParcel(parcelID.toUpperCase()));
+    }
+
+    /**
+     * Serves the next customer of the next shard that has one, taking the
+     * shards in turn.
+     *
+     * @return false if every queue was empty.
+     */
+    public boolean processNextCustomer() {
+        int n = shards.size();
+        int start = Math.floorMod(nextShard.getAndIncrement(), n);
+        for (int i = 0; i < n; i++) {
+            if (processNextCustomer(shards.get((start + i) % n))) return true;
+        }
+        return false;
+    }
+
+    private static boolean processNextCustomer(Shard s) {
+        s.lock.readLock().lock();
+        try {
+            return s.manager.processNextCustomer(s.manager.getWorker());
+        } finally {
+            s.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Empties every queue using one thread per shard, so shards are served
+     * in parallel. Blocks until all are done.
+     *
+     * @return the number of customers dequeued (including failed lookups).
+     */
+    public int processAll() {
+        AtomicInteger processed = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (Shard s : shards) {
+            Thread t = new Thread(() -> {
+                int count = 0;
+                while (processNextCustomer(s)) {
+                    count++;
+                }
+                processed.addAndGet(count);
+            }, "depot-shard-" + s.index);
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return processed.get();
+    }
+
+    // --- bulk loading ---
+
+    /** Adds parcels in one batch per shard. Not journaled; meant for loading. */
+    public void putAll(Collection<Parcel> parcels) {
+        List<List<Parcel>> byShard = partition(parcels, Parcel::getParcelID);
+        for (int i = 0; i < byShard.size(); i++) {
+            List<Parcel> batch = byShard.get(i);
+            if (!batch.isEmpty()) locked(i, m -> m.getParcelMap().putAll(batch));
+        }
+    }
+
+    /** Enqueues customers in one batch per shard. Not journaled; meant for loading. */
+    public void enqueueAll(Collection<Customer> customers) {
+        List<List<Customer>> byShard = partition(customers, Customer::getDesiredParcelID);
+        for (int i = 0; i < byShard.size(); i++) {
+            List<Customer> batch = byShard.get(i);
+            if (!batch.isEmpty()) locked(i, m -> m.getCustomerQueue().enqueueAll(batch));
+        }
+    }
+
+    /** Loads parcels from a CSV file (see {@link Manager#loadParcels}) across the shards. */
+    public void loadParcels(String filename) {
+        ParcelMap loaded = new ParcelMap();
+        CsvIngestor.loadParcels(filename, loaded);
+        putAll(loaded.getAllParcels());
+    }
+
+    /** Loads customers from a CSV file (see {@link Manager#loadCustomers}) across the shards. */
+    public void loadCustomers(String filename) {
+        QueueOfCustomers loaded = new QueueOfCustomers();
+        CsvIngestor.loadCustomers(filename, loaded);
+        enqueueAll(loaded.getAllCustomers());
+    }
+
+    // Groups by current owner. A batch whose slot moves before it is added
+    // is still correct for the rebalance in progress: loading and
+    // rebalancing are not meant to overlap.
+    private <T> List<List<T>> partition(Collection<T> items, Function<T, String> parcelID) {
+        List<List<T>> byShard = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (T item : items) {
+            byShard.get(shardOf(parcelID.apply(item))).add(item);
+        }
+        return byShard;
+    }
+
+    private void locked(int index, Consumer<Manager> action) {
+        Shard s = shards.get(index);
+        s.lock.readLock().lock();
+        try {
+            action.accept(s.manager);
+        } finally {
+            s.lock.readLock().unlock();
+        }
+    }
+
+    // --- aggregated views ---
+
+    public int getParcelCount() {
+        int total = 0;
+        for (Shard s : shards) total += s.manager.getParcelMap().size();
+        return total;
+    }
+
+    public int getQueueSize() {
+        int total = 0;
+        for (Shard s : shards) total += s.manager.getCustomerQueue().size();
+        return total;
+    }
+
+    public int getProcessedCount() {
+        int total = 0;
+        for (Shard s : shards) total += s.manager.getProcessedHistory().size();
+        return total;
+    }
+
+    /** Parcel counts per shard, to see how even the split is. */
+    public int[] getShardSizes() {
+        int[] sizes = new int[shards.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = shards.get(i).manager.getParcelMap().size();
+        }
+        return sizes;
+    }
+
+    /** Slots owned per shard. */
+    public int[] getSlotCounts() {
+        int[] counts = new int[shards.size()];
+        for (int slot = 0; slot < SLOTS; slot++) {
+            counts[owner.get(slot)]++;
+        }
+        return counts;
+    }
+
+    /** What all parcels now in the depot would owe on the given epoch day. */
+    public double projectRevenue(int asOfDay) {
+        double total = 0;
+        for (Shard s : shards) total += Worker.projectRevenue(s.manager.getParcelMap(), asOfDay);
+        return total;
+    }
+
+    public String getCustomerListAsString() {
+        StringBuilder sb = new StringBuilder();
+        for (Shard s : shards) sb.append(s.manager.getCustomerListAsString());
+        return sb.toString();
+    }
+
+    public String getParcelListAsString() {
+        StringBuilder sb = new StringBuilder();
+        for (Shard s : shards) sb.append(s.manager.getParcelListAsString());
+        return sb.toString();
+    }
+
+    /** Every shard's processed history merged, oldest first. */
+    public String getProcessedListAsString() {
+        List<ProcessedHistory.Entry> all = new ArrayList<>();
+        for (Shard s : shards) {
+            ProcessedHistory history = s.manager.getProcessedHistory();
+            history.forEach(0, history.size(), all::add);
+        }
+        all.sort(Comparator.comparingLong(ProcessedHistory.Entry::getTimeMillis));
+        StringBuilder sb = new StringBuilder();
+        for (ProcessedHistory.Entry e : all) {
+            sb.append(e.format()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    // --- rebalancing ---
+
+    /**
+     * Adds an empty shard and moves an even share of slots to it, with their
+     * parcels and customers, while the depot stays in use.
+     *
+     * @return the index of the new shard.
+     */
+    public synchronized int addShard() {
+        int index = shards.size();
+        Shard target = newShard(index);
+        shards.add(target);
+
+        // Take slots from the shards that hold the most until the new one has its share.
+        List<List<Integer>> owned = new ArrayList<>();
+        for (int i = 0; i < index; i++) owned.add(new ArrayList<>());
+        for (int slot = 0; slot < SLOTS; slot++) owned.get(owner.get(slot)).add(slot);
+        List<Integer> moving = new ArrayList<>();
+        for (int k = 0; k < SLOTS / (index + 1); k++) {
+            List<Integer> largest = owned.get(0);
+            for (List<Integer> o : owned) if (o.size() > largest.size()) largest = o;
+            moving.add(largest.remove(largest.size() - 1));
+        }
+
+        for (int i = 0; i < index; i++) {
+            Shard source = shards.get(i);
+            List<Integer> slots = new ArrayList<>();
+            for (int slot : moving) if (owner.get(slot) == i) slots.add(slot);
+            if (!slots.isEmpty()) migrate(source, target, slots);
+        }
+        Log.getInstance().log(Log.Level.INFO, "Added depot shard {}: moved {} slots", index, moving.size());
+        return index;
+    }
+
+    private void migrate(Shard source, Shard target, List<Integer> slots) {
+        // Mark the slots, so additions from here on are recorded, then scan
+        // without blocking anyone: anything added before the mark is visible.
+        source.lock.writeLock().lock();
+        try {
+            for (int slot : slots) {
+                migrating[slot] = true;
+                addedParcels.set(slot, ConcurrentHashMap.newKeySet());
+                addedCustomers.set(slot, new ConcurrentLinkedQueue<>());
+            }
+        } finally {
+            source.lock.writeLock().unlock();
+        }
+        Set<Integer> moving = new HashSet<>(slots);
+        List<List<String>> parcelIDs = new ArrayList<>();
+        List<List<Customer>> customers = new ArrayList<>();
+        for (int i = 0; i < SLOTS; i++) {
+            parcelIDs.add(null);
+            customers.add(null);
+        }
+        for (int slot : slots) {
+            parcelIDs.set(slot, new ArrayList<>());
+            customers.set(slot, new ArrayList<>());
+        }
+        for (String id : source.manager.getParcelMap().getParcelIDs()) {
+            int slot = slotOf(id);
+            if (moving.contains(slot)) parcelIDs.get(slot).add(id);
+        }
+        source.manager.getCustomerQueue().forEach(c -> {
+            int slot = slotOf(c.getDesiredParcelID());
+            if (moving.contains(slot)) customers.get(slot).add(c);
+        });
+
+        // Move slot by slot; only the source's users wait, one slot at a time.
+        ParcelMap from = source.manager.getParcelMap();
+        QueueOfCustomers queue = source.manager.getCustomerQueue();
+        for (int slot : slots) {
+            source.lock.writeLock().lock();
+            try {
+                Set<String> ids = new HashSet<>(parcelIDs.get(slot));
+                ids.addAll(addedParcels.get(slot));
+                List<Parcel> parcels = new ArrayList<>();
+                for (String id : ids) {
+                    Parcel p = from.removeParcel(id);
+                    if (p != null) parcels.add(p); // else collected or processed meanwhile
+                }
+                List<Customer> waiting = new ArrayList<>(customers.get(slot));
+                waiting.addAll(addedCustomers.get(slot));
+                waiting.sort(Comparator.comparingInt(Customer::getSeqNumber));
+                List<Customer> moved = new ArrayList<>();
+                for (Customer c : waiting) {
+                    if (queue.remove(c)) moved.add(c); // else served meanwhile
+                }
+                // Parcels first, so a moved customer never finds theirs missing.
+                target.manager.getParcelMap().putAll(parcels);
+                target.manager.getCustomerQueue().enqueueAll(moved);
+                owner.set(slot, target.index);
+                migrating[slot] = false;
+                addedParcels.set(slot, null);
+                addedCustomers.set(slot, null);
+            } finally {
+                source.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /** Closes every shard, flushing its report and closing its log. */
+    @Override
+    public void close() {
+        for (Shard s : shards) {
+            s.manager.close();
+            s.log.close();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded, lock-free intake queue for customers arriving from several
+ * check-in points at once and taken by several workers.
+ * <p>
+ * A fixed array of slots, each with a sequence number telling producers and
+ * consumers whose turn the slot is (D. Vyukov's bounded MPMC queue): an
+ * enqueue or dequeue is one CAS on the shared position plus one write to the
+ * slot, with no allocation. Threads that must wait (queue full or empty) spin
+ * briefly, then back off with short parks.
+ * <p>
+ * It offers the {@link QueueOfCustomers} operations with blocking, timed and
+ * non-blocking variants, but no positions, listeners or lookups: drain it in
+ * batches into a {@link QueueOfCustomers} ({@link #drainTo(QueueOfCustomers, int)}
+ * or {@link Manager#admit}) where the views and workers read it.
+ */
+public class BoundedCustomerQueue {
+
+    /** What {@link #enqueue(Customer)} does when the queue is full. */
+    public enum WhenFull {
+        /** Wait for space. */
+        BLOCK,
+        /** Refuse the new customer. */
+        REJECT,
+        /** Discard the oldest queued customer to make room. */
+        DROP_OLDEST
+    }
+
+    private static final int SPINS = 64;
+    private static final int YIELDS = 16;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Customer[] slots;
+    private final AtomicLongArray turns;
+    private final int mask;
+    private final WhenFull whenFull;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param capacity rounded up to a power of two, and at least 2 (with a
+     *                 single slot a full and an empty slot look the same).
+     */
+    public BoundedCustomerQueue(int capacity, WhenFull whenFull) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Math.max(2, Integer.highestOneBit(capacity));
+        if (size < capacity) size <<= 1;
+        slots = new Customer[size];
+        turns = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            turns.set(i, i);
+        }
+        mask = size - 1;
+        this.whenFull = whenFull;
+    }
+
+    // --- enqueue ---
+
+    /**
+     * Adds the customer according to the queue's {@link WhenFull} policy.
+     *
+     * @return false if the customer was rejected, or if the thread was
+     *         interrupted while waiting (the interrupt flag is then set again).
+     */
+    public boolean enqueue(Customer c) {
+        switch (whenFull) {
+            case BLOCK:
+                try {
+                    enqueueBlocking(c);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            case DROP_OLDEST:
+                while (!tryEnqueue(c)) {
+                    if (dequeue() != null) dropped.increment();
+                }
+                return true;
+            default:
+                if (tryEnqueue(c)) return true;
+                rejected.increment();
+                return false;
+        }
+    }
+
+    /**
+     * @return false at once if the queue is full.
+     */
+    public boolean tryEnqueue(Customer c) {
+        if (c == null) throw new NullPointerException();
+        long pos = tail.get();
+        while (true) {
+            int slot = (int) pos & mask;
+            long turn = turns.get(slot);
+            if (turn == pos) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots[slot] = c;
+                    turns.set(slot, pos + 1); // publishes the slot to consumers
+                    return true;
+                }
+                pos = tail.get();
+            } else if (turn < pos) {
+                return false; // still holds the customer from one lap ago
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Waits up to the timeout for space.
+     *
+     * @return false if the queue stayed full.
+     */
+    public boolean tryEnqueue(Customer c, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int attempt = 0; !tryEnqueue(c); attempt++) {
+            if (!backOff(attempt, deadline)) return false;
+        }
+        return true;
+    }
+
+    /** Waits as long as it takes for space. */
+    public void enqueueBlocking(Customer c) throws InterruptedException {
+        for (int attempt = 0; !tryEnqueue(c); attempt++) {
+            backOff(attempt, Long.MAX_VALUE);
+        }
+    }
+
+    // --- dequeue ---
+
+    /**
+     * @return the next customer, or null at once if the queue is empty.
+     */
+    public Customer dequeue() {
+        long pos = head.get();
+        while (true) {
+            int slot = (int) pos & mask;
+            long turn = turns.get(slot);
+            if (turn == pos + 1) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    Customer c = slots[slot];
+                    slots[slot] = null;
+                    turns.set(slot, pos + mask + 1); // hands the slot to the producer one lap on
+                    return c;
+                }
+                pos = head.get();
+            } else if (turn < pos + 1) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * @return the next customer, or null if none arrived within the timeout.
+     */
+    public Customer dequeue(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int attempt = 0; ; attempt++) {
+            Customer c = dequeue();
+            if (c != null) return c;
+            if (!backOff(attempt, deadline)) return null;
+        }
+    }
+
+    /** Waits as long as it takes for a customer. */
+    public Customer dequeueBlocking() throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            Customer c = dequeue();
+            if (c != null) return c;
+            backOff(attempt, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Moves up to {@code max} customers, oldest first, without waiting.
+     *
+     * @return the number moved.
+     */
+    public int drainTo(Collection<? super Customer> target, int max) {
+        int moved = 0;
+        Customer c;
+        while (moved < max && (c = dequeue()) != null) {
+            target.add(c);
+            moved++;
+        }
+        return moved;
+    }
+
+    /**
+     * Moves up to {@code max} customers to the back of the queue in one
+     * {@link QueueOfCustomers#enqueueAll} (one lock, one row event).
+     *
+     * @return the number moved.
+     */
+    public int drainTo(QueueOfCustomers target, int max) {
+        List<Customer> batch = new ArrayList<>(Math.min(max, capacity()));
+        int moved = drainTo(batch, max);
+        target.enqueueAll(batch);
+        return moved;
+    }
+
+    // --- state ---
+
+    /** Approximate while other threads are enqueuing or dequeuing. */
+    public int size() {
+        while (true) {
+            long h = head.get();
+            long t = tail.get();
+            if (h == head.get()) {
+                return (int) Math.max(0, Math.min(t - h, slots.length));
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    public WhenFull getWhenFull() {
+        return whenFull;
+    }
+
+    /** Customers refused by {@link #enqueue(Customer)} under {@link WhenFull#REJECT}. */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /** Customers discarded by {@link #enqueue(Customer)} under {@link WhenFull#DROP_OLDEST}. */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Waits a little before the next attempt: spins, then yields, then parks
+     * for doubling intervals up to {@link #MAX_PARK_NANOS}.
+     *
+     * @return false if the deadline has passed.
+     */
+    private static boolean backOff(int attempt, long deadline) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        long left = deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+        if (left <= 0) return false;
+        if (attempt < SPINS) {
+            Thread.onSpinWait();
+        } else if (attempt < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            int shift = Math.min(attempt - SPINS - YIELDS, 20);
+            LockSupport.parkNanos(Math.min(Math.min(1000L << shift, MAX_PARK_NANOS), left));
+        }
+        return true;
+    }
+}
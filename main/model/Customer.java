@@ -1,17 +1,40 @@
 package model;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Represents a single customer requesting a parcel.
+ * <p>
+ * Sequence numbers come from the input and need not be unique; each
+ * customer also gets an ID that is, which the journal uses to name them.
  */
 public class Customer {
+    private static final AtomicLong lastId = new AtomicLong();
+
+    private final long id;
     private int seqNumber;
     private String name;
     private String desiredParcelID;
 
     public Customer(int seqNumber, String name, String desiredParcelID) {
+        this(lastId.incrementAndGet(), seqNumber, name, desiredParcelID);
+    }
+
+    /**
+     * Recreates a customer with the ID it had before (journal recovery).
+     * Later customers get higher IDs.
+     */
+    Customer(long id, int seqNumber, String name, String desiredParcelID) {
+        this.id = id;
         this.seqNumber = seqNumber;
         this.name = name;
         this.desiredParcelID = desiredParcelID.toUpperCase();
+        lastId.accumulateAndGet(id, Math::max);
+    }
+
+    /** Unique in this process, and across journal recovery. */
+    public long getId() {
+        return id;
     }
 
     public int getSeqNumber() {
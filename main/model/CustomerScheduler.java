@@ -0,0 +1,55 @@
+package model;
+
+/**
+ * Chooses which queued customer a worker serves next.
+ * <p>
+ * A scheduler is attached to one queue at a time ({@link Manager#setScheduler}
+ * swaps them while the depot runs). Whatever order it picks, the customer it
+ * returns has already been removed from the queue.
+ */
+public interface CustomerScheduler {
+
+    /**
+     * Starts scheduling the customers in this queue (including those already
+     * waiting), looking up their parcels in the map.
+     */
+    void attach(QueueOfCustomers queue, ParcelMap parcels);
+
+    /** Stops following the queue and drops any state kept about it. */
+    void detach();
+
+    /**
+     * Removes and returns the customer to serve next.
+     *
+     * @return null if the queue is empty.
+     */
+    Customer next();
+
+    /** Short name, as accepted by {@link #forName}. */
+    String getName();
+
+    /**
+     * Creates a scheduler with default settings from its name: "fifo",
+     * "shortest" (shortest expected service first), "days" (longest in
+     * depot first) or "fair" (weighted fair queuing by parcel size).
+     */
+    static CustomerScheduler forName(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "fifo":
+                return new FifoScheduler();
+            case "shortest":
+                return new ShortestServiceScheduler(ShortestServiceScheduler.DEFAULT_AGING);
+            case "days":
+                return new DaysInDepotScheduler(DaysInDepotScheduler.DEFAULT_AGING);
+            case "fair":
+                return new FairQueueScheduler(FairQueueScheduler.DEFAULT_WEIGHTS);
+            default:
+                throw new IllegalArgumentException("Unknown scheduler: " + name);
+        }
+    }
+
+    /** Names accepted by {@link #forName}, default first. */
+    static String[] names() {
+        return new String[]{"fifo", "shortest", "days", "fair"};
+    }
+}
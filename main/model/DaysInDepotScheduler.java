@@ -0,0 +1,30 @@
+package model;
+
+/**
+ * Serves customers whose parcels have been in the depot longest first, to
+ * clear parcels nearing the storage limit. A waiting customer gains
+ * {@code agingRate} days of priority for every customer who arrives after
+ * them, so customers with fresh parcels are still served eventually.
+ */
+public class DaysInDepotScheduler extends KeyedScheduler {
+    /** Days of priority gained per later arrival. */
+    public static final double DEFAULT_AGING = 0.25;
+
+    private final double agingRate;
+
+    public DaysInDepotScheduler(double agingRate) {
+        if (agingRate < 0) throw new IllegalArgumentException("agingRate must not be negative: " + agingRate);
+        this.agingRate = agingRate;
+    }
+
+    @Override
+    protected double key(Customer c, Parcel parcel, long arrival) {
+        int days = parcel == null ? 0 : parcel.getDaysInDepot();
+        return -days + agingRate * arrival;
+    }
+
+    @Override
+    public String getName() {
+        return "days";
+    }
+}
@@ -0,0 +1,58 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * Singleton depot calendar. Parcels record the day they arrived rather than
+ * a day count, and their days in depot is the distance from that day to
+ * the clock's current day. Moving the clock on a day therefore ages every
+ * parcel at once, in O(1), without touching them.
+ * <p>
+ * Days are epoch days (days since 1970-01-01, as in
+ * {@link LocalDate#toEpochDay()}). The clock starts at the system date and
+ * only moves when told to ({@link #advanceDay()}, {@link #setToday(int)});
+ * use {@link Manager#advanceDay()} so the change is journaled and views refresh.
+ */
+public class DepotClock {
+    private static final DepotClock instance = new DepotClock();
+
+    private volatile int today = (int) LocalDate.now().toEpochDay();
+
+    private DepotClock() {
+    }
+
+    public static DepotClock getInstance() {
+        return instance;
+    }
+
+    /** The current depot day, as an epoch day. */
+    public int today() {
+        return today;
+    }
+
+    public LocalDate todayDate() {
+        return LocalDate.ofEpochDay(today);
+    }
+
+    /**
+     * Moves the clock on one day.
+     *
+     * @return the new current day.
+     */
+    public synchronized int advanceDay() {
+        return today = today + 1;
+    }
+
+    /**
+     * Sets the current day, e.g. when recovering a journaled depot. Days in
+     * depot of every parcel shift by the difference.
+     */
+    public synchronized void setToday(int day) {
+        today = day;
+    }
+
+    /** The epoch day of a date, for use as an "as of" day. */
+    public static int dayOf(LocalDate date) {
+        return (int) date.toEpochDay();
+    }
+}
@@ -0,0 +1,298 @@
+package model;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Singleton depot instrumentation: latency histograms for the main
+ * operations, event counters, and gauges read from the open managers.
+ * <p>
+ * Recording costs two {@link System#nanoTime()} calls and a few uncontended
+ * atomic increments, so it is always on. The values can be read through
+ * JMX ({@link #registerMBean()}, under {@value #OBJECT_NAME}) and dumped
+ * periodically to a file and the event log ({@link #startSnapshots}).
+ */
+public class DepotMetrics implements DepotMetricsMXBean {
+    public static final String OBJECT_NAME = "model:type=DepotMetrics";
+
+    /** Timed operations. */
+    public enum Op {
+        LOAD_PARCELS("loadParcels"),
+        LOAD_CUSTOMERS("loadCustomers"),
+        PROCESS_NEXT_CUSTOMER("processNextCustomer"),
+        PROCESS_BATCH("processBatch"),
+        COLLECT_PARCEL("collectParcel"),
+        WRITE_REPORT("writeReport"),
+        REPORT_COMMIT("reportCommit"),
+        GUI_REFRESH("guiRefresh"),
+        GUI_COMMAND("guiCommand");
+
+        private final String label;
+
+        Op(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DepotMetrics instance = new DepotMetrics();
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Op.values().length];
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder collected = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+    private final LongAdder emptyQueue = new LongAdder();
+    private final LongAdder invalidRows = new LongAdder();
+    private final List<Manager> managers = new CopyOnWriteArrayList<>();
+    private volatile long firstFrameMillis = -1;
+    private volatile long fullyLoadedMillis = -1;
+
+    private ScheduledExecutorService snapshotTimer;
+
+    private DepotMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    public static DepotMetrics getInstance() {
+        return instance;
+    }
+
+    // --- recording ---
+
+    /**
+     * Records an operation that started at {@code startNanos} (a
+     * {@link System#nanoTime()} value) and has just finished.
+     */
+    public void recordSince(Op op, long startNanos) {
+        latencies[op.ordinal()].recordSince(startNanos);
+    }
+
+    public LatencyHistogram getLatency(Op op) {
+        return latencies[op.ordinal()];
+    }
+
+    public void parcelProcessed() {
+        processed.increment();
+    }
+
+    public void parcelsProcessed(int count) {
+        processed.add(count);
+    }
+
+    public void parcelCollected() {
+        collected.increment();
+    }
+
+    public void parcelNotFound() {
+        notFound.increment();
+    }
+
+    public void parcelsNotFound(int count) {
+        notFound.add(count);
+    }
+
+    /** Records when the GUI first showed, in milliseconds since JVM start. */
+    public void firstFrame(long millisSinceStart) {
+        firstFrameMillis = millisSinceStart;
+    }
+
+    /** Records when startup loading finished, in milliseconds since JVM start. */
+    public void fullyLoaded(long millisSinceStart) {
+        fullyLoadedMillis = millisSinceStart;
+    }
+
+    public void queueEmpty() {
+        emptyQueue.increment();
+    }
+
+    public void invalidRows(int count) {
+        invalidRows.add(count);
+    }
+
+    /** Includes the manager in the queue/parcel/history gauges until {@link #unregister}. */
+    void register(Manager manager) {
+        managers.add(manager);
+    }
+
+    void unregister(Manager manager) {
+        managers.remove(manager);
+    }
+
+    // --- MXBean ---
+
+    @Override
+    public long getProcessedCount() {
+        return processed.sum();
+    }
+
+    @Override
+    public long getCollectedCount() {
+        return collected.sum();
+    }
+
+    @Override
+    public long getNotFoundCount() {
+        return notFound.sum();
+    }
+
+    @Override
+    public long getEmptyQueueCount() {
+        return emptyQueue.sum();
+    }
+
+    @Override
+    public long getInvalidRowCount() {
+        return invalidRows.sum();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        int total = 0;
+        for (Manager m : managers) {
+            total += m.getCustomerQueue().size();
+        }
+        return total;
+    }
+
+    @Override
+    public int getParcelCount() {
+        int total = 0;
+        for (Manager m : managers) {
+            total += m.getParcelMap().size();
+        }
+        return total;
+    }
+
+    @Override
+    public int getProcessedHistorySize() {
+        int total = 0;
+        for (Manager m : managers) {
+            total += m.getProcessedHistory().size();
+        }
+        return total;
+    }
+
+    @Override
+    public long getTimeToFirstFrameMillis() {
+        return firstFrameMillis;
+    }
+
+    @Override
+    public long getTimeToFullyLoadedMillis() {
+        return fullyLoadedMillis;
+    }
+
+    @Override
+    public Map<String, Long> getLatencyNanos() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Op op : Op.values()) {
+            LatencyHistogram h = latencies[op.ordinal()];
+            String key = op.getLabel();
+            values.put(key + ".count", h.getCount());
+            values.put(key + ".mean", (long) h.getMean());
+            values.put(key + ".p50", h.getPercentile(0.5));
+            values.put(key + ".p99", h.getPercentile(0.99));
+            values.put(key + ".p999", h.getPercentile(0.999));
+            values.put(key + ".max", h.getMax());
+        }
+        return values;
+    }
+
+    @Override
+    public String snapshot() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("processed=").append(getProcessedCount())
+                .append(" collected=").append(getCollectedCount())
+                .append(" notFound=").append(getNotFoundCount())
+                .append(" emptyQueue=").append(getEmptyQueueCount())
+                .append(" invalidRows=").append(getInvalidRowCount())
+                .append(" queueDepth=").append(getQueueDepth())
+                .append(" parcels=").append(getParcelCount())
+                .append(" history=").append(getProcessedHistorySize());
+        if (firstFrameMillis >= 0) sb.append(" firstFrameMs=").append(firstFrameMillis);
+        if (fullyLoadedMillis >= 0) sb.append(" fullyLoadedMs=").append(fullyLoadedMillis);
+        for (Op op : Op.values()) {
+            LatencyHistogram h = latencies[op.ordinal()];
+            if (h.getCount() > 0) {
+                sb.append(" | ").append(op.getLabel()).append(' ').append(h);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void resetLatencies() {
+        for (LatencyHistogram h : latencies) {
+            h.drain();
+        }
+    }
+
+    /**
+     * Registers this object with the platform MBean server. Safe to call more than once.
+     */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // already registered
+        } catch (JMException e) {
+            Log.getInstance().log(Log.Level.WARN, "Could not register metrics MBean: {}", e.getMessage());
+        }
+    }
+
+    // --- periodic dump ---
+
+    /**
+     * Appends a timestamped {@link #snapshot()} line to the file (if not null)
+     * and logs it at INFO, every {@code periodSeconds}, on a daemon thread.
+     * Replaces any earlier schedule.
+     */
+    public synchronized void startSnapshots(long periodSeconds, String filePath) {
+        stopSnapshots();
+        snapshotTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        snapshotTimer.scheduleAtFixedRate(() -> dump(filePath), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopSnapshots() {
+        if (snapshotTimer != null) {
+            snapshotTimer.shutdownNow();
+            snapshotTimer = null;
+        }
+    }
+
+    private void dump(String filePath) {
+        String line = snapshot();
+        Log.getInstance().log(Log.Level.INFO, "Metrics: {}", line);
+        if (filePath == null) return;
+        try (PrintWriter out = new PrintWriter(new FileWriter(filePath, true))) {
+            out.println("[" + LocalDateTime.now().format(TIMESTAMP_FORMAT) + "] " + line);
+        } catch (IOException e) {
+            Log.getInstance().log(Log.Level.WARN, "Could not write metrics snapshot: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package model;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link DepotMetrics}.
+ */
+public interface DepotMetricsMXBean {
+    long getProcessedCount();
+
+    long getCollectedCount();
+
+    long getNotFoundCount();
+
+    long getEmptyQueueCount();
+
+    long getInvalidRowCount();
+
+    int getQueueDepth();
+
+    int getParcelCount();
+
+    int getProcessedHistorySize();
+
+    /** Milliseconds from JVM start until the GUI first painted, or -1. */
+    long getTimeToFirstFrameMillis();
+
+    /** Milliseconds from JVM start until startup loading finished, or -1. */
+    long getTimeToFullyLoadedMillis();
+
+    /**
+     * Latency statistics in nanoseconds, keyed "operation.stat" with stats
+     * count, mean, p50, p99, p999 and max.
+     */
+    Map<String, Long> getLatencyNanos();
+
+    /** One-line summary of all counters, gauges and latencies. */
+    String snapshot();
+
+    /** Clears the latency histograms (counters keep running). */
+    void resetLatencies();
+}
@@ -0,0 +1,57 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Weighted fair queuing between parcel size classes (small, medium, large):
+ * over time each class gets service effort in proportion to its weight, so
+ * small parcels move quickly without starving large ones.
+ * <p>
+ * Self-clocked fair queuing: each arrival gets a virtual finish tag,
+ * {@code max(V, last finish of its class) + (1 + expected service) / weight},
+ * where V is the tag of the customer most recently served, and the smallest
+ * tag is served next. Tags are fixed on arrival; a class that has been
+ * waiting keeps its old, small tags, which is the aging.
+ */
+public class FairQueueScheduler extends KeyedScheduler {
+    /** Weights of the small, medium and large classes. */
+    public static final double[] DEFAULT_WEIGHTS = {4, 2, 1};
+
+    /** Expected service (kg) below which a parcel is small, and medium. */
+    static final double SMALL_LIMIT = 5;
+    static final double MEDIUM_LIMIT = 25;
+
+    private final double[] weights;
+    private final double[] lastFinish = new double[3];
+    private double virtualTime;
+
+    /**
+     * @param weights weights of the small, medium and large classes, all positive.
+     */
+    public FairQueueScheduler(double[] weights) {
+        if (weights.length != 3) throw new IllegalArgumentException("Need 3 weights: " + Arrays.toString(weights));
+        for (double w : weights) {
+            if (!(w > 0)) throw new IllegalArgumentException("Weights must be positive: " + Arrays.toString(weights));
+        }
+        this.weights = weights.clone();
+    }
+
+    @Override
+    protected double key(Customer c, Parcel parcel, long arrival) {
+        double service = serviceEstimate(parcel);
+        int cls = service < SMALL_LIMIT ? 0 : service < MEDIUM_LIMIT ? 1 : 2;
+        double finish = Math.max(virtualTime, lastFinish[cls]) + (1 + service) / weights[cls];
+        lastFinish[cls] = finish;
+        return finish;
+    }
+
+    @Override
+    protected void served(Entry e) {
+        virtualTime = Math.max(virtualTime, e.key);
+    }
+
+    @Override
+    public String getName() {
+        return "fair";
+    }
+}
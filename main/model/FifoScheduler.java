@@ -0,0 +1,29 @@
+package model;
+
+/**
+ * Serves customers in arrival order. The default; keeps no state of its own.
+ */
+public class FifoScheduler implements CustomerScheduler {
+    private volatile QueueOfCustomers queue;
+
+    @Override
+    public void attach(QueueOfCustomers queue, ParcelMap parcels) {
+        this.queue = queue;
+    }
+
+    @Override
+    public void detach() {
+        queue = null;
+    }
+
+    @Override
+    public Customer next() {
+        QueueOfCustomers q = queue;
+        return q == null ? null : q.dequeue();
+    }
+
+    @Override
+    public String getName() {
+        return "fifo";
+    }
+}
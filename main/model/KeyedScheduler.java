@@ -0,0 +1,121 @@
+package model;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Base for schedulers that serve the customer with the smallest key, where
+ * the key is fixed when the customer arrives.
+ * <p>
+ * Anti-starvation aging is built into the key rather than applied over time:
+ * "cost minus rate times time waited" ranks customers the same way at every
+ * moment as "cost plus rate times arrival number", because the current time
+ * is common to all of them. So keys never change and a binary heap gives
+ * O(log n) selection.
+ * <p>
+ * Customers that leave the queue some other way (cancelled, or served while
+ * another scheduler was attached) are not searched for in the heap; they are
+ * skipped when they reach the top (lazy deletion), and the heap is pruned
+ * when stale entries outnumber live ones.
+ * <p>
+ * All state is guarded by the queue's monitor, which also covers arrivals.
+ */
+abstract class KeyedScheduler implements CustomerScheduler {
+
+    /** Volume divided by this gives volumetric weight in kg (the usual courier divisor). */
+    static final double VOLUME_PER_KG = 5000;
+
+    /** A queued customer and its key. */
+    static final class Entry {
+        final double key;
+        final long arrival;
+        final Customer customer;
+
+        Entry(double key, long arrival, Customer customer) {
+            this.key = key;
+            this.arrival = arrival;
+            this.customer = customer;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingDouble((Entry e) -> e.key)
+            .thenComparingLong(e -> e.arrival);
+
+    private final PriorityQueue<Entry> heap = new PriorityQueue<>(ORDER);
+    private final Consumer<Customer> onArrival = this::add;
+    private QueueOfCustomers queue;
+    private ParcelMap parcels;
+    private long arrivals;
+
+    @Override
+    public void attach(QueueOfCustomers queue, ParcelMap parcels) {
+        synchronized (queue) {
+            this.queue = queue;
+            this.parcels = parcels;
+            queue.forEach(this::add);
+            queue.addArrivalListener(onArrival);
+        }
+    }
+
+    @Override
+    public void detach() {
+        QueueOfCustomers q = queue;
+        if (q == null) return;
+        synchronized (q) {
+            q.removeArrivalListener(onArrival);
+            heap.clear();
+            queue = null;
+            parcels = null;
+        }
+    }
+
+    @Override
+    public Customer next() {
+        QueueOfCustomers q = queue;
+        if (q == null) return null;
+        synchronized (q) {
+            if (queue != q) return null; // detached meanwhile
+            if (heap.size() > 2 * q.size() + 64) {
+                heap.removeIf(e -> !q.contains(e.customer));
+            }
+            Entry e;
+            while ((e = heap.poll()) != null) {
+                if (q.remove(e.customer)) {
+                    served(e);
+                    return e.customer;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The key of a customer arriving now. {@code arrival} counts the
+     * customers seen since the scheduler was attached.
+     *
+     * @param parcel the customer's parcel, or null if it is not in the depot.
+     */
+    protected abstract double key(Customer c, Parcel parcel, long arrival);
+
+    /** Called when a customer is handed out. */
+    protected void served(Entry e) {
+    }
+
+    /**
+     * Expected service effort for a parcel, as weight plus volumetric weight
+     * (the larger and heavier, the longer to find and hand over). 0 for a
+     * missing parcel, which takes no time to turn down.
+     */
+    static double serviceEstimate(Parcel p) {
+        if (p == null) return 0;
+        return p.getWeight() + p.getLength() * p.getWidth() * p.getHeight() / VOLUME_PER_KG;
+    }
+
+    private void add(Customer c) {
+        Parcel p = parcels.getParcel(c.getDesiredParcelID());
+        long arrival = arrivals++;
+        heap.add(new Entry(key(c, p, arrival), arrival, c));
+    }
+}
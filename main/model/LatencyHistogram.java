@@ -0,0 +1,166 @@
+package model;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size, log-linear histogram of durations in nanoseconds.
+ * <p>
+ * Every power of two is split into 32 buckets, so any recorded value is
+ * reported within about 3% of its true value, from 1 ns up to the full long
+ * range. Several threads may record into the same histogram at once:
+ * the bucket counts are striped by thread (one stripe of under 16 KB per
+ * CPU, up to {@link #MAX_STRIPES}) and the totals are {@link LongAdder}s,
+ * so concurrent recorders rarely write the same cache line. Recording
+ * never allocates or locks.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+    private static final int MAX_STRIPES = 8;
+    private static final int STRIPES = Math.min(MAX_STRIPES,
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+
+    private final AtomicLongArray[] counts = new AtomicLongArray[STRIPES];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < STRIPES; i++) {
+            counts[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    /**
+     * Records one duration. Negative values count as 0.
+     */
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        stripe().getAndIncrement(bucket(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    /**
+     * Records the time since {@code startNanos} (a {@link System#nanoTime()} value).
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @param quantile e.g. 0.5, 0.99, 0.999.
+     * @return the smallest recorded-bucket bound that at least this fraction of
+     *         values fall under (capped at the maximum), or 0 if empty.
+     */
+    public long getPercentile(double quantile) {
+        long n = count.sum();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += bucketCount(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Adds every value recorded in {@code other} to this histogram.
+     */
+    public void add(LatencyHistogram other) {
+        AtomicLongArray mine = stripe();
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.bucketCount(i);
+            if (c != 0) mine.getAndAdd(i, c);
+        }
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        max.accumulate(other.max.get());
+    }
+
+    /**
+     * Returns a copy of the current values and clears this histogram, for
+     * interval reporting. Values recorded while this runs land in one of the two.
+     */
+    public LatencyHistogram drain() {
+        LatencyHistogram copy = new LatencyHistogram();
+        for (AtomicLongArray stripe : counts) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long c = stripe.getAndSet(i, 0);
+                if (c != 0) copy.counts[0].getAndAdd(i, c);
+            }
+        }
+        copy.count.add(count.sumThenReset());
+        copy.sum.add(sum.sumThenReset());
+        copy.max.accumulate(max.getThenReset());
+        return copy;
+    }
+
+    /**
+     * Summary such as "n=1000 mean=1.2us p50=1.1us p99=3.4us p999=9.0us max=12us".
+     */
+    @Override
+    public String toString() {
+        return "n=" + getCount()
+                + " mean=" + formatNanos((long) getMean())
+                + " p50=" + formatNanos(getPercentile(0.5))
+                + " p99=" + formatNanos(getPercentile(0.99))
+                + " p999=" + formatNanos(getPercentile(0.999))
+                + " max=" + formatNanos(getMax());
+    }
+
+    public static String formatNanos(long nanos) {
+        if (nanos < 1_000) return nanos + "ns";
+        if (nanos < 1_000_000) return String.format(Locale.ROOT, "%.1fus", nanos / 1e3);
+        if (nanos < 1_000_000_000) return String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+        return String.format(Locale.ROOT, "%.2fs", nanos / 1e9);
+    }
+
+    private AtomicLongArray stripe() {
+        return counts[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+    }
+
+    private long bucketCount(int bucket) {
+        long c = 0;
+        for (AtomicLongArray stripe : counts) {
+            c += stripe.get(bucket);
+        }
+        return c;
+    }
+
+    // Values below 32 get a bucket each; above that, 32 buckets per power of two.
+    private static int bucket(long v) {
+        if (v < SUB_BUCKETS) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int shift = exp - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((v >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long upperBound(int bucket) {
+        int magnitude = bucket >>> SUB_BITS;
+        if (magnitude == 0) return bucket;
+        long lower = (long) ((bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS) << (magnitude - 1);
+        return lower + (1L << (magnitude - 1)) - 1;
+    }
+}
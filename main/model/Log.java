@@ -0,0 +1,433 @@
+package model;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Singleton event log. Components that keep their events apart can create
+ * further, independent logs with {@link #newLog(String)}.
+ * <p>
+ * Producers publish entries into a bounded, lock-free multi-producer ring
+ * buffer; a background thread drains it into a size-rolled log file. Messages
+ * are formatted on the drain thread, so a call that passes a pattern and
+ * arguments costs the caller no string building. When the buffer is full an
+ * entry is either dropped (and counted) or the caller waits, depending on the
+ * {@link OverflowPolicy}. Memory use is bounded by the buffer capacity.
+ * <p>
+ * Entries at or above the console level are also echoed to the console,
+ * again by the drain thread, so callers never block on stdout.
+ */
+public class Log {
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    public enum OverflowPolicy {
+        /** Discard the new entry and count it in {@link #getDroppedCount()}. */
+        DROP,
+        /** Wait until the drain thread frees a slot. */
+        BLOCK
+    }
+
+    public static final String DEFAULT_FILE = "main/resources/eventsLog.txt";
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+    public static final long DEFAULT_MAX_FILE_BYTES = 10L << 20;
+    public static final int DEFAULT_MAX_FILES = 5;
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final long IDLE_PARK_NANOS = 2_000_000;
+
+    private static final Log instance = new Log(DEFAULT_FILE, DEFAULT_CAPACITY);
+
+    // Ring buffer: slot i is free for position p when sequence[i] == p,
+    // and holds the entry for position p when sequence[i] == p + 1.
+    private final int mask;
+    private final AtomicLongArray sequence;
+    private final Level[] levels;
+    private final long[] times;
+    private final Object[] messages; // String pattern or Supplier<String>
+    private final Object[][] arguments;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // drain thread only
+
+    private final LongAdder dropped = new LongAdder();
+    private final Thread drainThread;
+    private final Thread shutdownHook;
+    private final Object flushLock = new Object();
+    private volatile long flushedUpTo;
+    private volatile boolean flushRequested;
+    private volatile boolean closed;
+
+    private volatile Level level = Level.INFO;
+    private volatile Level consoleLevel = Level.WARN;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+    private volatile String filePath;
+    private volatile long maxFileBytes = DEFAULT_MAX_FILE_BYTES;
+    private volatile int maxFiles = DEFAULT_MAX_FILES;
+
+    // Drain thread only.
+    private BufferedWriter out;
+    private String openPath;
+    private long openBytes;
+    private String failedPath;
+    private volatile boolean openFailed;
+
+    private Log(String filePath, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequence.set(i, i);
+        }
+        this.levels = new Level[size];
+        this.times = new long[size];
+        this.messages = new Object[size];
+        this.arguments = new Object[size][];
+        this.filePath = filePath;
+
+        drainThread = new Thread(this::drainLoop, "event-log-drain");
+        drainThread.setDaemon(true);
+        drainThread.start();
+        shutdownHook = new Thread(this::flush, "event-log-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public static Log getInstance() {
+        return instance;
+    }
+
+    /**
+     * Creates a log of its own, writing to the given file, for a component
+     * that keeps its events apart from the shared log (e.g. a depot shard).
+     * Whoever creates it must {@link #close()} it.
+     */
+    public static Log newLog(String filePath) {
+        return new Log(filePath, DEFAULT_CAPACITY);
+    }
+
+    // --- configuration ---
+
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Entries at or above this level are echoed to the console (WARN by default).
+     */
+    public void setConsoleLevel(Level consoleLevel) {
+        this.consoleLevel = consoleLevel;
+    }
+
+    public Level getConsoleLevel() {
+        return consoleLevel;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Sets when the log file rolls over: once it passes {@code maxFileBytes}
+     * it is renamed to file.1 (older ones shift up to file.{maxFiles - 1}).
+     */
+    public void setRolling(long maxFileBytes, int maxFiles) {
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.compareTo(this.level) >= 0;
+    }
+
+    // --- logging ---
+
+    /**
+     * Logs an INFO entry.
+     */
+    public void addEntry(String entry) {
+        log(Level.INFO, entry, NO_ARGS);
+    }
+
+    public void log(Level level, String message) {
+        log(level, message, NO_ARGS);
+    }
+
+    /**
+     * Logs a message whose "{}" placeholders are replaced by the arguments'
+     * string values, on the drain thread.
+     */
+    public void log(Level level, String pattern, Object... args) {
+        if (isEnabled(level)) {
+            publish(level, pattern, args);
+        }
+    }
+
+    /**
+     * Logs a message built by the supplier, on the drain thread.
+     */
+    public void log(Level level, Supplier<String> message) {
+        if (isEnabled(level)) {
+            publish(level, message, NO_ARGS);
+        }
+    }
+
+    /**
+     * Drains every entry logged so far into the log file at the given path
+     * (switching to that file if it is not the current one) and flushes it.
+     */
+    public void writeToFile(String filename) {
+        filePath = filename;
+        flush();
+        if (openFailed) {
+            System.out.println("Error writing log to file: " + filename);
+        } else {
+            System.out.println("Log successfully written to " + filename);
+        }
+    }
+
+    /**
+     * Blocks until every entry logged before this call is written and flushed.
+     */
+    public void flush() {
+        long target = tail.get();
+        synchronized (flushLock) {
+            flushRequested = true;
+            LockSupport.unpark(drainThread);
+            while (flushedUpTo < target && drainThread.isAlive()) {
+                try {
+                    flushLock.wait(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                LockSupport.unpark(drainThread);
+            }
+        }
+    }
+
+    /**
+     * Writes out every entry logged so far, stops the drain thread, closes
+     * the file and removes the shutdown hook. Entries logged afterwards are
+     * dropped. Meant for logs from {@link #newLog(String)}.
+     */
+    public void close() {
+        if (closed) return;
+        flush();
+        closed = true;
+        LockSupport.unpark(drainThread);
+        try {
+            drainThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // JVM is already shutting down
+        }
+    }
+
+    private boolean publish(Level level, Object message, Object[] args) {
+        if (closed) {
+            dropped.increment();
+            return false;
+        }
+        long pos = tail.get();
+        while (true) {
+            int idx = (int) (pos & mask);
+            long diff = sequence.getAcquire(idx) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) break;
+                pos = tail.get();
+            } else if (diff < 0) {
+                // full: the slot still holds the entry from one lap ago
+                if (overflowPolicy == OverflowPolicy.DROP) {
+                    dropped.increment();
+                    return false;
+                }
+                LockSupport.unpark(drainThread);
+                LockSupport.parkNanos(50_000);
+                pos = tail.get();
+            } else {
+                pos = tail.get();
+            }
+        }
+        int idx = (int) (pos & mask);
+        levels[idx] = level;
+        times[idx] = System.currentTimeMillis();
+        messages[idx] = message;
+        arguments[idx] = args;
+        sequence.setRelease(idx, pos + 1);
+        return true;
+    }
+
+    // --- drain thread ---
+
+    private void drainLoop() {
+        StringBuilder line = new StringBuilder(256);
+        while (true) {
+            int drained = 0;
+            while (true) {
+                int idx = (int) (head & mask);
+                if (sequence.getAcquire(idx) != head + 1) break;
+                Level lvl = levels[idx];
+                long time = times[idx];
+                Object message = messages[idx];
+                Object[] args = arguments[idx];
+                messages[idx] = null;
+                arguments[idx] = null;
+                sequence.setRelease(idx, head + mask + 1);
+                head++;
+                drained++;
+
+                line.setLength(0);
+                TIMESTAMP_FORMAT.formatTo(Instant.ofEpochMilli(time), line);
+                line.append(' ').append(lvl).append(' ');
+                format(line, message, args);
+                write(line, lvl);
+            }
+            if (drained == 0) {
+                flushOutput();
+                flushedUpTo = head;
+                if (flushRequested) {
+                    synchronized (flushLock) {
+                        flushRequested = false;
+                        flushLock.notifyAll();
+                    }
+                }
+                if (closed) {
+                    closeOutput();
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private static void format(StringBuilder sb, Object message, Object[] args) {
+        String text;
+        if (message instanceof Supplier) {
+            try {
+                text = String.valueOf(((Supplier<?>) message).get());
+            } catch (RuntimeException e) {
+                text = "<message failed: " + e + ">";
+            }
+        } else {
+            text = String.valueOf(message);
+        }
+        if (args.length == 0) {
+            sb.append(text);
+            return;
+        }
+        int argIndex = 0;
+        int from = 0;
+        int at;
+        while (argIndex < args.length && (at = text.indexOf("{}", from)) >= 0) {
+            sb.append(text, from, at).append(args[argIndex++]);
+            from = at + 2;
+        }
+        sb.append(text, from, text.length());
+    }
+
+    private void write(StringBuilder line, Level lvl) {
+        if (lvl.compareTo(consoleLevel) >= 0) {
+            PrintStream console = lvl.compareTo(Level.WARN) >= 0 ? System.err : System.out;
+            console.println(line);
+        }
+        try {
+            ensureOpen();
+            if (out == null) return;
+            out.append(line).append(System.lineSeparator());
+            openBytes += line.length() + 1;
+            if (openBytes >= maxFileBytes) {
+                roll();
+            }
+        } catch (IOException e) {
+            closeOutput();
+            openFailed = true;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        String path = filePath;
+        if (out != null && path.equals(openPath)) return;
+        if (path.equals(failedPath)) return; // don't retry a broken path for every entry
+        closeOutput();
+        File file = new File(path);
+        try {
+            out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true)));
+        } catch (IOException e) {
+            failedPath = path;
+            throw e;
+        }
+        openPath = path;
+        openBytes = file.length();
+        failedPath = null;
+        openFailed = false;
+    }
+
+    private void roll() throws IOException {
+        String path = openPath; // closeOutput() clears it
+        closeOutput();
+        int keep = maxFiles;
+        new File(path + "." + (keep - 1)).delete();
+        for (int i = keep - 2; i >= 1; i--) {
+            new File(path + "." + i).renameTo(new File(path + "." + (i + 1)));
+        }
+        if (keep > 1) {
+            new File(path).renameTo(new File(path + ".1"));
+        } else {
+            new File(path).delete();
+        }
+        ensureOpen();
+    }
+
+    private void flushOutput() {
+        if (out == null) return;
+        try {
+            out.flush();
+        } catch (IOException e) {
+            closeOutput();
+            openFailed = true;
+        }
+    }
+
+    private void closeOutput() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            // nothing more we can do for the log itself
+        }
+        out = null;
+        openPath = null;
+    }
+}
@@ -1,13 +1,19 @@
 package model;
 
+/**
+ * A parcel held in the depot. Its age is kept as the day it arrived (see
+ * {@link DepotClock}), so days in depot grow as the depot clock moves on.
+ */
 public class Parcel {
     private String parcelID;
     private double length;
     private double width;
     private double height;
     private double weight;
-    private int daysInDepot;
+    private int arrivalDay; // epoch day, see DepotClock
     private boolean collected;
+    private ParcelMap store; // map this parcel's row lives in, if any
+    private long storeStamp; // which incarnation of that row this parcel shows
 
     /**
      * Constructs a Parcel object with the specified attributes.
@@ -17,7 +23,8 @@ public class Parcel {
      * @param width       Width of the parcel.
      * @param height      Height of the parcel.
      * @param weight      Weight of the parcel.
-     * @param daysInDepot Number of days the parcel has been in the depot.
+     * @param daysInDepot Number of days the parcel has been in the depot
+     *                    as of today on the depot clock.
      */
     public Parcel(String parcelID, double length, double width, double height,
                   double weight, int daysInDepot) {
@@ -26,17 +33,29 @@ public class Parcel {
         this.width = width;
         this.height = height;
         this.weight = weight;
-        this.daysInDepot = daysInDepot;
+        this.arrivalDay = DepotClock.getInstance().today() - daysInDepot;
         this.collected = false; // By default, not collected
     }
 
+    /**
+     * Creates a parcel that arrived on the given epoch day.
+     */
+    public static Parcel arrivedOn(String parcelID, double length, double width, double height,
+                                   double weight, int arrivalDay) {
+        Parcel p = new Parcel(parcelID, length, width, height, weight, 0);
+        p.arrivalDay = arrivalDay;
+        return p;
+    }
+
     // Getters & Setters
     public String getParcelID() {
         return parcelID;
     }
 
     public void setParcelID(String parcelID) {
+        String oldID = this.parcelID;
         this.parcelID = parcelID;
+        changed(oldID);
     }
 
     public double getLength() {
@@ -45,6 +64,7 @@ public class Parcel {
 
     public void setLength(double length) {
         this.length = length;
+        changed(parcelID);
     }
 
     public double getWidth() {
@@ -53,6 +73,7 @@ public class Parcel {
 
     public void setWidth(double width) {
         this.width = width;
+        changed(parcelID);
     }
 
     public double getHeight() {
@@ -61,6 +82,7 @@ public class Parcel {
 
     public void setHeight(double height) {
         this.height = height;
+        changed(parcelID);
     }
 
     public double getWeight() {
@@ -69,14 +91,39 @@ public class Parcel {
 
     public void setWeight(double weight) {
         this.weight = weight;
+        changed(parcelID);
     }
 
+    /**
+     * @return days from arrival to today on the depot clock.
+     */
     public int getDaysInDepot() {
-        return daysInDepot;
+        return DepotClock.getInstance().today() - arrivalDay;
     }
 
+    /**
+     * @return days from arrival to the given epoch day (negative if the
+     *         parcel arrived after it).
+     */
+    public int getDaysInDepot(int asOfDay) {
+        return asOfDay - arrivalDay;
+    }
+
+    /**
+     * Sets the arrival day so the parcel has been in the depot {@code daysInDepot} days today.
+     */
     public void setDaysInDepot(int daysInDepot) {
-        this.daysInDepot = daysInDepot;
+        this.arrivalDay = DepotClock.getInstance().today() - daysInDepot;
+        changed(parcelID);
+    }
+
+    public int getArrivalDay() {
+        return arrivalDay;
+    }
+
+    public void setArrivalDay(int arrivalDay) {
+        this.arrivalDay = arrivalDay;
+        changed(parcelID);
     }
 
     public boolean isCollected() {
@@ -87,6 +134,24 @@ public class Parcel {
         this.collected = collected;
     }
 
+    /**
+     * Links this parcel to the map that stores it, so setters write through.
+     * The map ignores the write (and unlinks the parcel) once the row with
+     * this stamp has been removed, so a stale parcel never changes a parcel
+     * that later gets the same ID.
+     */
+    void linkTo(ParcelMap map, long stamp) {
+        this.store = map;
+        this.storeStamp = stamp;
+    }
+
+    private void changed(String storedID) {
+        ParcelMap map = store;
+        if (map != null) {
+            map.parcelChanged(this, storedID, storeStamp);
+        }
+    }
+
     /**
      * Validates the parcel ID format.
      * Example rule: Must start with 'X' or 'C' followed by digits.
@@ -103,7 +168,7 @@ public class Parcel {
                 "ID='" + parcelID + '\'' +
                 ", dim=" + length + "x" + width + "x" + height +
                 ", weight=" + weight +
-                ", daysInDepot=" + daysInDepot +
+                ", daysInDepot=" + getDaysInDepot() +
                 ", collected=" + collected +
                 '}';
     }
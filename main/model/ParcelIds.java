@@ -0,0 +1,90 @@
+package model;
+
+/**
+ * Encodes parcel IDs of the form "X123" / "C0042" as a single long:
+ * <pre>
+ *   bit 62      prefix (0 = 'X', 1 = 'C')
+ *   bits 56-61  number of digits (keeps leading zeros, so "X9" != "X009")
+ *   bits 0-55   numeric value
+ * </pre>
+ * Encoded keys are always positive and never 0. Encoding is case-insensitive
+ * and never allocates.
+ * <p>
+ * IDs that cannot be encoded get a negative "other" key from the caller's
+ * sequence number; bit 62 still records whether the ID starts with 'C', so
+ * {@link #isCPrefix(long)} works for every key.
+ */
+public final class ParcelIds {
+    public static final long NOT_ENCODABLE = -1L;
+
+    private static final int MAX_DIGITS = 16;
+    private static final int DIGITS_SHIFT = 56;
+    static final long PREFIX_C = 1L << 62;
+    private static final long VALUE_MASK = (1L << DIGITS_SHIFT) - 1;
+
+    private ParcelIds() {
+    }
+
+    /**
+     * @return the encoded key, or {@link #NOT_ENCODABLE} if the ID does not
+     *         match {@code [XC]\d+} (ignoring case) or has more than 16 digits.
+     */
+    public static long encode(CharSequence id) {
+        int len = id.length();
+        if (len < 2 || len > MAX_DIGITS + 1) return NOT_ENCODABLE;
+        char prefix = id.charAt(0);
+        long key;
+        if (prefix == 'X' || prefix == 'x') {
+            key = 0;
+        } else if (prefix == 'C' || prefix == 'c') {
+            key = PREFIX_C;
+        } else {
+            return NOT_ENCODABLE;
+        }
+        long value = 0;
+        for (int i = 1; i < len; i++) {
+            char ch = id.charAt(i);
+            if (ch < '0' || ch > '9') return NOT_ENCODABLE;
+            value = value * 10 + (ch - '0');
+        }
+        return key | ((long) (len - 1) << DIGITS_SHIFT) | value;
+    }
+
+    /**
+     * Builds a key for an ID that {@link #encode} rejects.
+     *
+     * @param sequence a per-map counter, starting at 1.
+     */
+    public static long otherKey(long sequence, String upperCaseID) {
+        return Long.MIN_VALUE | (upperCaseID.startsWith("C") ? PREFIX_C : 0) | (sequence & VALUE_MASK);
+    }
+
+    public static boolean isEncoded(long key) {
+        return key > 0;
+    }
+
+    /**
+     * @return true if the key belongs to an ID starting with 'C' (discounted).
+     */
+    public static boolean isCPrefix(long key) {
+        return (key & PREFIX_C) != 0;
+    }
+
+    /**
+     * Rebuilds the upper-case parcel ID string for an encoded key.
+     */
+    public static String decode(long key) {
+        if (!isEncoded(key)) {
+            throw new IllegalArgumentException("Not an encoded parcel ID: " + key);
+        }
+        int digits = (int) ((key >>> DIGITS_SHIFT) & 0x3F);
+        long value = key & VALUE_MASK;
+        char[] chars = new char[digits + 1];
+        chars[0] = isCPrefix(key) ? 'C' : 'X';
+        for (int i = digits; i >= 1; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,410 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Read-only binary parcel manifest, memory-mapped and decoded lazily.
+ * <p>
+ * A manifest is built once from parcels.csv (see {@link #convert}) and can
+ * then be opened in constant time: nothing is parsed up front, and a parcel's
+ * fields are only read from the mapped file when it is looked up. Attach one
+ * to a {@link ParcelMap} to serve the depot's parcels straight from it.
+ * <p>
+ * Layout (little-endian):
+ * <pre>
+ *   header   64 bytes: magic "DPM1", version, record size, flags,
+ *            record count, slot count, CRC32C of records + slots,
+ *            reserved, CRC32 of header bytes 0..59
+ *   records  count x 72 bytes, in CSV order:
+ *            long key, byte ID length, 23 bytes ID (UTF-8, upper case),
+ *            double length, width, height, weight, int days, int reserved
+ *   slots    slot count x int: open-addressing index from key hash to
+ *            record number + 1 (0 = empty), at most half full
+ * </pre>
+ * Keys are {@link ParcelIds} encodings; IDs that cannot be encoded get a
+ * hash-based "other" key, so lookups compare the stored ID as well.
+ * <p>
+ * Like the CSV Days column, stored days count from the day the manifest is
+ * opened: a parcel with 3 days opened today arrived three days before today
+ * on the {@link DepotClock}.
+ */
+public final class ParcelManifest implements AutoCloseable {
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x44504D31; // "DPM1"
+    private static final int HEADER_BYTES = 64;
+    private static final int HEADER_CRC_OFFSET = 60;
+    private static final int RECORD_BYTES = 72;
+    private static final int MAX_ID_BYTES = 23;
+    private static final int ID_OFFSET = 8;
+    private static final int DOUBLES_OFFSET = 32;
+    private static final int DAYS_OFFSET = 64;
+
+    // Mapped regions stay below 1 GiB and hold whole records / slots.
+    private static final int RECORDS_PER_REGION = (1 << 30) / RECORD_BYTES;
+    private static final int SLOTS_PER_REGION = 1 << 28;
+
+    private final String path;
+    private final RandomAccessFile file;
+    private final int count;
+    private final long slotCount;
+    private final long dataCrc;
+    private final MappedByteBuffer[] recordRegions;
+    private final MappedByteBuffer[] slotRegions;
+    private final int openedDay;
+
+    private ParcelManifest(String path, RandomAccessFile file, int count, long slotCount, long dataCrc,
+                           MappedByteBuffer[] recordRegions, MappedByteBuffer[] slotRegions, int openedDay) {
+        this.path = path;
+        this.openedDay = openedDay;
+        this.file = file;
+        this.count = count;
+        this.slotCount = slotCount;
+        this.dataCrc = dataCrc;
+        this.recordRegions = recordRegions;
+        this.slotRegions = slotRegions;
+    }
+
+    /**
+     * Opens and maps a manifest. Checks the header (magic, version, checksum
+     * and file size) but not the data; see {@link #verify()}.
+     */
+    public static ParcelManifest open(String path) throws IOException {
+        return open(path, DepotClock.getInstance().today());
+    }
+
+    /**
+     * Opens a manifest as if on the given depot day, so its days in depot
+     * give the same arrival days as when it was first opened (journal recovery).
+     */
+    static ParcelManifest open(String path, int openedDay) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a parcel manifest (too short): " + path);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a parcel manifest (bad magic): " + path);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(header.duplicate().position(0).limit(HEADER_CRC_OFFSET));
+            if ((int) crc.getValue() != header.getInt(HEADER_CRC_OFFSET)) {
+                throw new IOException("Parcel manifest header is corrupt: " + path);
+            }
+            int version = header.getInt(4);
+            if (version != VERSION || header.getInt(8) != RECORD_BYTES) {
+                throw new IOException("Unsupported parcel manifest version " + version + ": " + path);
+            }
+            long count = header.getLong(16);
+            long slots = header.getLong(24);
+            long expected = HEADER_BYTES + count * RECORD_BYTES + slots * 4;
+            if (count > Integer.MAX_VALUE - 8 || slots < 2 * count || Long.bitCount(slots) != 1
+                    || channel.size() != expected) {
+                throw new IOException("Parcel manifest is truncated or inconsistent: " + path);
+            }
+            MappedByteBuffer[] records = map(channel, HEADER_BYTES, count, RECORD_BYTES, RECORDS_PER_REGION);
+            MappedByteBuffer[] slotRegions = map(channel, HEADER_BYTES + count * RECORD_BYTES,
+                    slots, 4, SLOTS_PER_REGION);
+            return new ParcelManifest(path, file, (int) count, slots, header.getLong(32), records, slotRegions,
+                    openedDay);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private static MappedByteBuffer[] map(FileChannel channel, long offset, long items, int itemBytes,
+                                          int itemsPerRegion) throws IOException {
+        int regions = (int) ((items + itemsPerRegion - 1) / itemsPerRegion);
+        MappedByteBuffer[] result = new MappedByteBuffer[regions];
+        for (int r = 0; r < regions; r++) {
+            long first = (long) r * itemsPerRegion;
+            long n = Math.min(itemsPerRegion, items - first);
+            result[r] = channel.map(FileChannel.MapMode.READ_ONLY, offset + first * itemBytes, n * itemBytes);
+            result[r].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return result;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /** The depot day it was opened on; its days in depot count back from it. */
+    int getOpenedDay() {
+        return openedDay;
+    }
+
+    /** The data checksum stored in the header (not recomputed; see {@link #verify()}). */
+    public long getChecksum() {
+        return dataCrc;
+    }
+
+    /** Number of parcel records in the manifest. */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Recomputes the data checksum. Reads the whole file, so it costs what
+     * opening it saves; run it after copying a manifest, not on every start.
+     *
+     * @return true if the records and index match the stored checksum.
+     */
+    public boolean verify() {
+        CRC32C crc = new CRC32C();
+        for (MappedByteBuffer region : recordRegions) {
+            crc.update(region.duplicate().clear());
+        }
+        for (MappedByteBuffer region : slotRegions) {
+            crc.update(region.duplicate().clear());
+        }
+        return crc.getValue() == dataCrc;
+    }
+
+    // --- lookups ---
+
+    /**
+     * @return the record number holding the parcel ID (case-insensitive), or -1.
+     */
+    public int find(String parcelID) {
+        long key = ParcelIds.encode(parcelID);
+        String upper = null;
+        if (key == ParcelIds.NOT_ENCODABLE) {
+            upper = parcelID.toUpperCase();
+            key = otherKey(upper);
+        }
+        long mask = slotCount - 1;
+        for (long i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int rec = slotRegions[(int) (i / SLOTS_PER_REGION)].getInt((int) (i % SLOTS_PER_REGION) * 4) - 1;
+            if (rec < 0) return -1;
+            if (keyAt(rec) == key && (upper == null || upper.equals(idAt(rec)))) return rec;
+        }
+    }
+
+    long keyAt(int rec) {
+        return region(rec).getLong(offset(rec));
+    }
+
+    String idAt(int rec) {
+        long key = keyAt(rec);
+        if (ParcelIds.isEncoded(key)) return ParcelIds.decode(key);
+        ByteBuffer buf = region(rec);
+        int at = offset(rec) + ID_OFFSET;
+        byte[] bytes = new byte[buf.get(at)];
+        buf.get(at + 1, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    double lengthAt(int rec) {
+        return region(rec).getDouble(offset(rec) + DOUBLES_OFFSET);
+    }
+
+    double widthAt(int rec) {
+        return region(rec).getDouble(offset(rec) + DOUBLES_OFFSET + 8);
+    }
+
+    double heightAt(int rec) {
+        return region(rec).getDouble(offset(rec) + DOUBLES_OFFSET + 16);
+    }
+
+    double weightAt(int rec) {
+        return region(rec).getDouble(offset(rec) + DOUBLES_OFFSET + 24);
+    }
+
+    int daysAt(int rec) {
+        return region(rec).getInt(offset(rec) + DAYS_OFFSET);
+    }
+
+    /** The epoch day the record's parcel arrived, from its days as of opening. */
+    int arrivalAt(int rec) {
+        return openedDay - daysAt(rec);
+    }
+
+    /**
+     * Decodes a record into a new, unlinked Parcel.
+     */
+    public Parcel parcelAt(int rec) {
+        if (rec < 0 || rec >= count) {
+            throw new IndexOutOfBoundsException("Record " + rec + " of " + count);
+        }
+        return Parcel.arrivedOn(idAt(rec), lengthAt(rec), widthAt(rec), heightAt(rec), weightAt(rec), arrivalAt(rec));
+    }
+
+    private ByteBuffer region(int rec) {
+        return recordRegions[rec / RECORDS_PER_REGION];
+    }
+
+    private static int offset(int rec) {
+        return (rec % RECORDS_PER_REGION) * RECORD_BYTES;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    // --- keys ---
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & Integer.MAX_VALUE;
+    }
+
+    private static long otherKey(String upperCaseID) {
+        long h = 0xcbf29ce484222325L; // FNV-1a
+        for (int i = 0; i < upperCaseID.length(); i++) {
+            h = (h ^ upperCaseID.charAt(i)) * 0x100000001b3L;
+        }
+        return ParcelIds.otherKey(h, upperCaseID);
+    }
+
+    // --- conversion ---
+
+    /**
+     * Converts a parcels CSV file ("ParcelID,Length,Width,Height,Weight,Days")
+     * into a manifest. Rows are read with the normal CSV loader, so invalid
+     * rows and duplicate IDs are handled exactly as on a CSV start-up.
+     * Parcels whose ID is longer than 23 bytes are skipped and logged.
+     *
+     * @return the number of parcels written.
+     */
+    public static int convert(String csvPath, String manifestPath) throws IOException {
+        ParcelMap parcels = new ParcelMap();
+        CsvIngestor.loadParcels(csvPath, parcels);
+        return write(parcels, manifestPath);
+    }
+
+    /**
+     * Writes every parcel in the map (in row order) to a new manifest file,
+     * replacing it atomically.
+     *
+     * @return the number of parcels written.
+     */
+    public static int write(ParcelMap parcels, String manifestPath) throws IOException {
+        int n = parcels.size();
+        long[] keys = new long[n];
+        byte[][] otherIds = new byte[n][]; // only for IDs ParcelIds cannot encode
+        double[] columns = new double[n * 4];
+        int[] days = new int[n];
+        int written = 0;
+        for (Parcel p : parcels.getAllParcels()) {
+            if (written == n) break;
+            String id = p.getParcelID().toUpperCase();
+            long key = ParcelIds.encode(id);
+            if (key == ParcelIds.NOT_ENCODABLE) {
+                byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > MAX_ID_BYTES) {
+                    Log.getInstance().log(Log.Level.WARN, "Parcel ID too long for manifest, skipped: {}", id);
+                    continue;
+                }
+                key = otherKey(id);
+                otherIds[written] = bytes;
+            }
+            keys[written] = key;
+            columns[written * 4] = p.getLength();
+            columns[written * 4 + 1] = p.getWidth();
+            columns[written * 4 + 2] = p.getHeight();
+            columns[written * 4 + 3] = p.getWeight();
+            days[written] = p.getDaysInDepot();
+            written++;
+        }
+
+        long slots = Long.highestOneBit(Math.max(2, 2L * written - 1)) << 1;
+        if (slots > Integer.MAX_VALUE - 8) {
+            throw new IOException("Too many parcels for one manifest: " + written);
+        }
+        int[] slotTable = new int[(int) slots];
+        int mask = (int) slots - 1;
+        for (int rec = 0; rec < written; rec++) {
+            int i = hash(keys[rec]) & mask;
+            while (slotTable[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slotTable[i] = rec + 1;
+        }
+
+        File target = new File(manifestPath);
+        File tmp = new File(manifestPath + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+             FileChannel out = raf.getChannel()) {
+            out.truncate(0);
+            out.position(HEADER_BYTES);
+            ByteBuffer buf = ByteBuffer.allocate(RECORD_BYTES * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            for (int rec = 0; rec < written; rec++) {
+                if (buf.remaining() < RECORD_BYTES) drain(buf, out, crc);
+                byte[] id = otherIds[rec] != null ? otherIds[rec]
+                        : ParcelIds.decode(keys[rec]).getBytes(StandardCharsets.US_ASCII);
+                int start = buf.position();
+                buf.putLong(keys[rec]);
+                buf.put((byte) id.length).put(id);
+                buf.position(start + DOUBLES_OFFSET);
+                buf.putDouble(columns[rec * 4]).putDouble(columns[rec * 4 + 1])
+                        .putDouble(columns[rec * 4 + 2]).putDouble(columns[rec * 4 + 3])
+                        .putInt(days[rec]).putInt(0);
+            }
+            for (int slot : slotTable) {
+                if (buf.remaining() < 4) drain(buf, out, crc);
+                buf.putInt(slot);
+            }
+            drain(buf, out, crc);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_BYTES).putInt(12, 0)
+                    .putLong(16, written).putLong(24, slots).putLong(32, crc.getValue());
+            CRC32 headerCrc = new CRC32();
+            headerCrc.update(header.duplicate().position(0).limit(HEADER_CRC_OFFSET));
+            header.putInt(HEADER_CRC_OFFSET, (int) headerCrc.getValue());
+            out.write(header, 0);
+            out.force(true);
+        }
+        if (!tmp.renameTo(target)) {
+            target.delete();
+            if (!tmp.renameTo(target)) {
+                throw new IOException("Could not replace " + target);
+            }
+        }
+        Log.getInstance().addEntry("Wrote " + written + " parcels to manifest " + manifestPath);
+        return written;
+    }
+
+    private static void drain(ByteBuffer buf, FileChannel out, CRC32C crc) throws IOException {
+        buf.flip();
+        crc.update(buf.duplicate());
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        buf.clear();
+    }
+
+    /**
+     * Converts a CSV file: {@code ParcelManifest <parcels.csv> <parcels.bin>}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: ParcelManifest <parcels.csv> <parcels.bin>");
+            return;
+        }
+        long start = System.nanoTime();
+        int n = convert(args[0], args[1]);
+        System.out.println("Wrote " + n + " parcels to " + args[1] + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        try (ParcelManifest manifest = open(args[1])) {
+            System.out.println(manifest.verify() ? "Checksum OK" : "CHECKSUM MISMATCH");
+        }
+        Log.getInstance().flush();
+    }
+}
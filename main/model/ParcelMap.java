@@ -0,0 +1,1053 @@
+package model;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.DoublePredicate;
+
+/**
+ * Stores parcels keyed by their (upper-case) parcel ID.
+ * <p>
+ * Parcels are held column by column in primitive arrays (struct of arrays)
+ * instead of as Parcel objects. IDs of the form "X123"/"C123" are encoded as
+ * longs (see {@link ParcelIds}) and found through an open-addressing index,
+ * so contains/lookup/remove never allocate. Any other ID gets a synthetic
+ * key from a small side table.
+ * <p>
+ * Parcel objects are only created when asked for (getParcel, getAllParcels).
+ * They stay linked to the map: calling a setter on one writes the change
+ * back to its row. Safe for use by several workers at once.
+ * <p>
+ * A read-only {@link ParcelManifest} can be attached as a base layer. Its
+ * parcels are served straight from the mapped file and occupy the first
+ * rows; parcels added later go after them. Removing or replacing a manifest
+ * parcel only hides its record, so memory use grows with the changes made,
+ * not with the size of the manifest.
+ * <p>
+ * Optional sorted indexes on days in depot, weight and volume
+ * ({@link #createIndex}) answer range and top-K queries without a scan. They
+ * are kept up to date on every put, remove and Parcel setter call.
+ * <p>
+ * Ages are stored as arrival days (see {@link DepotClock}), so moving the
+ * depot clock on ages every parcel without touching any row or index.
+ */
+public class ParcelMap {
+
+    /** Parcel attributes that can be indexed and queried by range. */
+    public enum Attribute {
+        DAYS_IN_DEPOT, WEIGHT, VOLUME
+    }
+
+    private static final int INITIAL_ROWS = 16;
+    private static final long EMPTY = 0L;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Row columns: row i holds one parcel, rows 0..size-1 are live.
+    private long[] keys = new long[INITIAL_ROWS];
+    private double[] lengths = new double[INITIAL_ROWS];
+    private double[] widths = new double[INITIAL_ROWS];
+    private double[] heights = new double[INITIAL_ROWS];
+    private double[] weights = new double[INITIAL_ROWS];
+    private int[] arrivals = new int[INITIAL_ROWS]; // epoch days
+    // Row stamps, new for every parcel stored under a new ID: linked Parcel
+    // objects carry the stamp of the row they were read from, so a setter
+    // on one whose row has since been removed is ignored. Manifest records
+    // are stamped -(record + 1), and 0 is never used.
+    private long[] stamps = new long[INITIAL_ROWS];
+    private long lastStamp;
+    private int size;
+    // Open Overlays share the columns above: rows below sharedRows are
+    // copied out before one of them changes (copy on write).
+    private int columnSharers;
+    private int sharedRows;
+
+    // Linear-probing index from key to row, kept at most half full.
+    private long[] slotKeys = new long[INITIAL_ROWS * 2];
+    private int[] slotRows = new int[INITIAL_ROWS * 2];
+
+    // Synthetic keys (negative) for IDs that ParcelIds cannot encode.
+    private final Map<String, Long> otherKeys = new HashMap<>();
+    private final Map<Long, String> otherIds = new HashMap<>();
+    private long otherSequence;
+
+    // Manifest base layer: rows 0..baseSize-1 show its live records. Removing
+    // one moves the last base row into its place, tracked in the two maps
+    // (row -> record, record -> row) only for rows that moved.
+    private ParcelManifest base;
+    private int baseSize;
+    private final BitSet baseRemoved = new BitSet();
+    private final Map<Integer, Integer> baseRecordAt = new HashMap<>();
+    private final Map<Integer, Integer> baseRowOf = new HashMap<>();
+
+    private final Map<Attribute, SortedParcelIndex> indexes = new EnumMap<>(Attribute.class);
+
+    private final List<RowListener> listeners = new CopyOnWriteArrayList<>();
+
+    public ParcelMap() {
+    }
+
+    /**
+     * Serves the manifest's parcels from this map without loading them.
+     * The map must be empty; the manifest must stay open while attached.
+     */
+    public void attachManifest(ParcelManifest manifest) {
+        lock.writeLock().lock();
+        try {
+            if (size > 0 || base != null) {
+                throw new IllegalStateException("A manifest can only be attached to an empty map");
+            }
+            base = manifest;
+            baseSize = manifest.size();
+            for (Map.Entry<Attribute, SortedParcelIndex> e : indexes.entrySet()) {
+                indexBase(e.getKey(), e.getValue());
+            }
+            if (baseSize > 0) fireInserted(0, baseSize - 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public ParcelManifest getManifest() {
+        lock.readLock().lock();
+        try {
+            return base;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void putParcel(Parcel p) {
+        lock.writeLock().lock();
+        try {
+            hideBase(p.getParcelID());
+            int before = size;
+            int row = put(p);
+            if (size > before) {
+                fireInserted(baseSize + row, baseSize + row);
+            } else {
+                fireUpdated(baseSize + row, baseSize + row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds every parcel in the collection, replacing any with the same ID.
+     */
+    public void putAll(Collection<Parcel> parcels) {
+        lock.writeLock().lock();
+        try {
+            ensureRowCapacity(size + parcels.size());
+            if (base != null) {
+                for (Parcel p : parcels) {
+                    hideBase(p.getParcelID());
+                }
+            }
+            int first = size;
+            int lowestReplaced = Integer.MAX_VALUE;
+            for (Parcel p : parcels) {
+                int row = put(p);
+                if (row < first) lowestReplaced = Math.min(lowestReplaced, row);
+            }
+            if (lowestReplaced < first) fireUpdated(baseSize + lowestReplaced, baseSize + first - 1);
+            if (size > first) fireInserted(baseSize + first, baseSize + size - 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Parcel getParcel(String parcelID) {
+        lock.readLock().lock();
+        try {
+            int row = find(keyOf(parcelID));
+            if (row >= 0) return materialize(row);
+            int rec = findBase(parcelID);
+            return rec < 0 ? null : materializeBase(rec);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean containsParcel(String parcelID) {
+        lock.readLock().lock();
+        try {
+            return find(keyOf(parcelID)) >= 0 || findBase(parcelID) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a parcel atomically.
+     *
+     * @return the removed parcel, or null if another caller removed it first.
+     */
+    public Parcel removeParcel(String parcelID) {
+        lock.writeLock().lock();
+        try {
+            return remove(parcelID);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes several parcels under one lock, e.g. to claim a batch of
+     * customers' parcels at once.
+     *
+     * @return the removed parcels, in the order of the IDs; null where an
+     *         ID was not present (or repeats one already removed).
+     */
+    public Parcel[] removeParcels(List<String> parcelIDs) {
+        Parcel[] removed = new Parcel[parcelIDs.size()];
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < removed.length; i++) {
+                removed[i] = remove(parcelIDs.get(i));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return removed;
+    }
+
+    // Caller holds the write lock.
+    private Parcel remove(String parcelID) {
+        int row = find(keyOf(parcelID));
+        if (row < 0) {
+            int rec = findBase(parcelID);
+            if (rec < 0) return null;
+            Parcel p = base.parcelAt(rec);
+            removeBase(rec);
+            return p;
+        }
+        Parcel p = Parcel.arrivedOn(idOf(keys[row]), lengths[row], widths[row], heights[row],
+                weights[row], arrivals[row]);
+        removeRow(row);
+        return p;
+    }
+
+    /**
+     * @return the parcel in the given row (0..size-1), or null if out of range.
+     *         Rows move when parcels are removed; see {@link RowListener} events.
+     */
+    public Parcel getParcelAt(int row) {
+        lock.readLock().lock();
+        try {
+            if (row < 0) return null;
+            if (row < baseSize) return materializeBase(baseRecord(row));
+            return row - baseSize < size ? materialize(row - baseSize) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Registers a listener for row changes.
+     *
+     * @return the number of rows at the moment of registration, so the
+     *         listener can start in step with the events it will receive.
+     */
+    public int addListener(RowListener listener) {
+        lock.writeLock().lock();
+        try {
+            listeners.add(listener);
+            return baseSize + size;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeListener(RowListener listener) {
+        listeners.remove(listener);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return baseSize + size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a live view of all parcels. Parcel objects are created as the
+     * view is iterated; iteration is weakly consistent with concurrent changes.
+     */
+    public Collection<Parcel> getAllParcels() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Parcel> iterator() {
+                return new Iterator<>() {
+                    private int next;
+                    private Parcel prefetched;
+
+                    // Reads the next row under the same lock that checked it
+                    // exists, so a removal in between cannot make next() fail.
+                    @Override
+                    public boolean hasNext() {
+                        if (prefetched != null) return true;
+                        lock.readLock().lock();
+                        try {
+                            if (next >= baseSize + size) return false;
+                            int row = next++;
+                            prefetched = row < baseSize ? materializeBase(baseRecord(row)) : materialize(row - baseSize);
+                            return true;
+                        } finally {
+                            lock.readLock().unlock();
+                        }
+                    }
+
+                    @Override
+                    public Parcel next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        Parcel p = prefetched;
+                        prefetched = null;
+                        return p;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ParcelMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * Captures what the map holds on top of its manifest: the in-memory rows
+     * are returned as an {@link Overlay} and the hidden manifest records are
+     * set in {@code removedBase}. Without a manifest that is simply every
+     * parcel.
+     * <p>
+     * The overlay shares the row columns instead of copying them, so this
+     * is O(1) apart from the removed-record bits and any IDs ParcelIds cannot
+     * encode; a row that changes while the overlay is open copies the columns
+     * first. {@link Overlay#release Release} it when done.
+     */
+    Overlay captureOverlay(BitSet removedBase) {
+        lock.writeLock().lock();
+        try {
+            removedBase.clear();
+            removedBase.or(baseRemoved);
+            columnSharers++;
+            sharedRows = Math.max(sharedRows, size);
+            return new Overlay(this, keys, lengths, widths, heights, weights, arrivals, size,
+                    otherIds.isEmpty() ? Map.of() : new HashMap<>(otherIds));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The in-memory rows as they were when {@link #captureOverlay captured},
+     * readable without the map's lock.
+     */
+    static final class Overlay {
+        private final ParcelMap map;
+        private final long[] keys;
+        private final double[] lengths;
+        private final double[] widths;
+        private final double[] heights;
+        private final double[] weights;
+        private final int[] arrivals;
+        private final int size;
+        private final Map<Long, String> otherIds;
+
+        private Overlay(ParcelMap map, long[] keys, double[] lengths, double[] widths, double[] heights,
+                        double[] weights, int[] arrivals, int size, Map<Long, String> otherIds) {
+            this.map = map;
+            this.keys = keys;
+            this.lengths = lengths;
+            this.widths = widths;
+            this.heights = heights;
+            this.weights = weights;
+            this.arrivals = arrivals;
+            this.size = size;
+            this.otherIds = otherIds;
+        }
+
+        int size() {
+            return size;
+        }
+
+        String id(int row) {
+            long key = keys[row];
+            return key > 0 ? ParcelIds.decode(key) : otherIds.get(key);
+        }
+
+        double length(int row) {
+            return lengths[row];
+        }
+
+        double width(int row) {
+            return widths[row];
+        }
+
+        double height(int row) {
+            return heights[row];
+        }
+
+        double weight(int row) {
+            return weights[row];
+        }
+
+        int arrivalDay(int row) {
+            return arrivals[row];
+        }
+
+        /** Lets the map change its columns in place again. Call once. */
+        void release() {
+            map.lock.writeLock().lock();
+            try {
+                // if the columns were copied since, they are no longer shared
+                if (map.keys == keys && --map.columnSharers == 0) map.sharedRows = 0;
+            } finally {
+                map.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Hides the given manifest records, as removing their parcels would
+     * (journal recovery).
+     */
+    void hideBaseRecords(BitSet records) {
+        lock.writeLock().lock();
+        try {
+            for (int rec = records.nextSetBit(0); rec >= 0; rec = records.nextSetBit(rec + 1)) {
+                if (base != null && rec < base.size() && !baseRemoved.get(rec)) removeBase(rec);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The IDs of all parcels, taken at one moment (unlike iterating
+     * {@link #getAllParcels()}, which can miss rows that move meanwhile).
+     */
+    public List<String> getParcelIDs() {
+        lock.readLock().lock();
+        try {
+            List<String> ids = new ArrayList<>(baseSize + size);
+            for (int row = 0; row < baseSize; row++) {
+                ids.add(base.idAt(baseRecord(row)));
+            }
+            for (int row = 0; row < size; row++) {
+                ids.add(idOf(keys[row]));
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- secondary indexes ---
+
+    /**
+     * Builds a sorted index on the attribute (if not there already). From
+     * then on range and top-K queries on it avoid a full scan; each put,
+     * remove or setter call also updates it, at O(log n) cost.
+     */
+    public void createIndex(Attribute attribute) {
+        lock.writeLock().lock();
+        try {
+            if (indexes.containsKey(attribute)) return;
+            SortedParcelIndex index = new SortedParcelIndex();
+            for (int row = 0; row < size; row++) {
+                index.addRow(valueAt(attribute, row), keys[row]);
+            }
+            indexBase(attribute, index);
+            indexes.put(attribute, index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void dropIndex(Attribute attribute) {
+        lock.writeLock().lock();
+        try {
+            indexes.remove(attribute);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean hasIndex(Attribute attribute) {
+        lock.readLock().lock();
+        try {
+            return indexes.containsKey(attribute);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Parcels with {@code min <= attribute <= max}, in ascending order of
+     * the attribute. Uses the index if there is one, otherwise scans.
+     */
+    public List<Parcel> findRange(Attribute attribute, double min, double max) {
+        lock.readLock().lock();
+        try {
+            int offset = indexOffset(attribute);
+            double lo = min - offset;
+            double hi = max - offset;
+            SortedParcelIndex index = indexes.get(attribute);
+            return collect(index != null ? index.range(lo, hi)
+                    : scan(attribute, v -> Double.compare(v, lo) >= 0 && Double.compare(v, hi) <= 0));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Parcels whose attribute is strictly greater than {@code threshold}, in
+     * ascending order, e.g. {@code findAbove(DAYS_IN_DEPOT, 14)} for parcels
+     * here more than 14 days.
+     */
+    public List<Parcel> findAbove(Attribute attribute, double threshold) {
+        lock.readLock().lock();
+        try {
+            double lo = threshold - indexOffset(attribute);
+            SortedParcelIndex index = indexes.get(attribute);
+            return collect(index != null ? index.above(lo) : scan(attribute, v -> Double.compare(v, lo) > 0));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The {@code k} parcels with the largest attribute values, largest first.
+     */
+    public List<Parcel> findTop(Attribute attribute, int k) {
+        lock.readLock().lock();
+        try {
+            List<Parcel> result = new ArrayList<>(Math.max(0, Math.min(k, baseSize + size)));
+            SortedParcelIndex index = indexes.get(attribute);
+            Iterator<SortedParcelIndex.Entry> it = index != null ? index.descending() : scanTop(attribute, k);
+            while (result.size() < k && it.hasNext()) {
+                result.add(resolve(it.next()));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Callers hold the lock. Without an index: the matching manifest records
+    // and rows, straight from the columns, sorted as the index would be.
+    private List<SortedParcelIndex.Entry> scan(Attribute attribute, DoublePredicate matches) {
+        List<SortedParcelIndex.Entry> found = new ArrayList<>();
+        for (int row = 0; row < baseSize; row++) {
+            int rec = baseRecord(row);
+            double value = baseValue(attribute, rec);
+            if (matches.test(value)) found.add(new SortedParcelIndex.Entry(value, 0, rec));
+        }
+        for (int row = 0; row < size; row++) {
+            double value = valueAt(attribute, row);
+            if (matches.test(value)) found.add(new SortedParcelIndex.Entry(value, keys[row], -1));
+        }
+        found.sort(SortedParcelIndex.ORDER);
+        return found;
+    }
+
+    // Callers hold the lock. Without an index: the k largest, largest first,
+    // kept in a heap of k entries while scanning the columns.
+    private Iterator<SortedParcelIndex.Entry> scanTop(Attribute attribute, int k) {
+        if (k <= 0) return Collections.emptyIterator();
+        PriorityQueue<SortedParcelIndex.Entry> top = new PriorityQueue<>(Math.min(k, baseSize + size) + 1,
+                SortedParcelIndex.ORDER);
+        for (int row = 0; row < baseSize; row++) {
+            int rec = baseRecord(row);
+            double value = baseValue(attribute, rec);
+            if (top.size() < k || Double.compare(value, top.peek().value) >= 0) {
+                offer(top, k, new SortedParcelIndex.Entry(value, 0, rec));
+            }
+        }
+        for (int row = 0; row < size; row++) {
+            double value = valueAt(attribute, row);
+            if (top.size() < k || Double.compare(value, top.peek().value) >= 0) {
+                offer(top, k, new SortedParcelIndex.Entry(value, keys[row], -1));
+            }
+        }
+        List<SortedParcelIndex.Entry> sorted = new ArrayList<>(top);
+        sorted.sort(SortedParcelIndex.ORDER.reversed());
+        return sorted.iterator();
+    }
+
+    private static void offer(PriorityQueue<SortedParcelIndex.Entry> top, int k, SortedParcelIndex.Entry e) {
+        top.add(e);
+        if (top.size() > k) top.poll();
+    }
+
+    private List<Parcel> collect(Iterable<SortedParcelIndex.Entry> entries) {
+        List<Parcel> result = new ArrayList<>();
+        for (SortedParcelIndex.Entry e : entries) {
+            result.add(resolve(e));
+        }
+        return result;
+    }
+
+    private Parcel resolve(SortedParcelIndex.Entry e) {
+        return e.record >= 0 ? materializeBase(e.record) : materialize(find(e.key));
+    }
+
+    /**
+     * What an attribute's indexed values are offset from the attribute by.
+     * Days in depot are indexed as minus the arrival day, which sorts the
+     * same way but does not change as the clock moves on; adding today gives
+     * the days.
+     */
+    private static int indexOffset(Attribute attribute) {
+        return attribute == Attribute.DAYS_IN_DEPOT ? DepotClock.getInstance().today() : 0;
+    }
+
+    private double valueAt(Attribute attribute, int row) {
+        switch (attribute) {
+            case DAYS_IN_DEPOT: return -arrivals[row];
+            case WEIGHT: return weights[row];
+            default: return lengths[row] * widths[row] * heights[row];
+        }
+    }
+
+    private double baseValue(Attribute attribute, int rec) {
+        switch (attribute) {
+            case DAYS_IN_DEPOT: return -base.arrivalAt(rec);
+            case WEIGHT: return base.weightAt(rec);
+            default: return base.lengthAt(rec) * base.widthAt(rec) * base.heightAt(rec);
+        }
+    }
+
+    private void indexBase(Attribute attribute, SortedParcelIndex index) {
+        for (int row = 0; row < baseSize; row++) {
+            int rec = baseRecord(row);
+            index.addRecord(baseValue(attribute, rec), rec);
+        }
+    }
+
+    private void indexRow(int row) {
+        if (indexes.isEmpty()) return;
+        for (Map.Entry<Attribute, SortedParcelIndex> e : indexes.entrySet()) {
+            e.getValue().addRow(valueAt(e.getKey(), row), keys[row]);
+        }
+    }
+
+    private void unindexRow(int row) {
+        if (indexes.isEmpty()) return;
+        for (Map.Entry<Attribute, SortedParcelIndex> e : indexes.entrySet()) {
+            e.getValue().removeRow(valueAt(e.getKey(), row), keys[row]);
+        }
+    }
+
+    /**
+     * Hands a range of rows to the reader, straight from the column arrays
+     * and under the read lock. Rows past the current size are clipped, and a
+     * range is cut short where the manifest rows end; manifest rows are
+     * decoded into temporary columns first.
+     *
+     * @return the number of rows passed to the reader.
+     */
+    int readColumns(int fromRow, int toRow, ColumnReader reader) {
+        lock.readLock().lock();
+        try {
+            if (fromRow < baseSize) {
+                return readBaseColumns(fromRow, Math.min(toRow, baseSize), reader);
+            }
+            int from = fromRow - baseSize;
+            int to = Math.min(toRow - baseSize, size);
+            if (from >= to) return 0;
+            reader.read(keys, lengths, widths, heights, weights, arrivals, from, to);
+            return to - from;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Receives a slice [from, to) of the parcel columns. The arrays must not
+     * be modified or kept after the call returns.
+     */
+    interface ColumnReader {
+        void read(long[] keys, double[] lengths, double[] widths, double[] heights,
+                  double[] weights, int[] arrivalDays, int from, int to);
+    }
+
+    /**
+     * Tells listeners that every row changed, after the depot clock moved
+     * (days in depot are derived, so no row data is touched).
+     */
+    void clockMoved() {
+        lock.writeLock().lock();
+        try {
+            if (baseSize + size > 0) fireUpdated(0, baseSize + size - 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Called by a linked Parcel after one of its setters ran, to write the
+     * change back to its row. {@code oldID} is the ID the row is stored
+     * under and {@code stamp} the row's stamp when the parcel was read; if
+     * that row is gone, the parcel is unlinked and nothing is written.
+     */
+    void parcelChanged(Parcel p, String oldID, long stamp) {
+        lock.writeLock().lock();
+        try {
+            int row = find(keyOf(oldID));
+            if (row < 0 || stamps[row] != stamp) {
+                // a manifest parcel: the change moves it into memory
+                int rec = row < 0 ? findBase(oldID) : -1;
+                if (rec < 0 || stamp != baseStamp(rec)) {
+                    p.linkTo(null, 0);
+                    return;
+                }
+                removeBase(rec);
+            } else if (!oldID.equalsIgnoreCase(p.getParcelID())) {
+                removeRow(row);
+            } else {
+                unindexRow(row);
+                writeRow(row, p);
+                indexRow(row);
+                fireUpdated(baseSize + row, baseSize + row);
+                return;
+            }
+            hideBase(p.getParcelID());
+            int before = size;
+            int newRow = put(p);
+            if (size > before) {
+                fireInserted(baseSize + newRow, baseSize + newRow);
+            } else {
+                fireUpdated(baseSize + newRow, baseSize + newRow);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Callers hold the write lock.
+    private int put(Parcel p) {
+        long key = keyOrCreate(p.getParcelID());
+        int row = find(key);
+        if (row < 0) {
+            ensureRowCapacity(size + 1);
+            row = size++;
+            ownColumns(row);
+            keys[row] = key;
+            stamps[row] = ++lastStamp;
+            insertSlot(key, row);
+        } else {
+            unindexRow(row);
+        }
+        writeRow(row, p);
+        indexRow(row);
+        p.linkTo(this, stamps[row]);
+        return row;
+    }
+
+    private void writeRow(int row, Parcel p) {
+        ownColumns(row);
+        lengths[row] = p.getLength();
+        widths[row] = p.getWidth();
+        heights[row] = p.getHeight();
+        weights[row] = p.getWeight();
+        arrivals[row] = p.getArrivalDay();
+    }
+
+    private Parcel materialize(int row) {
+        Parcel p = Parcel.arrivedOn(idOf(keys[row]), lengths[row], widths[row], heights[row],
+                weights[row], arrivals[row]);
+        p.linkTo(this, stamps[row]);
+        return p;
+    }
+
+    /**
+     * Removes a row by moving the last row into its place.
+     */
+    private void removeRow(int row) {
+        unindexRow(row);
+        long key = keys[row];
+        deleteSlot(key);
+        int last = size - 1;
+        if (row != last) {
+            ownColumns(row);
+            keys[row] = keys[last];
+            lengths[row] = lengths[last];
+            widths[row] = widths[last];
+            heights[row] = heights[last];
+            weights[row] = weights[last];
+            arrivals[row] = arrivals[last];
+            stamps[row] = stamps[last];
+            slotRows[slotOf(keys[row])] = row;
+            fireUpdated(baseSize + row, baseSize + row);
+        }
+        size--;
+        fireDeleted(baseSize + last, baseSize + last);
+        if (key < 0) {
+            otherKeys.remove(otherIds.remove(key));
+        }
+    }
+
+    // --- manifest base layer (callers hold the lock) ---
+
+    /**
+     * @return the live manifest record for the ID, or -1.
+     */
+    private int findBase(String parcelID) {
+        if (base == null) return -1;
+        int rec = base.find(parcelID);
+        return rec >= 0 && !baseRemoved.get(rec) ? rec : -1;
+    }
+
+    private int baseRecord(int row) {
+        Integer rec = baseRecordAt.get(row);
+        return rec == null ? row : rec;
+    }
+
+    private int baseRow(int rec) {
+        Integer row = baseRowOf.get(rec);
+        return row == null ? rec : row;
+    }
+
+    /**
+     * Hides a manifest record by moving the last manifest row into its row.
+     */
+    private void removeBase(int rec) {
+        int row = baseRow(rec);
+        int last = baseSize - 1;
+        int lastRec = baseRecord(last);
+        for (Map.Entry<Attribute, SortedParcelIndex> e : indexes.entrySet()) {
+            e.getValue().removeRecord(baseValue(e.getKey(), rec), rec);
+        }
+        baseRemoved.set(rec);
+        baseRecordAt.remove(last);
+        baseRowOf.remove(rec);
+        if (row != last) {
+            setBaseRow(row, lastRec);
+            fireUpdated(row, row);
+        } else {
+            baseRowOf.remove(lastRec);
+        }
+        baseSize--;
+        fireDeleted(last, last);
+    }
+
+    private void setBaseRow(int row, int rec) {
+        if (row == rec) {
+            baseRecordAt.remove(row);
+            baseRowOf.remove(rec);
+        } else {
+            baseRecordAt.put(row, rec);
+            baseRowOf.put(rec, row);
+        }
+    }
+
+    /**
+     * Hides the manifest record for an ID about to be stored in memory.
+     */
+    private void hideBase(String parcelID) {
+        int rec = findBase(parcelID);
+        if (rec >= 0) removeBase(rec);
+    }
+
+    private Parcel materializeBase(int rec) {
+        Parcel p = base.parcelAt(rec);
+        p.linkTo(this, baseStamp(rec));
+        return p;
+    }
+
+    private static long baseStamp(int rec) {
+        return -(rec + 1L);
+    }
+
+    private int readBaseColumns(int fromRow, int toRow, ColumnReader reader) {
+        int n = toRow - fromRow;
+        if (n <= 0) return 0;
+        long[] k = new long[n];
+        double[] l = new double[n];
+        double[] w = new double[n];
+        double[] h = new double[n];
+        double[] wt = new double[n];
+        int[] d = new int[n];
+        for (int i = 0; i < n; i++) {
+            int rec = baseRecord(fromRow + i);
+            k[i] = base.keyAt(rec);
+            l[i] = base.lengthAt(rec);
+            w[i] = base.widthAt(rec);
+            h[i] = base.heightAt(rec);
+            wt[i] = base.weightAt(rec);
+            d[i] = base.arrivalAt(rec);
+        }
+        reader.read(k, l, w, h, wt, d, 0, n);
+        return n;
+    }
+
+    private void fireInserted(int first, int last) {
+        for (RowListener l : listeners) {
+            l.rowsInserted(first, last);
+        }
+    }
+
+    private void fireDeleted(int first, int last) {
+        for (RowListener l : listeners) {
+            l.rowsDeleted(first, last);
+        }
+    }
+
+    private void fireUpdated(int first, int last) {
+        for (RowListener l : listeners) {
+            l.rowsUpdated(first, last);
+        }
+    }
+
+    private void ensureRowCapacity(int rows) {
+        if (rows <= keys.length) return;
+        int capacity = Math.max(rows, keys.length * 2);
+        keys = Arrays.copyOf(keys, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+        arrivals = Arrays.copyOf(arrivals, capacity);
+        stamps = Arrays.copyOf(stamps, capacity);
+        columnSharers = 0;
+        sharedRows = 0;
+        if (capacity * 2 > slotKeys.length) {
+            rehash(Integer.highestOneBit(capacity * 2 - 1) << 1);
+        }
+    }
+
+    /**
+     * Copies the columns an open {@link Overlay} shares before this row
+     * changes. Rows past the ones it captured can be written in place.
+     */
+    private void ownColumns(int row) {
+        if (row >= sharedRows) return;
+        int capacity = keys.length;
+        keys = Arrays.copyOf(keys, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+        arrivals = Arrays.copyOf(arrivals, capacity);
+        columnSharers = 0;
+        sharedRows = 0;
+    }
+
+    // --- key mapping ---
+
+    /**
+     * @return the key for an ID, or EMPTY if it is not stored.
+     */
+    private long keyOf(String parcelID) {
+        long key = ParcelIds.encode(parcelID);
+        if (key != ParcelIds.NOT_ENCODABLE) return key;
+        Long other = otherKeys.get(parcelID.toUpperCase());
+        return other == null ? EMPTY : other;
+    }
+
+    private long keyOrCreate(String parcelID) {
+        long key = ParcelIds.encode(parcelID);
+        if (key != ParcelIds.NOT_ENCODABLE) return key;
+        String id = parcelID.toUpperCase();
+        Long other = otherKeys.get(id);
+        if (other == null) {
+            other = ParcelIds.otherKey(++otherSequence, id);
+            otherKeys.put(id, other);
+            otherIds.put(other, id);
+        }
+        return other;
+    }
+
+    private String idOf(long key) {
+        return key > 0 ? ParcelIds.decode(key) : otherIds.get(key);
+    }
+
+    // --- open-addressing index ---
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int find(long key) {
+        if (key == EMPTY) return -1;
+        int mask = slotKeys.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            long k = slotKeys[i];
+            if (k == key) return slotRows[i];
+            if (k == EMPTY) return -1;
+        }
+    }
+
+    private int slotOf(long key) {
+        int mask = slotKeys.length - 1;
+        int i = hash(key) & mask;
+        while (slotKeys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void insertSlot(long key, int row) {
+        int mask = slotKeys.length - 1;
+        int i = hash(key) & mask;
+        while (slotKeys[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        slotKeys[i] = key;
+        slotRows[i] = row;
+    }
+
+    /**
+     * Deletes a key and shifts later entries of its probe run back,
+     * so no tombstones are needed.
+     */
+    private void deleteSlot(long key) {
+        int mask = slotKeys.length - 1;
+        int hole = slotOf(key);
+        int j = hole;
+        while (true) {
+            j = (j + 1) & mask;
+            long k = slotKeys[j];
+            if (k == EMPTY) break;
+            int home = hash(k) & mask;
+            boolean homeBetween = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+            if (!homeBetween) {
+                slotKeys[hole] = k;
+                slotRows[hole] = slotRows[j];
+                hole = j;
+            }
+        }
+        slotKeys[hole] = EMPTY;
+    }
+
+    private void rehash(int slots) {
+        long[] oldKeys = slotKeys;
+        int[] oldRows = slotRows;
+        slotKeys = new long[slots];
+        slotRows = new int[slots];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                insertSlot(oldKeys[i], oldRows[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,671 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Append-only history of processed and collected parcels.
+ * <p>
+ * Entries are stored column by column (parcel ID key, customer name index,
+ * fee, action, time) in blocks of {@value #BLOCK_SIZE}; names and IDs that
+ * {@link ParcelIds} cannot encode go into a per-block string table. The
+ * familiar "Processed Parcel ID ... | Fee: $..." text is only built when an
+ * entry is read ({@link #format(int)}), so a table showing a screenful of
+ * rows formats a screenful of strings.
+ * <p>
+ * Only the newest {@code windowEntries} entries stay in memory. Older full
+ * blocks are written to files in a spill directory by a background thread
+ * and read back on demand (a few recently read blocks are cached), so
+ * memory stays flat however long the depot runs. A block that cannot be
+ * written stays in memory and is tried again later, backing off while the
+ * failures go on. The spill files are a
+ * cache of this store only and are deleted on {@link #close()}, unless a
+ * journal {@link #keepSpillsIn keeps them}: its snapshots then refer to the
+ * spilled blocks instead of copying them.
+ * <p>
+ * Entry times never go backwards (a clock step back is clamped), so time
+ * range reads are binary searches. Entries are numbered from 0 in the order
+ * added; indices stay valid for the life of the store. Safe for use by
+ * several threads.
+ */
+public class ProcessedHistory implements AutoCloseable {
+
+    public enum Action {
+        PROCESSED, COLLECTED,
+        /** A record kept as text because it could not be parsed (old journals). */
+        OTHER
+    }
+
+    public static final int BLOCK_SIZE = 4096;
+    public static final int DEFAULT_WINDOW = 16 * BLOCK_SIZE;
+
+    private static final int SPILL_MAGIC = 0x44504831; // "DPH1"
+    private static final int CACHED_BLOCKS = 4;
+    private static final long SPILL_RETRY_MILLIS = 1000;
+    private static final long MAX_SPILL_RETRY_MILLIS = 5 * 60 * 1000;
+    private static final Action[] ACTIONS = Action.values();
+
+    /**
+     * One entry, decoded. Created on read; holds no reference to the store.
+     */
+    public static final class Entry {
+        private final int index;
+        private final Action action;
+        private final String parcelID;
+        private final String customer;
+        private final double fee;
+        private final long timeMillis;
+
+        Entry(int index, Action action, String parcelID, String customer, double fee, long timeMillis) {
+            this.index = index;
+            this.action = action;
+            this.parcelID = parcelID;
+            this.customer = customer;
+            this.fee = fee;
+            this.timeMillis = timeMillis;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        /** The parcel ID, or null for an {@link Action#OTHER} record. */
+        public String getParcelID() {
+            return parcelID;
+        }
+
+        public String getCustomer() {
+            return customer;
+        }
+
+        public double getFee() {
+            return fee;
+        }
+
+        /** When the entry was added (epoch millis); 0 if not known. */
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        /** The record as the processed list always showed it. */
+        public String format() {
+            switch (action) {
+                case PROCESSED:
+                    return "Processed Parcel ID " + parcelID + " for " + customer + " | Fee: $" + String.format("%.2f", fee);
+                case COLLECTED:
+                    return "Collected Parcel ID " + parcelID + " by " + customer + " | Fee: $" + String.format("%.2f", fee);
+                default:
+                    return customer;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return format();
+        }
+    }
+
+    /** Columns for up to BLOCK_SIZE entries. Immutable once full. */
+    private static final class Block {
+        final long[] parcelKeys = new long[BLOCK_SIZE]; // ParcelIds key, or -(string index + 1)
+        final int[] customers = new int[BLOCK_SIZE];    // string index
+        final double[] fees = new double[BLOCK_SIZE];
+        final byte[] actions = new byte[BLOCK_SIZE];
+        final long[] times = new long[BLOCK_SIZE];
+        final List<String> strings = new ArrayList<>();
+        Map<String, Integer> stringIndex = new HashMap<>(); // dropped when the block is full
+
+        int string(String s) {
+            Integer i = stringIndex.get(s);
+            if (i == null) {
+                i = strings.size();
+                strings.add(s);
+                stringIndex.put(s, i);
+            }
+            return i;
+        }
+
+        Entry entry(int index, int slot) {
+            Action action = ACTIONS[actions[slot]];
+            long key = parcelKeys[slot];
+            String pid = action == Action.OTHER ? null
+                    : key > 0 ? ParcelIds.decode(key) : strings.get((int) (-key - 1));
+            return new Entry(index, action, pid, strings.get(customers[slot]), fees[slot], times[slot]);
+        }
+    }
+
+    /** A block's place in the history: in memory, or in a spill file. */
+    private static final class Segment {
+        final int first;
+        int size;
+        long firstTime;
+        long lastTime;
+        Block block;     // null once spilled
+        File file;       // set once spilled
+        boolean spilling;
+
+        Segment(int first) {
+            this.first = first;
+        }
+    }
+
+    private final int windowEntries;
+    private final File configuredDir;
+    private final List<Segment> segments = new ArrayList<>();
+    private final List<RowListener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService spiller;
+    private final Map<Segment, Block> cache = new LinkedHashMap<>(CACHED_BLOCKS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Segment, Block> eldest) {
+            return size() > CACHED_BLOCKS;
+        }
+    };
+
+    private Segment current;
+    private int size;
+    private int inMemoryBlocks;
+    private long lastTime;
+    private File spillDir;
+    private boolean keepSpills;         // spill files are durable and outlive the store
+    private int spillFailures;          // in a row, for the retry backoff
+    private boolean spillRetryPending;
+    private boolean closed;
+
+    public ProcessedHistory() {
+        this(DEFAULT_WINDOW, null);
+    }
+
+    /**
+     * @param windowEntries entries kept in memory (rounded up to whole blocks).
+     * @param spillDir      where older blocks are written, or null for a
+     *                      temporary directory created when first needed.
+     *                      Either way the files are removed by {@link #close()}.
+     */
+    public ProcessedHistory(int windowEntries, File spillDir) {
+        this.windowEntries = Math.max(BLOCK_SIZE, windowEntries);
+        this.configuredDir = spillDir;
+        spiller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "history-spill");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // --- writing ---
+
+    /**
+     * Appends an entry.
+     *
+     * @return its index.
+     */
+    public int add(Action action, String parcelID, String customer, double fee, long timeMillis) {
+        int index;
+        synchronized (this) {
+            index = append(action, parcelID, customer, fee, timeMillis);
+            // inside the lock, so listeners see indices in order
+            for (RowListener l : listeners) {
+                l.rowsInserted(index, index);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Appends {@code count} entries of one action, all at the same time,
+     * under one lock and with one insert event for the lot.
+     *
+     * @return the index of the first, or {@link #size()} if count is 0.
+     */
+    public int addAll(Action action, String[] parcelIDs, String[] customers, double[] fees, int count,
+                      long timeMillis) {
+        synchronized (this) {
+            int first = size;
+            for (int i = 0; i < count; i++) {
+                append(action, parcelIDs[i], customers[i], fees[i], timeMillis);
+            }
+            if (count > 0) {
+                for (RowListener l : listeners) {
+                    l.rowsInserted(first, first + count - 1);
+                }
+            }
+            return first;
+        }
+    }
+
+    // Caller holds the lock.
+    private int append(Action action, String parcelID, String customer, double fee, long timeMillis) {
+        if (current == null || current.size == BLOCK_SIZE) startBlock();
+        Block b = current.block;
+        int slot = current.size;
+        long key = action == Action.OTHER ? 0 : ParcelIds.encode(parcelID);
+        if (key == ParcelIds.NOT_ENCODABLE || (key > 0 && !parcelID.equals(ParcelIds.decode(key)))) {
+            key = -(b.string(parcelID) + 1L);
+        }
+        long time = Math.max(timeMillis, lastTime);
+        lastTime = time;
+        b.parcelKeys[slot] = key;
+        b.customers[slot] = b.string(customer);
+        b.fees[slot] = fee;
+        b.actions[slot] = (byte) action.ordinal();
+        b.times[slot] = time;
+        if (slot == 0) current.firstTime = time;
+        current.lastTime = time;
+        current.size++;
+        int index = size++;
+        if (current.size == BLOCK_SIZE) {
+            b.stringIndex = null;
+            spillOldBlocks();
+        }
+        return index;
+    }
+
+    /**
+     * Appends a record in the text form {@link Entry#format()} produces
+     * (as kept by old journals and snapshots). Text that does not parse is
+     * kept as an {@link Action#OTHER} record.
+     */
+    public int addRecord(String record, long timeMillis) {
+        Action action = record.startsWith("Processed Parcel ID ") ? Action.PROCESSED
+                : record.startsWith("Collected Parcel ID ") ? Action.COLLECTED : Action.OTHER;
+        if (action != Action.OTHER) {
+            String separator = action == Action.PROCESSED ? " for " : " by ";
+            int idStart = "Processed Parcel ID ".length();
+            int idEnd = record.indexOf(separator, idStart);
+            int feeAt = record.lastIndexOf(" | Fee: $");
+            if (idEnd > idStart && feeAt > idEnd) {
+                try {
+                    double fee = Double.parseDouble(record.substring(feeAt + 9).replace(',', '.'));
+                    return add(action, record.substring(idStart, idEnd),
+                            record.substring(idEnd + separator.length(), feeAt), fee, timeMillis);
+                } catch (NumberFormatException e) {
+                    // kept as text below
+                }
+            }
+        }
+        return add(Action.OTHER, null, record, 0, timeMillis);
+    }
+
+    // Caller holds the lock.
+    private void startBlock() {
+        current = new Segment(size);
+        current.block = new Block();
+        segments.add(current);
+        inMemoryBlocks++;
+    }
+
+    // Caller holds the lock. Queues the oldest full in-memory blocks beyond the window.
+    private void spillOldBlocks() {
+        if (spillRetryPending) return; // after a failure, wait for the retry
+        int allowed = (windowEntries + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        for (int i = 0; inMemoryBlocks > allowed && i < segments.size() - 1; i++) {
+            Segment s = segments.get(i);
+            if (s.block == null || s.spilling) continue;
+            s.spilling = true;
+            inMemoryBlocks--;
+            spiller.execute(() -> spill(s));
+        }
+    }
+
+    // Spill files are deleted by close() rather than registered with
+    // File.deleteOnExit, whose list only grows for the life of the JVM.
+    private void spill(Segment s) {
+        File file = null;
+        boolean durable;
+        try {
+            synchronized (this) {
+                file = spillFile(spillDir(), s.first);
+                durable = keepSpills;
+            }
+            writeBlock(s.block, s.size, file, durable);
+        } catch (IOException e) {
+            if (file != null) file.delete();
+            spillFailed(s, e);
+            return;
+        }
+        synchronized (this) {
+            if (closed) {
+                file.delete();
+                return;
+            }
+            if (keepSpills && !durable) { // kept since; write it again where it is kept
+                file.delete();
+                s.spilling = false;
+                inMemoryBlocks++;
+                spillOldBlocks();
+                return;
+            }
+            s.file = file;
+            s.block = null;
+            spillFailures = 0;
+        }
+    }
+
+    /**
+     * Keeps the block in memory and, unless a retry is already due, tries
+     * spilling again later, waiting twice as long after each failure in a row.
+     */
+    private void spillFailed(Segment s, IOException e) {
+        long delay;
+        synchronized (this) {
+            s.spilling = false;
+            inMemoryBlocks++;
+            if (closed || spillRetryPending) return;
+            spillRetryPending = true;
+            delay = Math.min(MAX_SPILL_RETRY_MILLIS, SPILL_RETRY_MILLIS << Math.min(spillFailures++, 20));
+        }
+        Log.getInstance().log(Log.Level.WARN, "Could not spill processed history block {}; keeping it in memory"
+                + " and retrying in {} ms: {}", s.first, delay, e.getMessage());
+        try {
+            spiller.schedule(this::retrySpill, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException closing) {
+            // closed meanwhile; nothing left to spill
+        }
+    }
+
+    private synchronized void retrySpill() {
+        spillRetryPending = false;
+        if (!closed) spillOldBlocks();
+    }
+
+    private static File spillFile(File dir, int first) {
+        return new File(dir, "history-" + first + ".bin");
+    }
+
+    private synchronized File spillDir() throws IOException {
+        if (spillDir == null) {
+            if (configuredDir != null) {
+                if (!configuredDir.isDirectory() && !configuredDir.mkdirs()) {
+                    throw new IOException("Cannot create history spill directory " + configuredDir);
+                }
+                spillDir = configuredDir;
+            } else {
+                spillDir = Files.createTempDirectory("depot-history").toFile();
+                spillDir.deleteOnExit();
+            }
+        }
+        return spillDir;
+    }
+
+    private static void writeBlock(Block b, int n, File file, boolean durable) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16))) {
+            out.writeInt(SPILL_MAGIC);
+            out.writeInt(n);
+            out.writeInt(b.strings.size());
+            for (String s : b.strings) {
+                out.writeUTF(s);
+            }
+            for (int i = 0; i < n; i++) out.writeLong(b.parcelKeys[i]);
+            for (int i = 0; i < n; i++) out.writeInt(b.customers[i]);
+            for (int i = 0; i < n; i++) out.writeDouble(b.fees[i]);
+            out.write(b.actions, 0, n);
+            for (int i = 0; i < n; i++) out.writeLong(b.times[i]);
+            out.flush();
+            if (durable) fos.getChannel().force(true);
+        }
+    }
+
+    // --- spilled blocks kept by a journal ---
+
+    /**
+     * Spills into {@code dir} from now on, forcing each file to disk, and
+     * keeps the files on {@link #close()}. Blocks already spilled elsewhere
+     * are moved there. A journal calls this so its snapshots can refer to
+     * spilled blocks ({@link #keptBlockTimes}) rather than copy them.
+     */
+    synchronized void keepSpillsIn(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create history spill directory " + dir);
+        }
+        File old = spillDir;
+        for (Segment s : segments) {
+            if (s.file == null || s.file.getParentFile().equals(dir)) continue;
+            File moved = spillFile(dir, s.first);
+            Files.move(s.file.toPath(), moved.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            try (FileOutputStream out = new FileOutputStream(moved, true)) {
+                out.getChannel().force(true);
+            }
+            s.file = moved;
+        }
+        if (old != null && configuredDir == null && !old.equals(dir)) old.delete();
+        spillDir = dir;
+        keepSpills = true;
+    }
+
+    /**
+     * The leading blocks, among those holding entries below {@code entries},
+     * whose files are on disk in the kept spill directory, as
+     * {first time, last time} pairs. They are full and never change again.
+     */
+    synchronized long[] keptBlockTimes(int entries) {
+        int n = 0;
+        if (keepSpills) {
+            while (n < segments.size() && (n + 1) * BLOCK_SIZE <= entries && segments.get(n).file != null) n++;
+        }
+        long[] times = new long[2 * n];
+        for (int i = 0; i < n; i++) {
+            times[2 * i] = segments.get(i).firstTime;
+            times[2 * i + 1] = segments.get(i).lastTime;
+        }
+        return times;
+    }
+
+    /**
+     * Makes the kept spill files of the first {@code times.length / 2} blocks,
+     * as {@link #keptBlockTimes} described them, the start of this empty
+     * history without reading them (journal recovery).
+     *
+     * @throws IOException if a file is missing.
+     */
+    synchronized void adoptKeptBlocks(long[] times) throws IOException {
+        if (!keepSpills || size > 0) throw new IllegalStateException("History must be empty and keep its spills");
+        for (int i = 0; i < times.length / 2; i++) {
+            Segment s = new Segment(size);
+            s.file = spillFile(spillDir, s.first);
+            if (!s.file.isFile()) throw new IOException("Processed history block is missing: " + s.file);
+            s.size = BLOCK_SIZE;
+            s.firstTime = times[2 * i];
+            s.lastTime = times[2 * i + 1];
+            segments.add(s);
+            size += BLOCK_SIZE;
+            lastTime = s.lastTime;
+        }
+    }
+
+    private static Block readBlock(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != SPILL_MAGIC) throw new IOException("Not a history block: " + file);
+            int n = in.readInt();
+            Block b = new Block();
+            b.stringIndex = null;
+            int strings = in.readInt();
+            for (int i = 0; i < strings; i++) {
+                b.strings.add(in.readUTF());
+            }
+            for (int i = 0; i < n; i++) b.parcelKeys[i] = in.readLong();
+            for (int i = 0; i < n; i++) b.customers[i] = in.readInt();
+            for (int i = 0; i < n; i++) b.fees[i] = in.readDouble();
+            in.readFully(b.actions, 0, n);
+            for (int i = 0; i < n; i++) b.times[i] = in.readLong();
+            return b;
+        }
+    }
+
+    // --- reading ---
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the entry at the index.
+     * @throws IndexOutOfBoundsException if there is no such entry.
+     * @throws UncheckedIOException if its spilled block cannot be read.
+     */
+    public synchronized Entry get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Entry " + index + " of " + size);
+        }
+        Segment s = segments.get(index / BLOCK_SIZE);
+        return block(s).entry(index, index - s.first);
+    }
+
+    /** The entry's text form; see {@link Entry#format()}. */
+    public String format(int index) {
+        return get(index).format();
+    }
+
+    /**
+     * Up to {@code count} entries starting at index {@code from}.
+     */
+    public synchronized List<Entry> page(int from, int count) {
+        int to = (int) Math.min(size, Math.max(0, (long) from + count));
+        List<Entry> result = new ArrayList<>(Math.max(0, to - from));
+        for (int i = Math.max(0, from); i < to; i++) {
+            result.add(get(i));
+        }
+        return result;
+    }
+
+    /**
+     * The index of the first entry added at or after the time, or
+     * {@link #size()} if there is none.
+     */
+    public synchronized int indexAt(long timeMillis) {
+        int lo = 0;
+        int hi = segments.size();
+        while (lo < hi) { // first segment whose last entry is at or after the time
+            int mid = (lo + hi) >>> 1;
+            if (segments.get(mid).lastTime < timeMillis) lo = mid + 1;
+            else hi = mid;
+        }
+        if (lo == segments.size()) return size;
+        Segment s = segments.get(lo);
+        long[] times = block(s).times;
+        int a = 0;
+        int b = s.size - 1;
+        while (a < b) {
+            int mid = (a + b) >>> 1;
+            if (times[mid] < timeMillis) a = mid + 1;
+            else b = mid;
+        }
+        return s.first + a;
+    }
+
+    /**
+     * Up to {@code max} entries added in [fromMillis, toMillis), oldest first.
+     */
+    public synchronized List<Entry> range(long fromMillis, long toMillis, int max) {
+        List<Entry> result = new ArrayList<>();
+        for (int i = indexAt(fromMillis); i < size && result.size() < max; i++) {
+            Entry e = get(i);
+            if (e.getTimeMillis() >= toMillis) break;
+            result.add(e);
+        }
+        return result;
+    }
+
+    /**
+     * Hands entries [from, to) to the action, oldest first, reading one
+     * block at a time. Entries added meanwhile are not included.
+     */
+    public void forEach(int from, int to, Consumer<Entry> action) {
+        for (int i = Math.max(0, from); i < to; ) {
+            List<Entry> chunk;
+            synchronized (this) {
+                if (i >= size) return;
+                chunk = page(i, Math.min(to - i, BLOCK_SIZE - i % BLOCK_SIZE));
+            }
+            chunk.forEach(action);
+            i += chunk.size();
+        }
+    }
+
+    // Caller holds the lock.
+    private Block block(Segment s) {
+        if (s.block != null) return s.block;
+        Block b = cache.get(s);
+        if (b == null) {
+            if (closed) throw new IllegalStateException("Processed history is closed");
+            try {
+                b = readBlock(s.file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            cache.put(s, b);
+        }
+        return b;
+    }
+
+    /** Entries held in memory (the window, plus blocks still being written out). */
+    public synchronized int getInMemoryEntries() {
+        int n = 0;
+        for (Segment s : segments) {
+            if (s.block != null) n += s.size;
+        }
+        return n;
+    }
+
+    // --- listeners ---
+
+    /**
+     * Registers a listener for added entries.
+     *
+     * @return the number of entries at the moment of registration.
+     */
+    public synchronized int addListener(RowListener listener) {
+        listeners.add(listener);
+        return size;
+    }
+
+    public void removeListener(RowListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Stops spilling and deletes the spill files, unless they are
+     * {@link #keepSpillsIn kept}. Entries that were spilled can no longer be
+     * read.
+     */
+    @Override
+    public void close() {
+        spiller.shutdownNow();
+        synchronized (this) {
+            closed = true;
+            cache.clear();
+            if (keepSpills) return;
+            for (Segment s : segments) {
+                if (s.file != null) s.file.delete();
+            }
+            if (spillDir != null && configuredDir == null) spillDir.delete();
+        }
+    }
+}
@@ -1,37 +1,452 @@
 package model;
 
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.List;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * A queue implementation for storing customers.
+ * <p>
+ * Customers are appended to a slot array in arrival order. Removing a
+ * customer, from the head or anywhere else, just clears its slot; a Fenwick
+ * tree over the occupied slots turns a queue position into a slot (and back)
+ * in O(log n), so the queue can still be read by position (row 0 is the head)
+ * without copying. Cleared slots are squeezed out when the array fills up.
+ * <p>
+ * Hash indexes by customer ID, sequence number, name and desired parcel ID
+ * find customers without a scan. All operations are synchronized so several workers can
+ * share one queue.
  */
 public class QueueOfCustomers {
-    private final Queue<Customer> queue;
+    private Customer[] slots = new Customer[16];
+    private int[] tree = new int[17];   // Fenwick tree of occupied slots, 1-based
+    private int head;                   // no occupied slot before this one
+    private int end;                    // next free slot
+    private int size;
+    private int maxSeq;                 // highest sequence number ever enqueued
+    private int slotSharers;            // open Captures of the slot array
+    private int sharedEnd;              // slots below this are copied before they change
+    private final Map<Long, Integer> byId = new HashMap<>();
+    private final SlotIndex<Integer> bySeq = new SlotIndex<>(16);
+    private final SlotIndex<String> byName = new SlotIndex<>(16);
+    private final SlotIndex<String> byParcel = new SlotIndex<>(16);
+    private final List<RowListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Customer>> arrivalListeners = new CopyOnWriteArrayList<>();
+
+    public synchronized void enqueue(Customer c) {
+        if (end == slots.length) compact(size + 1);
+        append(c);
+        for (RowListener l : listeners) {
+            l.rowsInserted(size - 1, size - 1);
+        }
+    }
+
+    /**
+     * Appends the customers in order as one operation.
+     */
+    public synchronized void enqueueAll(Collection<Customer> customers) {
+        if (customers.isEmpty()) return;
+        if (end + customers.size() > slots.length) compact(size + customers.size());
+        int first = size;
+        for (Customer c : customers) {
+            append(c);
+        }
+        for (RowListener l : listeners) {
+            l.rowsInserted(first, size - 1);
+        }
+    }
+
+    /**
+     * @return the next customer, or null if the queue is empty.
+     */
+    public synchronized Customer dequeue() {
+        if (size == 0) return null;
+        while (slots[head] == null) head++;
+        return removeSlot(head);
+    }
+
+    /**
+     * Removes the customer with the given sequence number, wherever it is in the queue.
+     *
+     * @return the removed customer, or null if none has that number.
+     */
+    public synchronized Customer removeBySeqNumber(int seqNumber) {
+        int slot = bySeq.first(seqNumber);
+        return slot < 0 ? null : removeSlot(slot);
+    }
+
+    /**
+     * Removes the customer with the given ID (see {@link Customer#getId()}).
+     *
+     * @return the removed customer, or null if none is queued with that ID.
+     */
+    public synchronized Customer removeById(long id) {
+        Integer slot = byId.get(id);
+        return slot == null ? null : removeSlot(slot);
+    }
+
+    /**
+     * Removes this customer object from the queue, wherever it is.
+     *
+     * @return false if it was not queued.
+     */
+    public synchronized boolean remove(Customer c) {
+        Integer slot = byId.get(c.getId());
+        if (slot == null || slots[slot] != c) return false;
+        removeSlot(slot);
+        return true;
+    }
+
+    /**
+     * @return true if this customer object is queued.
+     */
+    public synchronized boolean contains(Customer c) {
+        Integer slot = byId.get(c.getId());
+        return slot != null && slots[slot] == c;
+    }
+
+    /**
+     * A sequence number above any enqueued so far, for a customer added by
+     * hand. Each call returns a new one.
+     */
+    public synchronized int nextSeqNumber() {
+        return ++maxSeq;
+    }
+
+    /**
+     * @return the queued customer with the given sequence number, or null.
+     */
+    public synchronized Customer findBySeqNumber(int seqNumber) {
+        int slot = bySeq.first(seqNumber);
+        return slot < 0 ? null : slots[slot];
+    }
+
+    /**
+     * @return the queued customers with exactly this name, in queue order.
+     */
+    public synchronized List<Customer> findByName(String name) {
+        return collect(byName, name);
+    }
+
+    /**
+     * @return the queued customers waiting for this parcel, in queue order.
+     */
+    public synchronized List<Customer> findByParcelId(String parcelID) {
+        return collect(byParcel, parcelID.toUpperCase());
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the customer at the given queue position (0 = next to be served),
+     *         or null if the position is out of range.
+     */
+    public synchronized Customer get(int index) {
+        if (index < 0 || index >= size) return null;
+        return slots[slotAt(index)];
+    }
+
+    /**
+     * @return the queue position of the customer with this sequence number, or -1.
+     */
+    public synchronized int indexOf(int seqNumber) {
+        int slot = bySeq.first(seqNumber);
+        return slot < 0 ? -1 : countBefore(slot);
+    }
 
-    public QueueOfCustomers() {
-        queue = new LinkedList<>();
+    /**
+     * Calls the action for each customer, head first, without copying the
+     * queue. The queue is locked meanwhile, so the action must not block.
+     */
+    public synchronized void forEach(Consumer<Customer> action) {
+        for (int slot = head; slot < end; slot++) {
+            if (slots[slot] != null) action.accept(slots[slot]);
+        }
     }
 
-    public void enqueue(Customer c) {
-        queue.offer(c);
+    public synchronized List<Customer> getAllCustomers() {
+        List<Customer> all = new ArrayList<>(size);
+        forEach(all::add);
+        return all;
     }
 
-    public Customer dequeue() {
-        return queue.poll();
+    /**
+     * Captures the queue as it is now, in O(1): the capture shares the slot
+     * array, and the queue copies it before clearing or reusing a slot the
+     * capture can see. {@link Capture#release Release} it when done.
+     */
+    synchronized Capture capture() {
+        slotSharers++;
+        sharedEnd = Math.max(sharedEnd, end);
+        return new Capture(this, slots, head, end, size);
     }
 
-    public boolean isEmpty() {
-        return queue.isEmpty();
+    /**
+     * The queued customers as they were when {@link #capture captured},
+     * head first, readable without the queue's lock.
+     */
+    static final class Capture implements Iterable<Customer> {
+        private final QueueOfCustomers queue;
+        private final Customer[] slots;
+        private final int head;
+        private final int end;
+        private final int size;
+
+        private Capture(QueueOfCustomers queue, Customer[] slots, int head, int end, int size) {
+            this.queue = queue;
+            this.slots = slots;
+            this.head = head;
+            this.end = end;
+            this.size = size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Customer> iterator() {
+            return new Iterator<Customer>() {
+                private int slot = skip(head);
+
+                private int skip(int from) {
+                    while (from < end && slots[from] == null) from++;
+                    return from;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return slot < end;
+                }
+
+                @Override
+                public Customer next() {
+                    if (slot >= end) throw new NoSuchElementException();
+                    Customer c = slots[slot];
+                    slot = skip(slot + 1);
+                    return c;
+                }
+            };
+        }
+
+        /** Lets the queue change its slots in place again. Call once. */
+        void release() {
+            synchronized (queue) {
+                // if the slots were copied since, they are no longer shared
+                if (queue.slots == slots && --queue.slotSharers == 0) queue.sharedEnd = 0;
+            }
+        }
+    }
+
+    /**
+     * Registers a listener for row changes.
+     *
+     * @return the number of rows at the moment of registration, so the
+     *         listener can start in step with the events it will receive.
+     */
+    public synchronized int addListener(RowListener listener) {
+        listeners.add(listener);
+        return size;
+    }
+
+    public void removeListener(RowListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Registers a listener told about each customer as it joins the queue,
+     * on the enqueuing thread while the queue is locked (so it sees arrivals
+     * in queue order). It must return quickly and must not call back into
+     * the queue.
+     */
+    public synchronized void addArrivalListener(Consumer<Customer> listener) {
+        arrivalListeners.add(listener);
+    }
+
+    public void removeArrivalListener(Consumer<Customer> listener) {
+        arrivalListeners.remove(listener);
+    }
+
+    private void append(Customer c) {
+        int slot = end++;
+        ownSlots(slot);
+        slots[slot] = c;
+        for (int i = slot + 1; i < tree.length; i += i & -i) tree[i]++;
+        byId.put(c.getId(), slot);
+        bySeq.add(c.getSeqNumber(), slot);
+        byName.add(c.getName(), slot);
+        byParcel.add(c.getDesiredParcelID(), slot);
+        maxSeq = Math.max(maxSeq, c.getSeqNumber());
+        size++;
+        for (Consumer<Customer> l : arrivalListeners) {
+            l.accept(c);
+        }
+    }
+
+    private Customer removeSlot(int slot) {
+        Customer c = slots[slot];
+        int row = countBefore(slot);
+        ownSlots(slot);
+        slots[slot] = null;
+        for (int i = slot + 1; i < tree.length; i += i & -i) tree[i]--;
+        byId.remove(c.getId());
+        bySeq.remove(c.getSeqNumber(), slot);
+        byName.remove(c.getName(), slot);
+        byParcel.remove(c.getDesiredParcelID(), slot);
+        size--;
+        if (size == 0) {
+            head = 0;
+            end = 0;
+        }
+        for (RowListener l : listeners) {
+            l.rowsDeleted(row, row);
+        }
+        return c;
+    }
+
+    /** Copies the slot array an open {@link Capture} shares before this slot changes. */
+    private void ownSlots(int slot) {
+        if (slot >= sharedEnd) return;
+        slots = slots.clone();
+        slotSharers = 0;
+        sharedEnd = 0;
+    }
+
+    /** Number of occupied slots before this one, i.e. its queue position. */
+    private int countBefore(int slot) {
+        int count = 0;
+        for (int i = slot; i > 0; i -= i & -i) count += tree[i];
+        return count;
+    }
+
+    /** The slot holding queue position {@code index} (which must be in range). */
+    private int slotAt(int index) {
+        int pos = 0;
+        int remaining = index + 1;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next < tree.length && tree[next] < remaining) {
+                pos = next;
+                remaining -= tree[next];
+            }
+        }
+        return pos; // 1-based position pos + 1, i.e. slot pos
+    }
+
+    private List<Customer> collect(SlotIndex<String> index, String key) {
+        List<Customer> result = new ArrayList<>();
+        int first = index.first(key);
+        if (first < 0) return result;
+        int slot = first;
+        do {
+            result.add(slots[slot]);
+            slot = index.next[slot];
+        } while (slot != first);
+        return result;
     }
 
-    public int size() {
-        return queue.size();
+    /**
+     * Moves the queued customers to the front of a slot array at least twice
+     * {@code needed} long, dropping cleared slots, and rebuilds the tree and
+     * indexes. Runs when the array end is reached, so it costs O(1) per
+     * enqueue amortized.
+     */
+    private void compact(int needed) {
+        int capacity = slots.length;
+        while (capacity < 2 * needed) capacity <<= 1;
+        Customer[] live = new Customer[capacity];
+        int n = 0;
+        for (int slot = head; slot < end; slot++) {
+            if (slots[slot] != null) live[n++] = slots[slot];
+        }
+        slots = live;
+        slotSharers = 0;
+        sharedEnd = 0;
+        tree = new int[capacity + 1];
+        for (int i = 1; i <= n; i++) {
+            tree[i] = 1;
+        }
+        for (int i = 1; i <= capacity; i++) {
+            int parent = i + (i & -i);
+            if (parent <= capacity) tree[parent] += tree[i];
+        }
+        byId.clear();
+        bySeq.reset(capacity);
+        byName.reset(capacity);
+        byParcel.reset(capacity);
+        for (int slot = 0; slot < n; slot++) {
+            Customer c = slots[slot];
+            byId.put(c.getId(), slot);
+            bySeq.add(c.getSeqNumber(), slot);
+            byName.add(c.getName(), slot);
+            byParcel.add(c.getDesiredParcelID(), slot);
+        }
+        head = 0;
+        end = n;
     }
 
-    public List<Customer> getAllCustomers() {
-        return new ArrayList<>(queue);
+    /**
+     * Hash index from a key to the slots holding it. The slots sharing a key
+     * form a circular doubly linked list in queue order, threaded through
+     * {@link #next} and {@link #prev}, so adding and removing are O(1).
+     */
+    private static final class SlotIndex<K> {
+        private final Map<K, Integer> heads = new HashMap<>();
+        int[] next;
+        int[] prev;
+
+        SlotIndex(int capacity) {
+            next = new int[capacity];
+            prev = new int[capacity];
+        }
+
+        void reset(int capacity) {
+            heads.clear();
+            if (next.length != capacity) {
+                next = new int[capacity];
+                prev = new int[capacity];
+            }
+        }
+
+        int first(K key) {
+            Integer slot = heads.get(key);
+            return slot == null ? -1 : slot;
+        }
+
+        void add(K key, int slot) {
+            Integer first = heads.putIfAbsent(key, slot);
+            if (first == null) {
+                next[slot] = slot;
+                prev[slot] = slot;
+            } else {
+                int last = prev[first];
+                next[last] = slot;
+                prev[slot] = last;
+                next[slot] = first;
+                prev[first] = slot;
+            }
+        }
+
+        void remove(K key, int slot) {
+            if (next[slot] == slot) {
+                heads.remove(key);
+                return;
+            }
+            next[prev[slot]] = next[slot];
+            prev[next[slot]] = prev[slot];
+            if (heads.get(key) == slot) heads.put(key, next[slot]);
+        }
     }
 }
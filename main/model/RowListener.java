@@ -0,0 +1,17 @@
+package model;
+
+/**
+ * Receives fine-grained change notifications from a row-oriented store
+ * (customer queue, parcel map, processed history), so views can update
+ * just the affected rows. Row ranges are inclusive.
+ * <p>
+ * Called on the thread that made the change, while the store is locked:
+ * implementations must return quickly and must not call back into the store.
+ */
+public interface RowListener {
+    void rowsInserted(int firstRow, int lastRow);
+
+    void rowsDeleted(int firstRow, int lastRow);
+
+    void rowsUpdated(int firstRow, int lastRow);
+}
@@ -0,0 +1,29 @@
+package model;
+
+/**
+ * Serves the customer whose parcel is quickest to hand over first (smallest
+ * weight plus volumetric weight), so quick pickups do not wait behind large
+ * heavy parcels. A waiting customer's key drops by {@code agingRate} for
+ * every customer who arrives after them, so nobody waits forever.
+ */
+public class ShortestServiceScheduler extends KeyedScheduler {
+    /** Kilograms of expected service forgiven per later arrival. */
+    public static final double DEFAULT_AGING = 0.5;
+
+    private final double agingRate;
+
+    public ShortestServiceScheduler(double agingRate) {
+        if (agingRate < 0) throw new IllegalArgumentException("agingRate must not be negative: " + agingRate);
+        this.agingRate = agingRate;
+    }
+
+    @Override
+    protected double key(Customer c, Parcel parcel, long arrival) {
+        return serviceEstimate(parcel) + agingRate * arrival;
+    }
+
+    @Override
+    public String getName() {
+        return "shortest";
+    }
+}
@@ -0,0 +1,83 @@
+package model;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Sorted index from one numeric parcel attribute to the parcels having it,
+ * used by {@link ParcelMap} for range and top-K queries.
+ * <p>
+ * Entries refer to parcels by their map key (in-memory rows) or by manifest
+ * record number, neither of which changes when rows move, so the index only
+ * needs updating when a value changes or a parcel is added or removed.
+ * Not thread-safe: the map guards it with its own lock.
+ */
+class SortedParcelIndex {
+
+    /** An indexed value and the parcel it belongs to. */
+    static final class Entry {
+        final double value;
+        final long key;      // map key, or 0 for a manifest record
+        final int record;    // manifest record, or -1 for an in-memory row
+
+        Entry(double value, long key, int record) {
+            this.value = value;
+            this.key = key;
+            this.record = record;
+        }
+    }
+
+    /** The index's order: by value, ties by key, then record. */
+    static final Comparator<Entry> ORDER = Comparator
+            .comparingDouble((Entry e) -> e.value)
+            .thenComparingLong(e -> e.key)
+            .thenComparingInt(e -> e.record);
+
+    private final NavigableSet<Entry> entries = new TreeSet<>(ORDER);
+
+    void addRow(double value, long key) {
+        entries.add(new Entry(value, key, -1));
+    }
+
+    void removeRow(double value, long key) {
+        entries.remove(new Entry(value, key, -1));
+    }
+
+    void addRecord(double value, int record) {
+        entries.add(new Entry(value, 0, record));
+    }
+
+    void removeRecord(double value, int record) {
+        entries.remove(new Entry(value, 0, record));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Entries with {@code min <= value <= max}, in ascending order.
+     */
+    Iterable<Entry> range(double min, double max) {
+        if (min > max) return Collections.emptyList();
+        return entries.subSet(new Entry(min, Long.MIN_VALUE, Integer.MIN_VALUE), true,
+                new Entry(max, Long.MAX_VALUE, Integer.MAX_VALUE), true);
+    }
+
+    /**
+     * Entries with {@code value > min}, in ascending order.
+     */
+    Iterable<Entry> above(double min) {
+        return entries.tailSet(new Entry(min, Long.MAX_VALUE, Integer.MAX_VALUE), false);
+    }
+
+    /**
+     * Entries from the largest value down.
+     */
+    Iterator<Entry> descending() {
+        return entries.descendingIterator();
+    }
+}
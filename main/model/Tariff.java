@@ -0,0 +1,394 @@
+package model;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A fee tariff, read from a properties file and compiled into an evaluator.
+ * <p>
+ * Rules (all optional; the defaults are the depot's original fees):
+ * <pre>
+ *   name          = Standard
+ *   base.rate     = 1.0              fee per cm^3 x kg (volume times weight)
+ *   day.surcharge = 1%               per day in depot; tiered: 0:1%, 30:2%, 60:5%
+ *   weight.bands  = 0:100%, 20:110%  fee multiplier from each weight (kg) up
+ *   discount.C    = 20%              per parcel ID prefix; the longest match wins
+ *   fee.min       = 0.5              floor, after everything else
+ *   fee.max       = 5000             cap, after everything else
+ * </pre>
+ * The fee is {@code volume * weight * rate * (1 + surcharge% / 100) * band *
+ * (1 - discount)}, clamped to [min, max]. Parsing, validation and table
+ * building happen once, at load; per parcel the evaluator does arithmetic and
+ * array lookups only. Tariffs without tiers, bands, limits or prefix rules
+ * other than 'C' (such as the default) get a straight-line evaluator that
+ * costs the same as the original hard-coded formula and gives bit-identical
+ * fees.
+ * <p>
+ * The tariff in force ({@link #current()}) is swapped atomically with
+ * {@link #install}; each fee is computed entirely under one tariff.
+ */
+public final class Tariff {
+    /**
+     * Whether straight-line fees run on {@link VectorFees}: the JVM resolved
+     * the incubator Vector API module and {@code depot.vector} is not false.
+     */
+    static final boolean VECTOR_FEES = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && Boolean.parseBoolean(System.getProperty("depot.vector", "true"));
+
+    // Tiers may start at most this many days in (a century); the surcharge
+    // table has an entry per day up to the last tier.
+    private static final int MAX_TIER_DAY = 36500;
+
+    private static final AtomicReference<Tariff> current = new AtomicReference<>(defaultTariff());
+    private static ScheduledExecutorService watcher;
+
+    private final String name;
+    private final String source;
+    private final double baseRate;
+    // day surcharge in percent for d days: percentTable[d] below the last tier, then linear
+    private final double[] percentTable;
+    private final int lastTierStart;
+    private final double percentAtLastTier;
+    private final double firstPercent;
+    private final double lastPercent;
+    // weight bands: bandFactors[i] applies from bandFloors[i] kg up
+    private final double[] bandFloors;
+    private final double[] bandFactors;
+    // prefix factors, longest prefix first
+    private final String[] prefixes;
+    private final double[] prefixFactors;
+    private final double cFactor;           // for the straight-line evaluator
+    private final double min;
+    private final double max;
+    private final boolean straightLine;
+
+    private Tariff(String name, String source, double baseRate, int[] tierStarts, double[] tierPercents,
+                   double[] bandFloors, double[] bandFactors, String[] prefixes, double[] prefixFactors,
+                   double min, double max) {
+        this.name = name;
+        this.source = source;
+        this.baseRate = baseRate;
+        this.lastTierStart = tierStarts[tierStarts.length - 1];
+        this.firstPercent = tierPercents[0];
+        this.lastPercent = tierPercents[tierPercents.length - 1];
+        this.percentTable = new double[lastTierStart];
+        int tier = 0;
+        double percent = 0;
+        for (int d = 0; d < lastTierStart; d++) {
+            while (tier + 1 < tierStarts.length && tierStarts[tier + 1] <= d) tier++;
+            percentTable[d] = percent;
+            percent += tierPercents[tier];
+        }
+        this.percentAtLastTier = percent;
+        this.bandFloors = bandFloors;
+        this.bandFactors = bandFactors;
+        this.prefixes = prefixes;
+        this.prefixFactors = prefixFactors;
+        this.min = min;
+        this.max = max;
+
+        boolean onlyC = prefixes.length == 0 || (prefixes.length == 1 && prefixes[0].equals("C"));
+        this.cFactor = prefixes.length == 1 && onlyC ? prefixFactors[0] : 1.0;
+        this.straightLine = tierStarts.length == 1 && tierStarts[0] == 0 && bandFloors.length == 0 && onlyC
+                && min == Double.NEGATIVE_INFINITY && max == Double.POSITIVE_INFINITY;
+    }
+
+    // --- the tariff in force ---
+
+    public static Tariff current() {
+        return current.get();
+    }
+
+    /**
+     * Makes the tariff the one in force for all workers.
+     *
+     * @return the tariff it replaced.
+     */
+    public static Tariff install(Tariff tariff) {
+        Tariff old = current.getAndSet(tariff);
+        Log.getInstance().log(Log.Level.INFO, "Tariff '{}' ({}) installed", tariff.name, tariff.source);
+        return old;
+    }
+
+    /**
+     * Reloads the tariff file whenever its modification time changes,
+     * checking every {@code periodSeconds} on a daemon thread. A file that
+     * fails to load is logged and the tariff in force is kept. Replaces any
+     * earlier watch.
+     */
+    public static synchronized void watch(String path, long periodSeconds) {
+        stopWatching();
+        File file = new File(path);
+        long[] seen = {file.lastModified()};
+        watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tariff-watch");
+            t.setDaemon(true);
+            return t;
+        });
+        watcher.scheduleWithFixedDelay(() -> {
+            long modified = file.lastModified();
+            if (modified == seen[0]) return;
+            seen[0] = modified;
+            try {
+                install(load(path));
+            } catch (IOException | IllegalArgumentException e) {
+                Log.getInstance().log(Log.Level.WARN, "Tariff {} not reloaded: {}", path, e.getMessage());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public static synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
+    }
+
+    // --- loading ---
+
+    /** The original depot fees: volume x weight, +1% per day, 20% off 'C' parcels. */
+    public static Tariff defaultTariff() {
+        Properties rules = new Properties();
+        rules.setProperty("name", "Default");
+        rules.setProperty("discount.C", "20%");
+        return compile(rules, "built-in");
+    }
+
+    /**
+     * @throws IllegalArgumentException if a rule is unknown or malformed.
+     */
+    public static Tariff load(String path) throws IOException {
+        Properties rules = new Properties();
+        try (Reader in = new FileReader(path)) {
+            rules.load(in);
+        }
+        return compile(rules, path);
+    }
+
+    /**
+     * Validates the rules and builds the evaluator.
+     *
+     * @param source where the rules came from, for messages.
+     * @throws IllegalArgumentException if a rule is unknown or malformed.
+     */
+    public static Tariff compile(Properties rules, String source) {
+        String name = rules.getProperty("name", new File(source).getName()).trim();
+        double baseRate = 1.0;
+        int[] tierStarts = {0};
+        double[] tierPercents = {1.0};
+        double[] bandFloors = {};
+        double[] bandFactors = {};
+        TreeMap<String, Double> discounts = new TreeMap<>();
+        double min = Double.NEGATIVE_INFINITY;
+        double max = Double.POSITIVE_INFINITY;
+
+        for (String key : rules.stringPropertyNames()) {
+            String value = rules.getProperty(key).trim();
+            try {
+                if (key.equals("name")) {
+                    continue;
+                } else if (key.equals("base.rate")) {
+                    baseRate = nonNegative(Double.parseDouble(value));
+                } else if (key.equals("day.surcharge")) {
+                    List<double[]> tiers = steps(value);
+                    tierStarts = new int[tiers.size()];
+                    tierPercents = new double[tiers.size()];
+                    for (int i = 0; i < tiers.size(); i++) {
+                        if (tiers.get(i)[0] > MAX_TIER_DAY) {
+                            throw new IllegalArgumentException("tiers must start by day " + MAX_TIER_DAY);
+                        }
+                        tierStarts[i] = (int) tiers.get(i)[0];
+                        tierPercents[i] = tiers.get(i)[1];
+                        if (tierStarts[i] != tiers.get(i)[0]) throw new IllegalArgumentException("tier days must be whole");
+                    }
+                    if (tierStarts[0] != 0) throw new IllegalArgumentException("first tier must start at day 0");
+                } else if (key.equals("weight.bands")) {
+                    List<double[]> bands = steps(value);
+                    bandFloors = new double[bands.size()];
+                    bandFactors = new double[bands.size()];
+                    for (int i = 0; i < bands.size(); i++) {
+                        bandFloors[i] = bands.get(i)[0];
+                        bandFactors[i] = bands.get(i)[1] / 100.0;
+                    }
+                } else if (key.startsWith("discount.") && key.length() > "discount.".length()) {
+                    double percent = percent(value);
+                    if (percent > 100) throw new IllegalArgumentException("more than 100%");
+                    discounts.put(key.substring("discount.".length()), 1.0 - percent / 100.0);
+                } else if (key.equals("fee.min")) {
+                    min = nonNegative(Double.parseDouble(value));
+                } else if (key.equals("fee.max")) {
+                    max = nonNegative(Double.parseDouble(value));
+                } else {
+                    throw new IllegalArgumentException("unknown rule");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid tariff rule '" + key + " = " + value + "' in "
+                        + source + ": " + e.getMessage());
+            }
+        }
+        if (min > max) {
+            throw new IllegalArgumentException("fee.min is above fee.max in " + source);
+        }
+
+        List<String> ordered = new ArrayList<>(discounts.keySet());
+        ordered.sort(Comparator.comparingInt(String::length).reversed());
+        String[] prefixes = ordered.toArray(new String[0]);
+        double[] prefixFactors = new double[prefixes.length];
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixFactors[i] = discounts.get(prefixes[i]);
+        }
+        return new Tariff(name, source, baseRate, tierStarts, tierPercents, bandFloors, bandFactors,
+                prefixes, prefixFactors, min, max);
+    }
+
+    /** "from:percent%, from:percent%, ..." or a single "percent%" (from 0), ascending. */
+    private static List<double[]> steps(String value) {
+        List<double[]> steps = new ArrayList<>();
+        for (String part : value.split(",")) {
+            part = part.trim();
+            int colon = part.indexOf(':');
+            double from = colon < 0 ? 0 : nonNegative(Double.parseDouble(part.substring(0, colon).trim()));
+            double percent = percent(part.substring(colon + 1));
+            if (!steps.isEmpty() && from <= steps.get(steps.size() - 1)[0]) {
+                throw new IllegalArgumentException("steps must be in ascending order");
+            }
+            steps.add(new double[]{from, percent});
+        }
+        return steps;
+    }
+
+    private static double percent(String value) {
+        value = value.trim();
+        if (!value.endsWith("%")) throw new IllegalArgumentException("expected a percentage such as 20%");
+        return nonNegative(Double.parseDouble(value.substring(0, value.length() - 1).trim()));
+    }
+
+    private static double nonNegative(double value) {
+        if (!(value >= 0) || Double.isInfinite(value)) throw new IllegalArgumentException("must be a non-negative number");
+        return value;
+    }
+
+    // --- evaluation ---
+
+    public double fee(Parcel p) {
+        return fee(p.getParcelID(), p.getLength(), p.getWidth(), p.getHeight(), p.getWeight(), p.getDaysInDepot());
+    }
+
+    /**
+     * The fee the parcel will owe (or owed) on the given epoch day.
+     */
+    public double fee(Parcel p, int asOfDay) {
+        return fee(p.getParcelID(), p.getLength(), p.getWidth(), p.getHeight(), p.getWeight(),
+                p.getDaysInDepot(asOfDay));
+    }
+
+    public double fee(String parcelID, double length, double width, double height, double weight, int days) {
+        if (straightLine) {
+            double fee = (length * width * height) * weight * baseRate * (1.0 + (days * firstPercent) / 100.0);
+            return parcelID.startsWith("C") ? fee * cFactor : fee;
+        }
+        double fee = (length * width * height) * weight * baseRate * (1.0 + dayPercent(days) / 100.0);
+        fee *= bandFactor(weight) * prefixFactor(parcelID);
+        return Math.min(max, Math.max(min, fee));
+    }
+
+    /**
+     * Whether {@link #fees} can price parcels from their encoded ID keys,
+     * which only tell whether an ID starts with 'C'. False if there are
+     * discounts for other prefixes.
+     */
+    public boolean worksOnKeys() {
+        return prefixes.length == 0 || (prefixes.length == 1 && prefixes[0].equals("C"));
+    }
+
+    /**
+     * Column-wise fees for rows [from, to) as of epoch day {@code asOfDay},
+     * written to {@code fees[feeOffset..]}. Only for tariffs that {@link #worksOnKeys()}.
+     * Straight-line tariffs use {@link VectorFees} when the Vector API is
+     * available; tiered ones, whose table and band lookups do not vectorize,
+     * always run the scalar loop.
+     */
+    public void fees(long[] keys, double[] lengths, double[] widths, double[] heights, double[] weights,
+                     int[] arrivalDays, int asOfDay, int from, int to, double[] fees, int feeOffset) {
+        if (straightLine) {
+            double rate = baseRate;
+            double percent = firstPercent;
+            double c = cFactor;
+            int start = from;
+            if (VECTOR_FEES && to - from >= VectorFees.lanes()) {
+                start = VectorFees.straightLine(keys, lengths, widths, heights, weights, arrivalDays, asOfDay,
+                        from, to, fees, feeOffset, rate, percent, c);
+            }
+            for (int i = start, o = feeOffset + (start - from); i < to; i++, o++) {
+                double fee = (lengths[i] * widths[i] * heights[i]) * weights[i] * rate
+                        * (1.0 + ((asOfDay - arrivalDays[i]) * percent) / 100.0);
+                fees[o] = ParcelIds.isCPrefix(keys[i]) ? fee * c : fee;
+            }
+            return;
+        }
+        double c = prefixes.length == 1 ? prefixFactors[0] : 1.0;
+        for (int i = from, o = feeOffset; i < to; i++, o++) {
+            double fee = (lengths[i] * widths[i] * heights[i]) * weights[i] * baseRate
+                    * (1.0 + dayPercent(asOfDay - arrivalDays[i]) / 100.0);
+            fee *= bandFactor(weights[i]) * (ParcelIds.isCPrefix(keys[i]) ? c : 1.0);
+            fees[o] = Math.min(max, Math.max(min, fee));
+        }
+    }
+
+    /**
+     * The fee broken into its steps, for tracing.
+     */
+    public String explain(Parcel p) {
+        double base = (p.getLength() * p.getWidth() * p.getHeight()) * p.getWeight() * baseRate;
+        double percent = straightLine ? p.getDaysInDepot() * firstPercent : dayPercent(p.getDaysInDepot());
+        return String.format(Locale.ROOT,
+                "Parcel %s under tariff '%s': base %.4f, day surcharge %.2f%%, weight band x%.4f, prefix x%.4f, fee %.4f",
+                p.getParcelID(), name, base, percent, bandFactor(p.getWeight()), prefixFactor(p.getParcelID()), fee(p));
+    }
+
+    private double dayPercent(int days) {
+        if (days >= lastTierStart) {
+            return percentAtLastTier + (days - lastTierStart) * lastPercent;
+        }
+        return days <= 0 ? days * firstPercent : percentTable[days];
+    }
+
+    private double bandFactor(double weight) {
+        int i = Arrays.binarySearch(bandFloors, weight);
+        if (i < 0) i = -i - 2;
+        return i < 0 ? 1.0 : bandFactors[i];
+    }
+
+    private double prefixFactor(String parcelID) {
+        for (int i = 0; i < prefixes.length; i++) {
+            if (parcelID.startsWith(prefixes[i])) return prefixFactors[i];
+        }
+        return 1.0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return "Tariff '" + name + "' (" + source + ")";
+    }
+}
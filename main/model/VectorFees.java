@@ -0,0 +1,64 @@
+package model;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The straight-line fee kernel of {@link Tariff#fees} on the incubator
+ * Vector API. Each lane does the same IEEE operations in the same order as
+ * the scalar loop, so the fees are bit-identical.
+ * <p>
+ * The module is only resolved when the JVM runs with {@code --add-modules
+ * jdk.incubator.vector}; without it, loading this class fails with
+ * {@link NoClassDefFoundError}, so callers check {@link Tariff#VECTOR_FEES}
+ * first.
+ */
+final class VectorFees {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    // as many lanes as DOUBLES, for the arrival days and the keys
+    private static final VectorSpecies<Integer> INTS =
+            IntVector.SPECIES_PREFERRED.withShape(VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED.withShape(DOUBLES.vectorShape());
+
+    private VectorFees() {
+    }
+
+    /** Lanes per step; shorter ranges are not worth vectorizing. */
+    static int lanes() {
+        return DOUBLES.length();
+    }
+
+    /**
+     * {@code volume * weight * rate * (1 + days * percent / 100)}, times
+     * {@code c} for 'C' keys, for rows [from, to) into {@code fees[feeOffset..]}.
+     * Returns the first row not done (the tail shorter than a vector).
+     */
+    static int straightLine(long[] keys, double[] lengths, double[] widths, double[] heights, double[] weights,
+                            int[] arrivalDays, int asOfDay, int from, int to, double[] fees, int feeOffset,
+                            double rate, double percent, double c) {
+        int n = DOUBLES.length();
+        int i = from;
+        for (int o = feeOffset; i <= to - n; i += n, o += n) {
+            DoubleVector days = (DoubleVector) IntVector.broadcast(INTS, asOfDay)
+                    .sub(IntVector.fromArray(INTS, arrivalDays, i))
+                    .convertShape(VectorOperators.I2D, DOUBLES, 0);
+            DoubleVector fee = DoubleVector.fromArray(DOUBLES, lengths, i)
+                    .mul(DoubleVector.fromArray(DOUBLES, widths, i))
+                    .mul(DoubleVector.fromArray(DOUBLES, heights, i))
+                    .mul(DoubleVector.fromArray(DOUBLES, weights, i))
+                    .mul(rate)
+                    .mul(days.mul(percent).div(100.0).add(1.0));
+            VectorMask<Double> discounted = LongVector.fromArray(LONGS, keys, i)
+                    .and(ParcelIds.PREFIX_C)
+                    .compare(VectorOperators.NE, 0)
+                    .cast(DOUBLES);
+            fee.blend(fee.mul(c), discounted).intoArray(fees, o);
+        }
+        return i;
+    }
+}
@@ -1,9 +1,14 @@
 package model;
 
+import java.util.List;
+
 /**
  * Worker class calculates fees and may perform additional processing steps.
  */
 public class Worker {
+    private static final int BULK_SLICE_ROWS = 4096;
+
+    private boolean traceEnabled;
 
     /**
      * Processes a customer's parcel (placeholder for extra logic if needed).
@@ -12,24 +17,121 @@ public class Worker {
         // Additional processing can be placed here if required
     }
 
+    public boolean isTraceEnabled() {
+        return traceEnabled;
+    }
+
+    /**
+     * Turns printing of the fee breakdown in {@link #calculateFee(Parcel)} on or off (off by default).
+     */
+    public void setTraceEnabled(boolean traceEnabled) {
+        this.traceEnabled = traceEnabled;
+    }
+
     /**
-     * Fee calculation rules:
+     * Calculates the fee under the tariff in force ({@link Tariff#current()}).
+     * The default tariff keeps the original rules:
      * 1) baseFee = (L * W * H) * weight
      * 2) daysInDepot => +1%/day => finalFee = baseFee * (1 + days/100)
      * 3) If ID starts with 'C' => 20% discount => finalFee *= 0.8
      */
     public double calculateFee(Parcel p) {
-        double baseFee = (p.getLength() * p.getWidth() * p.getHeight()) * p.getWeight();
-        System.out.println("Base Fee for Parcel " + p.getParcelID() + ": " + baseFee);
+        Tariff tariff = Tariff.current();
+        if (traceEnabled) {
+            System.out.println(tariff.explain(p));
+        }
+        return tariff.fee(p);
+    }
 
-        double dayFactor = 1.0 + (p.getDaysInDepot() / 100.0);
-        double dayAdjustedFee = baseFee * dayFactor;
-        System.out.println("Day Adjusted Fee for Parcel " + p.getParcelID() + ": " + dayAdjustedFee);
+    /**
+     * Calculates the fee as it stands on the given epoch day (see {@link DepotClock}),
+     * e.g. to quote what a parcel will owe next week.
+     */
+    public double calculateFee(Parcel p, int asOfDay) {
+        return Tariff.current().fee(p, asOfDay);
+    }
 
-        if (p.getParcelID().startsWith("C")) {
-            dayAdjustedFee *= 0.8;
-            System.out.println("Applied 20% discount for Parcel " + p.getParcelID() + ": " + dayAdjustedFee);
+    /**
+     * Calculates the fee of every parcel in the list into {@code fees[0..size)}.
+     * Same tariff and results as {@link #calculateFee(Parcel)}, without tracing.
+     */
+    public static void calculateFees(List<Parcel> parcels, double[] fees) {
+        Tariff tariff = Tariff.current();
+        for (int i = 0; i < parcels.size(); i++) {
+            fees[i] = tariff.fee(parcels.get(i));
+        }
+    }
+
+    /**
+     * Column-wise fee calculation for rows [from, to) as of epoch day
+     * {@code asOfDay}, written to {@code fees[feeOffset..]}, under the
+     * tariff in force. Days in depot are {@code asOfDay - arrivalDays[i]}. Discounts come
+     * from the encoded ID keys (see {@link ParcelIds#isCPrefix(long)}), so
+     * only a 'C' prefix rule applies; see {@link Tariff#worksOnKeys()}.
+     * <p>
+     * For tariffs like the default the loop is branch-free, uses no objects
+     * and evaluates in the same order as {@link #calculateFee(Parcel)}, so it
+     * produces bit-identical results and is simple enough for the JIT to vectorize.
+     */
+    public static void calculateFees(long[] keys, double[] lengths, double[] widths, double[] heights,
+                                     double[] weights, int[] arrivalDays, int asOfDay, int from, int to,
+                                     double[] fees, int feeOffset) {
+        Tariff.current().fees(keys, lengths, widths, heights, weights, arrivalDays, asOfDay, from, to,
+                fees, feeOffset);
+    }
+
+    /**
+     * Calculates fees for parcel rows [fromRow, toRow) of the map as of
+     * today, straight from its columns (or parcel by parcel, if the tariff
+     * has discounts for prefixes the encoded keys do not record).
+     *
+     * @return the number of fees written to {@code fees}.
+     */
+    public static int calculateFees(ParcelMap parcelMap, int fromRow, int toRow, double[] fees) {
+        return calculateFees(parcelMap, fromRow, toRow, fees, DepotClock.getInstance().today());
+    }
+
+    /**
+     * As {@link #calculateFees(ParcelMap, int, int, double[])}, as of the given epoch day.
+     */
+    public static int calculateFees(ParcelMap parcelMap, int fromRow, int toRow, double[] fees, int asOfDay) {
+        Tariff tariff = Tariff.current();
+        if (!tariff.worksOnKeys()) {
+            int n = 0;
+            Parcel p;
+            for (int row = fromRow; row < toRow && (p = parcelMap.getParcelAt(row)) != null; row++) {
+                fees[n++] = tariff.fee(p, asOfDay);
+            }
+            return n;
+        }
+        return parcelMap.readColumns(fromRow, toRow,
+                (keys, lengths, widths, heights, weights, arrivalDays, from, to) ->
+                        tariff.fees(keys, lengths, widths, heights, weights, arrivalDays, asOfDay, from, to, fees, 0));
+    }
+
+    /**
+     * Sums the fees of every parcel currently in the depot, for revenue
+     * projection. Works through the map in fixed-size slices.
+     */
+    public static double projectRevenue(ParcelMap parcelMap) {
+        return projectRevenue(parcelMap, DepotClock.getInstance().today());
+    }
+
+    /**
+     * Sums what the parcels now in the depot would owe on the given epoch
+     * day, e.g. a week ahead.
+     */
+    public static double projectRevenue(ParcelMap parcelMap, int asOfDay) {
+        double[] fees = new double[BULK_SLICE_ROWS];
+        double total = 0;
+        int row = 0;
+        int n;
+        while ((n = calculateFees(parcelMap, row, row + BULK_SLICE_ROWS, fees, asOfDay)) > 0) {
+            for (int i = 0; i < n; i++) {
+                total += fees[i];
+            }
+            row += n;
         }
-        return dayAdjustedFee;
+        return total;
     }
 }
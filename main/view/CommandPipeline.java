@@ -0,0 +1,183 @@
+package view;
+
+import model.DepotMetrics;
+import model.Log;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs GUI commands (anything that changes or waits on the manager: report
+ * writes, journal syncs, logging) off the event dispatch thread.
+ * <p>
+ * Commands run one at a time on a single "depot-commands" thread, in the
+ * order they were submitted, so clicking a button several times queues that
+ * many commands and input stays responsive meanwhile. Each command's result
+ * or failure is handed to its callback on the EDT. Completed commands ask
+ * for a view refresh; requests are coalesced so the views are refreshed at
+ * most once per {@link #FRAME_MILLIS}, however many commands finish.
+ */
+public class CommandPipeline implements AutoCloseable {
+    /** Minimum time between two view refreshes. */
+    public static final int FRAME_MILLIS = 16;
+
+    private final ExecutorService executor;
+    private final Runnable refresh;
+    private final Timer refreshTimer;
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile IntConsumer pendingListener = n -> { };
+    private volatile String running;
+
+    /** A queued command; named so that {@link #close(long)} can report it. */
+    private static final class Command implements Runnable {
+        final String name;
+        final Runnable body;
+
+        Command(String name, Runnable body) {
+            this.name = name;
+            this.body = body;
+        }
+
+        @Override
+        public void run() {
+            body.run();
+        }
+    }
+
+    /**
+     * @param refresh redraws the views; run on the EDT.
+     */
+    public CommandPipeline(Runnable refresh) {
+        this.refresh = refresh;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "depot-commands");
+            t.setDaemon(true);
+            return t;
+        });
+        this.refreshTimer = new Timer(FRAME_MILLIS, e -> {
+            refreshPending.set(false);
+            this.refresh.run();
+        });
+        refreshTimer.setRepeats(false);
+    }
+
+    /**
+     * Called on the EDT with the number of commands queued or running,
+     * whenever that changes.
+     */
+    public void setPendingListener(IntConsumer listener) {
+        pendingListener = listener;
+    }
+
+    /** Commands queued or running. */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Queues a command. When it finishes, {@code onDone} gets its result
+     * (or {@code onError} what it threw) on the EDT, and a refresh is
+     * requested. Either callback may be null.
+     */
+    public <T> void submit(String name, Callable<T> command, Consumer<? super T> onDone,
+                           Consumer<? super Exception> onError) {
+        long queued = System.nanoTime();
+        firePending(pending.incrementAndGet());
+        executor.execute(new Command(name, () -> {
+            T result = null;
+            Exception failure = null;
+            running = name;
+            try {
+                result = command.call();
+            } catch (Exception e) {
+                failure = e;
+                Log.getInstance().log(Log.Level.ERROR, "GUI command {} failed: {}", name, e.toString());
+            } finally {
+                running = null;
+            }
+            DepotMetrics.getInstance().recordSince(DepotMetrics.Op.GUI_COMMAND, queued);
+            T r = result;
+            Exception f = failure;
+            int left = pending.decrementAndGet();
+            SwingUtilities.invokeLater(() -> {
+                pendingListener.accept(left);
+                if (f == null) {
+                    if (onDone != null) onDone.accept(r);
+                } else if (onError != null) {
+                    onError.accept(f);
+                }
+            });
+            requestRefresh();
+        }));
+    }
+
+    /**
+     * Queues a command with no result; see {@link #submit(String, Callable, Consumer, Consumer)}.
+     */
+    public void submit(String name, Runnable command, Runnable onDone, Consumer<? super Exception> onError) {
+        submit(name, () -> {
+            command.run();
+            return null;
+        }, onDone == null ? null : r -> onDone.run(), onError);
+    }
+
+    /**
+     * Asks for the views to be refreshed. Safe from any thread; requests
+     * made before the pending refresh runs are folded into it.
+     */
+    public void requestRefresh() {
+        if (refreshPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(refreshTimer::start);
+        }
+    }
+
+    private void firePending(int n) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            pendingListener.accept(n);
+        } else {
+            SwingUtilities.invokeLater(() -> pendingListener.accept(n));
+        }
+    }
+
+    /**
+     * Stops taking commands and waits up to {@code timeoutMillis} for the
+     * queued ones to finish. If they do not, the running command is
+     * interrupted, the rest are dropped, and both are logged as unfinished.
+     *
+     * @return true if they all finished.
+     */
+    public boolean close(long timeoutMillis) throws InterruptedException {
+        executor.shutdown();
+        if (executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            return true;
+        }
+        String current = running;
+        List<String> dropped = new ArrayList<>();
+        for (Runnable r : executor.shutdownNow()) {
+            dropped.add(((Command) r).name);
+        }
+        Log.getInstance().log(Log.Level.WARN, "GUI commands unfinished after {} ms: running {}, dropped {} {}",
+                timeoutMillis, current == null ? "none" : current, dropped.size(), dropped);
+        return false;
+    }
+
+    /** Stops taking commands and waits for the queued ones to finish. */
+    @Override
+    public void close() {
+        try {
+            close(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package view;
+
+import model.Customer;
+import model.QueueOfCustomers;
+
+/**
+ * Customer queue rows, head of the queue first.
+ */
+public class CustomerTableModel extends LiveTableModel {
+    private static final long serialVersionUID = 1L;
+
+    private final QueueOfCustomers queue;
+
+    public CustomerTableModel(QueueOfCustomers queue) {
+        super(new String[]{"Seq", "Name", "Parcel ID"},
+              new Class<?>[]{Integer.class, String.class, String.class});
+        this.queue = queue;
+        start(queue.addListener(this));
+    }
+
+    @Override
+    protected int liveRowCount() {
+        return queue.size();
+    }
+
+    @Override
+    protected Object valueAt(int row, int column) {
+        Customer c = queue.get(row);
+        if (c == null) return null;
+        switch (column) {
+            case 0: return c.getSeqNumber();
+            case 1: return c.getName();
+            default: return c.getDesiredParcelID();
+        }
+    }
+}
@@ -1,19 +1,30 @@
 package view;
 
+import model.CustomerScheduler;
+import model.DepotMetrics;
 import model.Manager;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.ActionListener;
+import java.util.regex.Pattern;
 
 /**
  * Swing-based GUI with:
  *  - Customer tab (Collect Parcel)
- *  - Worker tab (Add Customer, Add Parcel, Process Parcel)
- *  - Text areas for Customer List, Parcel List, and Processed List
+ *  - Worker tab (Add Customer, Add Parcel, Process Parcel, scheduling policy)
+ *  - Tables for Customer List, Parcel List, and Processed List, updated
+ *    row by row from the manager's stores (see {@link LiveTableModel}),
+ *    each sortable by column and filterable by text
+ *  - A status bar showing load progress, command results and how many
+ *    commands are queued; the action buttons stay disabled while data is
+ *    still loading (see {@link #showLoading})
  */
 public class Gui extends JFrame {
     private final Manager manager;
@@ -22,10 +33,16 @@ public class Gui extends JFrame {
     private final JButton btnAddCustomer;      // Worker tab
     private final JButton btnAddParcel;        // Worker tab
     private final JButton btnProcessParcel;    // Worker tab
+    private final JComboBox<String> schedulerChoice; // Worker tab
 
-    private final JTextArea txtCustomerList;
-    private final JTextArea txtParcelList;
-    private final JTextArea txtProcessedList;
+    private final CustomerTableModel customerModel;
+    private final ParcelTableModel parcelModel;
+    private final ProcessedTableModel processedModel;
+
+    private final JProgressBar loadProgress;
+    private final JLabel statusLabel;
+    private final JLabel pendingLabel;
+    private Runnable firstPaintAction;
 
     private final Color primaryColor = new Color(103, 63, 212);
     private final Color accentColor  = new Color(63, 202, 212);
@@ -73,34 +90,25 @@ public class Gui extends JFrame {
         workerButtonPanel.add(btnAddParcel);
         workerButtonPanel.add(btnProcessParcel);
 
+        schedulerChoice = new JComboBox<>(CustomerScheduler.names());
+        schedulerChoice.setSelectedItem(manager.getScheduler().getName());
+        schedulerChoice.setToolTipText("Which customer Process Parcel serves next");
+        workerButtonPanel.add(new JLabel("Scheduling:"));
+        workerButtonPanel.add(schedulerChoice);
+
         workerTab.add(workerButtonPanel, BorderLayout.NORTH);
 
-        // Text areas
+        // Tables
         JPanel centerPanel = new JPanel(new GridLayout(1, 3, 10, 10));
 
-        // Customer List
-        txtCustomerList = new JTextArea();
-        txtCustomerList.setEditable(false);
-        JScrollPane scCustomer = new JScrollPane(txtCustomerList);
-        JPanel panelCustomer = new JPanel(new BorderLayout(5, 5));
-        panelCustomer.add(new JLabel("Customer List", SwingConstants.CENTER), BorderLayout.NORTH);
-        panelCustomer.add(scCustomer, BorderLayout.CENTER);
-
-        // Parcel List
-        txtParcelList = new JTextArea();
-        txtParcelList.setEditable(false);
-        JScrollPane scParcel = new JScrollPane(txtParcelList);
-        JPanel panelParcel = new JPanel(new BorderLayout(5, 5));
-        panelParcel.add(new JLabel("Parcel List", SwingConstants.CENTER), BorderLayout.NORTH);
-        panelParcel.add(scParcel, BorderLayout.CENTER);
-
-        // Processed List
-        txtProcessedList = new JTextArea();
-        txtProcessedList.setEditable(false);
-        JScrollPane scProcessed = new JScrollPane(txtProcessedList);
-        JPanel panelProcessed = new JPanel(new BorderLayout(5, 5));
-        panelProcessed.add(new JLabel("Processed List", SwingConstants.CENTER), BorderLayout.NORTH);
-        panelProcessed.add(scProcessed, BorderLayout.CENTER);
+        customerModel = new CustomerTableModel(manager.getCustomerQueue());
+        JPanel panelCustomer = createTablePanel("Customer List", customerModel);
+
+        parcelModel = new ParcelTableModel(manager.getParcelMap());
+        JPanel panelParcel = createTablePanel("Parcel List", parcelModel);
+
+        processedModel = new ProcessedTableModel(manager);
+        JPanel panelProcessed = createTablePanel("Processed List", processedModel);
 
         centerPanel.add(panelCustomer);
         centerPanel.add(panelParcel);
@@ -114,12 +122,112 @@ public class Gui extends JFrame {
         tabbedPane.setForeground(Color.WHITE);
 
         add(tabbedPane, BorderLayout.CENTER);
+
+        // Status bar
+        JPanel statusBar = new JPanel(new BorderLayout(10, 0));
+        statusBar.setBorder(new EmptyBorder(0, 10, 5, 10));
+        statusLabel = new JLabel(" ");
+        pendingLabel = new JLabel(" ");
+        loadProgress = new JProgressBar(0, 100);
+        loadProgress.setStringPainted(true);
+        loadProgress.setVisible(false);
+        statusBar.add(pendingLabel, BorderLayout.WEST);
+        statusBar.add(statusLabel, BorderLayout.CENTER);
+        statusBar.add(loadProgress, BorderLayout.EAST);
+        add(statusBar, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Shows that data is still loading and disables the actions that need it.
+     * Must be called on the EDT.
+     *
+     * @param percent 0..100, or negative if the amount left is unknown.
+     */
+    public void showLoading(String message, int percent) {
+        setActionsEnabled(false);
+        statusLabel.setText(message);
+        loadProgress.setVisible(true);
+        loadProgress.setIndeterminate(percent < 0);
+        if (percent >= 0) {
+            loadProgress.setValue(percent);
+        }
+        loadProgress.setString(percent < 0 ? "" : percent + "%");
+    }
+
+    /**
+     * Hides the progress bar, shows the message, selects the scheduler the
+     * load attached and enables the actions.
+     * Must be called on the EDT.
+     */
+    public void loadingFinished(String message) {
+        loadProgress.setVisible(false);
+        statusLabel.setText(message);
+        schedulerChoice.setSelectedItem(manager.getScheduler().getName());
+        setActionsEnabled(true);
+    }
+
+    /**
+     * Hides the progress bar and shows the message, leaving the actions
+     * disabled: the depot could not be loaded and must not be changed.
+     * Must be called on the EDT.
+     */
+    public void loadingFailed(String message) {
+        loadProgress.setVisible(false);
+        statusLabel.setText(message);
+    }
+
+    private void setActionsEnabled(boolean enabled) {
+        btnCollectParcel.setEnabled(enabled);
+        btnAddCustomer.setEnabled(enabled);
+        btnAddParcel.setEnabled(enabled);
+        btnProcessParcel.setEnabled(enabled);
+        schedulerChoice.setEnabled(enabled);
+    }
+
+    /**
+     * Shows a message in the status bar, without interrupting the user.
+     * Must be called on the EDT.
+     */
+    public void showStatus(String message) {
+        statusLabel.setText(message);
     }
 
+    /**
+     * Shows how many commands are waiting to run (nothing when none).
+     * Must be called on the EDT.
+     */
+    public void showPendingCommands(int pending) {
+        pendingLabel.setText(pending == 0 ? " " : pending + " queued");
+    }
+
+    /**
+     * Runs the action on the EDT right after the window is first painted,
+     * e.g. to measure time to first frame. Call before showing the window.
+     */
+    public void whenFirstPainted(Runnable action) {
+        firstPaintAction = action;
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (firstPaintAction != null) {
+            Runnable action = firstPaintAction;
+            firstPaintAction = null;
+            action.run();
+        }
+    }
+
+    /**
+     * The tables update themselves as rows change; this only re-checks that
+     * their row counts still match the stores. Must be called on the EDT.
+     */
     public void refreshViews() {
-        txtCustomerList.setText(manager.getCustomerListAsString());
-        txtParcelList.setText(manager.getParcelListAsString());
-        txtProcessedList.setText(manager.getProcessedListAsString());
+        long start = System.nanoTime();
+        customerModel.resync();
+        parcelModel.resync();
+        processedModel.resync();
+        DepotMetrics.getInstance().recordSince(DepotMetrics.Op.GUI_REFRESH, start);
     }
 
     // Button Listener Hooks
@@ -127,6 +235,11 @@ public class Gui extends JFrame {
     public void addAddCustomerListener(ActionListener listener)   { btnAddCustomer.addActionListener(listener); }
     public void addAddParcelListener(ActionListener listener)     { btnAddParcel.addActionListener(listener); }
     public void addProcessParcelListener(ActionListener listener) { btnProcessParcel.addActionListener(listener); }
+    public void addSchedulerListener(ActionListener listener)     { schedulerChoice.addActionListener(listener); }
+
+    public String getSelectedScheduler() {
+        return (String) schedulerChoice.getSelectedItem();
+    }
 
     // Utility Prompts
     public String promptCustomerName() {
@@ -157,6 +270,42 @@ public class Gui extends JFrame {
         JOptionPane.showMessageDialog(this, msg, "Error", JOptionPane.ERROR_MESSAGE);
     }
 
+    // Tables
+
+    /**
+     * Builds a titled panel with a sortable table and a filter box. Sorting and
+     * filtering work on row indexes only; the rows themselves stay in the store.
+     */
+    private JPanel createTablePanel(String title, LiveTableModel model) {
+        JTable table = new JTable(model);
+        table.setFillsViewportHeight(true);
+        TableRowSorter<LiveTableModel> sorter = new TableRowSorter<>(model);
+        table.setRowSorter(sorter);
+
+        JTextField filter = new JTextField();
+        filter.setToolTipText("Filter " + title.toLowerCase());
+        filter.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e)  { applyFilter(sorter, filter.getText()); }
+            @Override public void removeUpdate(DocumentEvent e)  { applyFilter(sorter, filter.getText()); }
+            @Override public void changedUpdate(DocumentEvent e) { applyFilter(sorter, filter.getText()); }
+        });
+
+        JPanel header = new JPanel(new BorderLayout(5, 5));
+        header.add(new JLabel(title, SwingConstants.CENTER), BorderLayout.NORTH);
+        header.add(filter, BorderLayout.SOUTH);
+
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.add(header, BorderLayout.NORTH);
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+        return panel;
+    }
+
+    private static void applyFilter(TableRowSorter<LiveTableModel> sorter, String text) {
+        String trimmed = text.trim();
+        sorter.setRowFilter(trimmed.isEmpty() ? null
+                : RowFilter.regexFilter("(?i)" + Pattern.quote(trimmed)));
+    }
+
     // Private Styling
     private void styleButton(JButton button) {
         button.setBackground(primaryColor);
@@ -0,0 +1,146 @@
+package view;
+
+import model.RowListener;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Table model that reads rows straight from a depot store and applies the
+ * store's row events incrementally, instead of rebuilding the whole table.
+ * <p>
+ * Store events may arrive on any thread; they are replayed on the EDT in
+ * order. The row count the JTable sees only changes as those events are
+ * replayed, so it always matches the inserts/deletes the table was told
+ * about, even while the store is already further ahead.
+ * <p>
+ * Events are numbered as the store fires them (under its lock). A
+ * {@link #resync()} reads the store's size at a known event number, and
+ * events up to that number are dropped when they replay, since the new row
+ * count already includes them.
+ */
+public abstract class LiveTableModel extends AbstractTableModel implements RowListener {
+    private static final int RESYNC_ATTEMPTS = 8;
+    private static final long serialVersionUID = 1L;
+
+    private final String[] columnNames;
+    private final Class<?>[] columnClasses;
+    private final AtomicLong fired = new AtomicLong(); // events numbered so far
+    private long covered; // EDT only: events up to this number are in rowCount
+    private int rowCount; // EDT only
+
+    protected LiveTableModel(String[] columnNames, Class<?>[] columnClasses) {
+        this.columnNames = columnNames;
+        this.columnClasses = columnClasses;
+    }
+
+    /**
+     * Sets the row count to the store's size at the time this model was
+     * registered as its listener. Call once, before the model is shown.
+     */
+    protected void start(int initialRows) {
+        rowCount = initialRows;
+    }
+
+    /** Current number of rows in the store. */
+    protected abstract int liveRowCount();
+
+    /** Reads one cell from the store; may return null if the row is gone. */
+    protected abstract Object valueAt(int row, int column);
+
+    /** Called on the EDT before any row event is applied, e.g. to drop caches. */
+    protected void rowsChanged() {
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return columnClasses[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return valueAt(row, column);
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int lastRow) {
+        long seq = fired.incrementAndGet();
+        SwingUtilities.invokeLater(() -> {
+            if (seq <= covered) return;
+            rowsChanged();
+            if (firstRow > rowCount) {
+                resync();
+                return;
+            }
+            rowCount += lastRow - firstRow + 1;
+            fireTableRowsInserted(firstRow, lastRow);
+        });
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int lastRow) {
+        long seq = fired.incrementAndGet();
+        SwingUtilities.invokeLater(() -> {
+            if (seq <= covered) return;
+            rowsChanged();
+            if (lastRow >= rowCount) {
+                resync();
+                return;
+            }
+            rowCount -= lastRow - firstRow + 1;
+            fireTableRowsDeleted(firstRow, lastRow);
+        });
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int lastRow) {
+        SwingUtilities.invokeLater(() -> {
+            rowsChanged();
+            if (firstRow < rowCount) {
+                fireTableRowsUpdated(firstRow, Math.min(lastRow, rowCount - 1));
+            }
+        });
+    }
+
+    /**
+     * Brings the row count up to the store's current size, dropping the
+     * insert and delete events that size already includes. Must be called
+     * on the EDT.
+     * <p>
+     * The size is taken between two reads of the event counter. Events are
+     * numbered under the store's lock, and the size is read under it too,
+     * so if the counter did not move, the size covers exactly the events
+     * numbered so far. If the store keeps changing, the resync is skipped
+     * and the queued events keep the count right.
+     */
+    public void resync() {
+        rowsChanged();
+        for (int attempt = 0; attempt < RESYNC_ATTEMPTS; attempt++) {
+            long before = fired.get();
+            int live = liveRowCount();
+            if (fired.get() != before) continue;
+            covered = Math.max(covered, before);
+            if (live != rowCount) {
+                rowCount = live;
+                fireTableDataChanged();
+            }
+            return;
+        }
+    }
+}
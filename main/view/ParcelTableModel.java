@@ -0,0 +1,53 @@
+package view;
+
+import model.Parcel;
+import model.ParcelMap;
+
+/**
+ * Parcel rows, read from the parcel map's columns one visible row at a time.
+ */
+public class ParcelTableModel extends LiveTableModel {
+    private static final long serialVersionUID = 1L;
+
+    private final ParcelMap parcelMap;
+
+    // The last row read, since a table asks for every column of a row in turn.
+    private int cachedRow = -1;
+    private Parcel cachedParcel;
+
+    public ParcelTableModel(ParcelMap parcelMap) {
+        super(new String[]{"Parcel ID", "Length", "Width", "Height", "Weight", "Days"},
+              new Class<?>[]{String.class, Double.class, Double.class, Double.class, Double.class, Integer.class});
+        this.parcelMap = parcelMap;
+        start(parcelMap.addListener(this));
+    }
+
+    @Override
+    protected int liveRowCount() {
+        return parcelMap.size();
+    }
+
+    @Override
+    protected void rowsChanged() {
+        cachedRow = -1;
+        cachedParcel = null;
+    }
+
+    @Override
+    protected Object valueAt(int row, int column) {
+        if (row != cachedRow) {
+            cachedParcel = parcelMap.getParcelAt(row);
+            cachedRow = row;
+        }
+        Parcel p = cachedParcel;
+        if (p == null) return null;
+        switch (column) {
+            case 0: return p.getParcelID();
+            case 1: return p.getLength();
+            case 2: return p.getWidth();
+            case 3: return p.getHeight();
+            case 4: return p.getWeight();
+            default: return p.getDaysInDepot();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package view;
+
+import model.Manager;
+import model.ProcessedHistory;
+
+/**
+ * Processed and collected parcel records, oldest first. Records are
+ * formatted from the history's columns only as the table asks for them.
+ */
+public class ProcessedTableModel extends LiveTableModel {
+    private static final long serialVersionUID = 1L;
+
+    private final ProcessedHistory history;
+
+    public ProcessedTableModel(Manager manager) {
+        super(new String[]{"Record"}, new Class<?>[]{String.class});
+        this.history = manager.getProcessedHistory();
+        start(manager.addProcessedListener(this));
+    }
+
+    @Override
+    protected int liveRowCount() {
+        return history.size();
+    }
+
+    @Override
+    protected Object valueAt(int row, int column) {
+        return row < history.size() ? history.format(row) : null;
+    }
+}